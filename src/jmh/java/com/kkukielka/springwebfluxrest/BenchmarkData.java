@@ -0,0 +1,37 @@
+package com.kkukielka.springwebfluxrest;
+
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static List<Vendor> vendors(int count) {
+        List<Vendor> vendors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vendors.add(Vendor.builder()
+                    .id(String.format("%024x", i))
+                    .firstName("First" + i)
+                    .lastName("Last" + i)
+                    .build());
+        }
+        return vendors;
+    }
+
+    public static List<Category> categories(int count) {
+        List<Category> categories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            categories.add(Category.builder()
+                    .id(String.format("%024x", i))
+                    .description("Category " + i)
+                    .build());
+        }
+        return categories;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.kkukielka.springwebfluxrest.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a cached findById with the uncached path. The loader stands in for Mongo with a fixed
+ * simulated round trip, so the miss numbers are a lower bound for a real database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadThroughCacheBenchmark {
+
+    private static final String ID = "5e3a8f0c2b1d4a6f8c9e0d1b";
+
+    @Param({"200"})
+    public long roundTripMicros;
+
+    private ReadThroughCache<Vendor> cache;
+    private Mono<Vendor> database;
+
+    @Setup
+    public void setUp() {
+        cache = new ReadThroughCache<>(Caffeine.newBuilder().maximumSize(10_000).build());
+        database = Mono.delay(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros)))
+                .map(tick -> Vendor.builder().id(ID).firstName("John").lastName("Johnson").build());
+        cache.get(ID, id -> database).block();
+    }
+
+    @Benchmark
+    public Vendor cached() {
+        return cache.get(ID, id -> database).block();
+    }
+
+    @Benchmark
+    public Vendor uncached() {
+        return database.block();
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.BenchmarkData;
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.events.MutationEventPublisher;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import com.kkukielka.springwebfluxrest.stats.EntityCounter;
+import com.kkukielka.springwebfluxrest.stats.StatsReconciler;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Drives the annotated controller through the full WebFlux dispatch and codec path with a
+ * mocked repository, so the numbers exclude Mongo entirely.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VendorControllerBenchmark {
+
+    @Param({"1", "1000", "100000"})
+    public int size;
+
+    private WebTestClient webTestClient;
+    private Vendor patch;
+
+    @Setup
+    public void setUp() {
+        List<Vendor> vendors = BenchmarkData.vendors(size);
+        Vendor vendor = vendors.get(0);
+
+        VendorRepository vendorRepository = Mockito.mock(VendorRepository.class);
+        given(vendorRepository.findAll()).willReturn(Flux.fromIterable(vendors));
+        given(vendorRepository.findById(anyString())).willReturn(Mono.just(vendor));
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any())).willReturn(Mono.just(vendor));
+
+        webTestClient = WebTestClient.bindToController(new VendorController(vendorRepository,
+                new MutationEventPublisher<>(16, 16, MutationEventPublisher.Overflow.DROP_OLDEST),
+                new EntityCounter<>(StatsReconciler::lastNameInitial), new ObjectMapper()))
+                .httpMessageCodecs(new WebConfig(new ObjectMapper())::configureHttpMessageCodecs)
+                .build();
+        patch = Vendor.builder().lastName("Patched").build();
+    }
+
+    @Benchmark
+    public byte[] listVendorsJson() {
+        return webTestClient.get().uri(VendorController.BASE_URL)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public byte[] listVendorsNdjson() {
+        return webTestClient.get().uri(VendorController.BASE_URL)
+                .accept(WebConfig.APPLICATION_NDJSON)
+                .exchange()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public byte[] getVendorById() {
+        return webTestClient.get().uri(VendorController.BASE_URL + "/1")
+                .exchange()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public byte[] patchVendor() {
+        return webTestClient.patch().uri(VendorController.BASE_URL + "/1")
+                .bodyValue(patch)
+                .exchange()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+    }
+
+}
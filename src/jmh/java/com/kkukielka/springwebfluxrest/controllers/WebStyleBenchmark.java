@@ -0,0 +1,97 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.BenchmarkData;
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.events.MutationEventPublisher;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import com.kkukielka.springwebfluxrest.stats.EntityCounter;
+import com.kkukielka.springwebfluxrest.stats.StatsReconciler;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Compares annotated controller dispatch with the equivalent functional routes on small
+ * requests, where per-request dispatch overhead rather than serialization dominates. Run with
+ * the GC profiler to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WebStyleBenchmark {
+
+    @Param({"annotated", "functional"})
+    public String style;
+
+    private WebTestClient webTestClient;
+    private Vendor patch;
+
+    @Setup
+    public void setUp() {
+        List<Vendor> vendors = BenchmarkData.vendors(10);
+        Vendor vendor = vendors.get(0);
+
+        VendorRepository vendorRepository = Mockito.mock(VendorRepository.class);
+        given(vendorRepository.findById(anyString())).willReturn(Mono.just(vendor));
+        given(vendorRepository.findAllByOrderByIdAsc(any(Pageable.class))).willReturn(Flux.fromIterable(vendors));
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any())).willReturn(Mono.just(vendor));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        VendorController vendorController = new VendorController(vendorRepository,
+                new MutationEventPublisher<>(16, 16, MutationEventPublisher.Overflow.DROP_OLDEST),
+                new EntityCounter<>(StatsReconciler::lastNameInitial), objectMapper);
+
+        webTestClient = "functional".equals(style)
+                ? WebTestClient.bindToRouterFunction(new VendorRoutes(vendorController).routerFunction())
+                        .handlerStrategies(HandlerStrategies.builder()
+                                .codecs(new WebConfig(objectMapper)::configureHttpMessageCodecs)
+                                .build())
+                        .build()
+                : WebTestClient.bindToController(vendorController)
+                        .httpMessageCodecs(new WebConfig(objectMapper)::configureHttpMessageCodecs)
+                        .build();
+        patch = Vendor.builder().lastName("Patched").build();
+    }
+
+    @Benchmark
+    public byte[] getVendorById() {
+        return webTestClient.get().uri(VendorController.BASE_URL + "/1")
+                .exchange()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public byte[] listVendorsPage() {
+        return webTestClient.get().uri(VendorController.BASE_URL + "?limit=10")
+                .exchange()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public byte[] patchVendor() {
+        return webTestClient.patch().uri(VendorController.BASE_URL + "/1")
+                .bodyValue(patch)
+                .exchange()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+    }
+
+}
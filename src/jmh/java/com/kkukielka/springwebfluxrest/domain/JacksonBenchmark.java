@@ -0,0 +1,60 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JacksonBenchmark {
+
+    private static final TypeReference<List<Vendor>> VENDOR_LIST = new TypeReference<List<Vendor>>() {
+    };
+    private static final TypeReference<List<Category>> CATEGORY_LIST = new TypeReference<List<Category>>() {
+    };
+
+    @Param({"1", "1000", "100000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<Vendor> vendors;
+    private List<Category> categories;
+    private byte[] vendorsJson;
+    private byte[] categoriesJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        vendors = BenchmarkData.vendors(size);
+        categories = BenchmarkData.categories(size);
+        vendorsJson = objectMapper.writeValueAsBytes(vendors);
+        categoriesJson = objectMapper.writeValueAsBytes(categories);
+    }
+
+    @Benchmark
+    public byte[] serializeVendors() throws IOException {
+        return objectMapper.writeValueAsBytes(vendors);
+    }
+
+    @Benchmark
+    public List<Vendor> deserializeVendors() throws IOException {
+        return objectMapper.readValue(vendorsJson, VENDOR_LIST);
+    }
+
+    @Benchmark
+    public byte[] serializeCategories() throws IOException {
+        return objectMapper.writeValueAsBytes(categories);
+    }
+
+    @Benchmark
+    public List<Category> deserializeCategories() throws IOException {
+        return objectMapper.readValue(categoriesJson, CATEGORY_LIST);
+    }
+
+}
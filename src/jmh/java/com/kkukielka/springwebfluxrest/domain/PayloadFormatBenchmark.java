@@ -0,0 +1,76 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of the JSON, Smile and CBOR representations of a vendor list. The encoded
+ * size is reported as the {@code payloadBytes} secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PayloadFormatBenchmark {
+
+    private static final TypeReference<List<Vendor>> VENDOR_LIST = new TypeReference<List<Vendor>>() {
+    };
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"1", "1000", "100000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<Vendor> vendors;
+    private byte[] encoded;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+
+        public long payloadBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            payloadBytes = 0;
+        }
+
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (format) {
+            case "smile":
+                objectMapper = Jackson2ObjectMapperBuilder.smile().build();
+                break;
+            case "cbor":
+                objectMapper = Jackson2ObjectMapperBuilder.cbor().build();
+                break;
+            default:
+                objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        }
+        vendors = BenchmarkData.vendors(size);
+        encoded = objectMapper.writeValueAsBytes(vendors);
+    }
+
+    @Benchmark
+    public byte[] encodeVendors(PayloadSize payloadSize) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(vendors);
+        payloadSize.payloadBytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public List<Vendor> decodeVendors() throws IOException {
+        return objectMapper.readValue(encoded, VENDOR_LIST);
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.kkukielka.springwebfluxrest.metrics;
+
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.framework.ProxyFactory;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Measures the per-call overhead the metrics proxy adds to a repository lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RepositoryMetricsBenchmark {
+
+    private VendorRepository plain;
+    private VendorRepository instrumented;
+
+    @Setup
+    public void setUp() {
+        plain = Mockito.mock(VendorRepository.class);
+        given(plain.findById(anyString())).willReturn(Mono.just(Vendor.builder().id("1").build()));
+
+        ProxyFactory proxyFactory = new ProxyFactory(plain);
+        proxyFactory.addAdvice(new RepositoryMetricsInterceptor(new SimpleMeterRegistry(), "vendorRepository"));
+        instrumented = (VendorRepository) proxyFactory.getProxy();
+    }
+
+    @Benchmark
+    public Vendor plainFindById() {
+        return plain.findById("1").block();
+    }
+
+    @Benchmark
+    public Vendor instrumentedFindById() {
+        return instrumented.findById("1").block();
+    }
+
+}
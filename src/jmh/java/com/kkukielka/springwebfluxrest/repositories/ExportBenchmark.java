@@ -0,0 +1,73 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.BenchmarkData;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders one export buffer of raw vendor documents as NDJSON, once straight from BSON as
+ * {@link MongoExporter} does and once through {@code Document}, {@link Vendor} and Jackson as the
+ * list endpoint does. Scores are buffers per second, so rows per second is the score times
+ * {@code size}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExportBenchmark {
+
+    @Param({"500"})
+    public int size;
+
+    private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private final DocumentCodec documentCodec = new DocumentCodec();
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private MappingMongoConverter converter;
+    private List<RawBsonDocument> documents;
+
+    @Setup
+    public void setUp() {
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+
+        documents = new ArrayList<>(size);
+        for (Vendor vendor : BenchmarkData.vendors(size)) {
+            Document document = new Document();
+            converter.write(vendor, document);
+            documents.add(new RawBsonDocument(document, documentCodec));
+        }
+    }
+
+    @Benchmark
+    public DataBuffer rawBsonToNdjson() {
+        return MongoExporter.ndjson(documents, bufferFactory);
+    }
+
+    @Benchmark
+    public byte[] mappedToNdjson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (RawBsonDocument document : documents) {
+            Vendor vendor = converter.read(Vendor.class, document.decode(documentCodec));
+            out.write(objectMapper.writeValueAsBytes(vendor));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the conditional findAndModify that replaced the read-compare-write PATCH.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PatchMergeBenchmark {
+
+    private final Vendor singleFieldPatch = Vendor.builder().lastName("Johnson").build();
+    private final Vendor fullPatch = Vendor.builder().firstName("John").lastName("Johnson").build();
+    private final Vendor emptyPatch = Vendor.builder().build();
+
+    @Benchmark
+    public void singleFieldPatch(Blackhole blackhole) {
+        merge(singleFieldPatch, blackhole);
+    }
+
+    @Benchmark
+    public void fullPatch(Blackhole blackhole) {
+        merge(fullPatch, blackhole);
+    }
+
+    @Benchmark
+    public void emptyPatch(Blackhole blackhole) {
+        merge(emptyPatch, blackhole);
+    }
+
+    private static void merge(Vendor patch, Blackhole blackhole) {
+        Query query = VendorRepositoryCustomImpl.patchQuery("5e3a8f0c2b1d4a6f8c9e0d1b", patch, null);
+        if (query == null) {
+            blackhole.consume(patch);
+            return;
+        }
+
+        Document queryObject = query.getQueryObject();
+        Document updateObject = VendorRepositoryCustomImpl.patchUpdate(patch).getUpdateObject();
+        blackhole.consume(queryObject);
+        blackhole.consume(updateObject);
+    }
+
+}
@@ -1,63 +1,78 @@
 package com.kkukielka.springwebfluxrest.bootstrap;
 
-import com.kkukielka.springwebfluxrest.domain.Category;
-import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.config.SeedProperties;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
 import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
 import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
 
 @Slf4j
 @Component
+@ConditionalOnProperty(prefix = "app.seed", name = "enabled", havingValue = "true", matchIfMissing = true)
 public class Bootstrap implements CommandLineRunner {
 
     private VendorRepository vendorRepository;
     private CategoryRepository categoryRepository;
+    private SeedProperties properties;
 
     public Bootstrap(VendorRepository vendorRepository,
-                     CategoryRepository categoryRepository) {
+                     CategoryRepository categoryRepository,
+                     SeedProperties properties) {
         this.vendorRepository = vendorRepository;
         this.categoryRepository = categoryRepository;
+        this.properties = properties;
     }
 
     @Override
     public void run(String... args) throws Exception {
-        initializeVendors();
-        initializeCategories();
-    }
-
-    private void initializeVendors() {
-        vendorRepository.deleteAll().block();
-
-        Vendor vendor1 = new Vendor();
-        vendor1.setFirstName("John");
-        vendor1.setLastName("Johnson");
-
-        Vendor vendor2 = new Vendor();
-        vendor2.setFirstName("Mike");
-        vendor2.setLastName("Mikeson");
-
-        Vendor vendor3 = new Vendor();
-        vendor3.setFirstName("Paul");
-        vendor3.setLastName("Paulson");
-
-        vendorRepository.save(vendor1).block();
-        vendorRepository.save(vendor2).block();
-        vendorRepository.save(vendor3).block();
-
-        log.debug("Saved Vendors count: " + vendorRepository.findAll().count().block());
+        long seed = properties.getSeed();
 
+        seed("vendors", vendorRepository.deleteAll(), properties.getVendors(),
+                vendors -> vendorRepository.bulkInsert(vendors.map(index -> SyntheticData.vendor(seed, index))));
+        seed("categories", categoryRepository.deleteAll(), properties.getCategories(),
+                categories -> categoryRepository.bulkInsert(
+                        categories.map(index -> SyntheticData.category(seed, index))));
     }
 
-    private void initializeCategories() {
-        categoryRepository.deleteAll().block();
-
-        categoryRepository.save(Category.builder().description("Fruits").build()).block();
-        categoryRepository.save(Category.builder().description("Vegetables").build()).block();
-        categoryRepository.save(Category.builder().description("Meats").build()).block();
+    /**
+     * Documents are generated lazily as the bulk inserter requests them, so memory stays bounded
+     * by the batches in flight regardless of the row count.
+     */
+    private void seed(String collection, Mono<Void> clear, int count,
+                      Function<Flux<Long>, Flux<BulkInsertResult>> insert) {
+        if (properties.isClear()) {
+            clear.block();
+        }
+
+        long start = System.nanoTime();
+        BulkInsertResult total = insert.apply(Flux.range(0, count).map(Integer::longValue))
+                .reduceWith(BulkInsertResult::new, Bootstrap::add)
+                .block();
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+
+        log.info("Seeded {} {} in {} ms ({} rows/s)", total.getInserted(), collection,
+                Math.round(seconds * 1000), Math.round(total.getInserted() / seconds));
+        if (total.getFailed() > 0) {
+            log.warn("Failed to seed {} {}: {}", total.getFailed(), collection, total.getError());
+        }
+    }
 
-        log.debug("Saved Categories count: " + categoryRepository.findAll().count().block());
+    private static BulkInsertResult add(BulkInsertResult total, BulkInsertResult batch) {
+        total.setBatch(total.getBatch() + 1);
+        total.setSize(total.getSize() + batch.getSize());
+        total.setInserted(total.getInserted() + batch.getInserted());
+        total.setFailed(total.getFailed() + batch.getFailed());
+        if (batch.getError() != null) {
+            total.setError(batch.getError());
+        }
+        return total;
     }
 
 }
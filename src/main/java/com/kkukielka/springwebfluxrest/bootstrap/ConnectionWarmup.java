@@ -0,0 +1,85 @@
+package com.kkukielka.springwebfluxrest.bootstrap;
+
+import com.kkukielka.springwebfluxrest.config.InMemoryRepositoryConfig;
+import com.kkukielka.springwebfluxrest.config.WarmupProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * Opens a few Mongo connections while the rest of the context starts, so the first requests do
+ * not pay for the handshakes. Reports {@code OUT_OF_SERVICE} as the {@code warmup} health
+ * contributor until then, which keeps the {@code readiness} health group down. Never lazy, since
+ * nothing else depends on it.
+ */
+@Slf4j
+@Component("warmupHealthIndicator")
+@Lazy(false)
+@Profile("!" + InMemoryRepositoryConfig.PROFILE)
+public class ConnectionWarmup implements ReactiveHealthIndicator {
+
+    private static final Document PING = new Document("ping", 1);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final WarmupProperties properties;
+    private volatile boolean warm;
+    private volatile String failure;
+    private Disposable warmup;
+
+    public ConnectionWarmup(ReactiveMongoTemplate mongoTemplate, WarmupProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        long start = System.nanoTime();
+        int connections = properties.getConnections();
+
+        warmup = Flux.range(0, connections)
+                .flatMap(i -> mongoTemplate.executeCommand(PING), connections)
+                .then()
+                .retryBackoff(properties.getMaxRetries(), properties.getFirstBackoff())
+                .subscribe(null,
+                        error -> {
+                            failure = error.getMessage();
+                            log.warn("Mongo warm-up failed: {}", failure);
+                        },
+                        () -> {
+                            warm = true;
+                            log.info("Warmed up {} Mongo connections in {} ms", connections,
+                                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+                        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (warmup != null) {
+            warmup.dispose();
+        }
+    }
+
+    @Override
+    public Mono<Health> health() {
+        if (warm) {
+            return Mono.just(Health.up().build());
+        }
+
+        return Mono.just(Health.outOfService()
+                .withDetail("reason", failure != null ? failure : "Mongo connections are warming up")
+                .build());
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.kkukielka.springwebfluxrest.bootstrap;
+
+import com.kkukielka.springwebfluxrest.config.InMemoryRepositoryConfig;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.repositories.VendorSearch;
+import com.kkukielka.springwebfluxrest.sharding.Shard;
+import com.kkukielka.springwebfluxrest.sharding.VendorShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@Profile("!" + InMemoryRepositoryConfig.PROFILE)
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class IndexInitializer implements CommandLineRunner {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ObjectProvider<VendorShards> vendorShards;
+
+    public IndexInitializer(ReactiveMongoTemplate mongoTemplate, ObjectProvider<VendorShards> vendorShards) {
+        this.mongoTemplate = mongoTemplate;
+        this.vendorShards = vendorShards;
+    }
+
+    /**
+     * Vendors live on the shards when there are any, so that is where their indexes go.
+     */
+    @Override
+    public void run(String... args) {
+        VendorShards shards = vendorShards.getIfAvailable();
+        List<ReactiveMongoTemplate> templates = shards == null
+                ? Collections.singletonList(mongoTemplate)
+                : shards.all().stream().map(Shard::getTemplate).collect(Collectors.toList());
+
+        Flux.fromIterable(templates)
+                .concatMap(template -> Flux.fromIterable(VendorSearch.indexes())
+                        .concatMap(index -> template.indexOps(Vendor.class).ensureIndex(index)))
+                .doOnNext(name -> log.debug("Ensured vendor index: " + name))
+                .blockLast();
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.kkukielka.springwebfluxrest.bootstrap;
+
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+
+/**
+ * Generates documents as a pure function of seed and index, so that any slice of a dataset can be
+ * produced independently and the same configuration always yields the same data.
+ */
+final class SyntheticData {
+
+    private static final String[] FIRST_NAMES = {
+            "John", "Mike", "Paul", "Anna", "Maria", "Peter", "Kate", "Tom", "Eva", "Adam",
+            "Julia", "Mark", "Laura", "Simon", "Nina", "Oscar", "Clara", "Victor", "Irene", "Hugo"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Johnson", "Mikeson", "Paulson", "Smith", "Brown", "Miller", "Davis", "Garcia", "Wilson", "Moore",
+            "Taylor", "Anderson", "Thomas", "Jackson", "White", "Harris", "Martin", "Thompson", "Young", "King"
+    };
+
+    private static final String[] CATEGORY_NAMES = {
+            "Fruits", "Vegetables", "Meats", "Dairy", "Bakery", "Seafood", "Spices", "Beverages", "Snacks", "Grains"
+    };
+
+    private SyntheticData() {
+    }
+
+    static Vendor vendor(long seed, long index) {
+        long random = mix(seed, index);
+        String lastName = LAST_NAMES[(int) Long.remainderUnsigned(random >>> 32, LAST_NAMES.length)];
+
+        return Vendor.builder()
+                .firstName(FIRST_NAMES[(int) Long.remainderUnsigned(random, FIRST_NAMES.length)])
+                .lastName(index < LAST_NAMES.length ? lastName : lastName + "-" + Long.toString(random >>> 40, 36))
+                .build();
+    }
+
+    static Category category(long seed, long index) {
+        long random = mix(~seed, index);
+        String name = CATEGORY_NAMES[(int) Long.remainderUnsigned(random, CATEGORY_NAMES.length)];
+
+        return Category.builder()
+                .description(index < CATEGORY_NAMES.length ? name : name + " " + index)
+                .build();
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long seed, long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.kkukielka.springwebfluxrest.cache;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+/**
+ * Drops cached entries after repository saves and deletes of the given entity type. Writes that
+ * bypass the template lifecycle events (findAndModify, bulk writes) invalidate explicitly.
+ */
+public class CacheEvictionListener<T> extends AbstractMongoEventListener<Object> {
+
+    private final Class<T> entityType;
+    private final ReadThroughCache<T> cache;
+
+    public CacheEvictionListener(Class<T> entityType, ReadThroughCache<T> cache) {
+        this.entityType = entityType;
+        this.cache = cache;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        if (entityType.isInstance(event.getSource())) {
+            invalidate(event.getDocument());
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        if (entityType.equals(event.getType())) {
+            invalidate(event.getDocument());
+        }
+    }
+
+    private void invalidate(Document document) {
+        Object id = document != null ? document.get("_id") : null;
+
+        // deleteAll and $in deletes carry no single id, so everything goes
+        if (id == null || id instanceof Document) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(id.toString());
+        }
+    }
+
+}
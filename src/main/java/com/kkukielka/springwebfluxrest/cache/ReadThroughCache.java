@@ -0,0 +1,59 @@
+package com.kkukielka.springwebfluxrest.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class ReadThroughCache<T> {
+
+    private final Cache<String, T> cache;
+
+    // bumped on every invalidation so that a load which started before a write never
+    // repopulates the cache with the value it read before that write
+    private final AtomicLong generation = new AtomicLong();
+
+    public ReadThroughCache(Cache<String, T> cache) {
+        this.cache = cache;
+    }
+
+    public Mono<T> get(String id, Function<String, Mono<T>> loader) {
+        return Mono.defer(() -> {
+            T cached = cache.getIfPresent(id);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+
+            long loadGeneration = generation.get();
+            return loader.apply(id).doOnNext(loaded -> store(id, loaded, loadGeneration));
+        });
+    }
+
+    public void invalidate(String id) {
+        generation.incrementAndGet();
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public Cache<String, T> getNativeCache() {
+        return cache;
+    }
+
+    private void store(String id, T loaded, long loadGeneration) {
+        if (generation.get() != loadGeneration) {
+            return;
+        }
+
+        cache.put(id, loaded);
+
+        if (generation.get() != loadGeneration) {
+            cache.invalidate(id);
+        }
+    }
+
+}
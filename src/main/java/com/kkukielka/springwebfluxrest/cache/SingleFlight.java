@@ -0,0 +1,34 @@
+package com.kkukielka.springwebfluxrest.cache;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: every subscriber that arrives while a load is in
+ * flight shares its result, and the entry is dropped as soon as that load completes or fails.
+ * Only the hash bin of the key is locked, and only while the shared {@code Mono} is assembled.
+ */
+public class SingleFlight<V> {
+
+    private final ConcurrentMap<String, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    public Mono<V> execute(String key, Function<String, Mono<V>> loader) {
+        return Mono.defer(() -> inFlight.computeIfAbsent(key, k -> share(k, loader)));
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private Mono<V> share(String key, Function<String, Mono<V>> loader) {
+        // the loaded Mono runs at most once; a new entry for the key can only be created after
+        // this one was removed, so removing by key cannot drop a newer load
+        return loader.apply(key)
+                .doFinally(signal -> inFlight.remove(key))
+                .cache();
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.kkukielka.springwebfluxrest.codec;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CBOR decoder that also accepts multi-value bodies, which the stock decoder rejects because
+ * Jackson has no non-blocking CBOR parser. The body is buffered up to the in-memory limit and then
+ * read either as one CBOR array or as a sequence of top-level values.
+ */
+public class CborDecoder extends Jackson2CborDecoder {
+
+    public CborDecoder(ObjectMapper objectMapper) {
+        super(objectMapper, MediaType.APPLICATION_CBOR);
+    }
+
+    @Override
+    public Flux<Object> decode(Publisher<DataBuffer> input, ResolvableType elementType,
+                               @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        ObjectReader reader = getObjectMapper().readerFor(getObjectMapper().constructType(elementType.getType()));
+
+        return DataBufferUtils.join(input, getMaxInMemorySize())
+                .flatMapIterable(buffer -> readValues(reader, buffer));
+    }
+
+    private static List<Object> readValues(ObjectReader reader, DataBuffer buffer) {
+        try (InputStream body = buffer.asInputStream(true);
+             MappingIterator<Object> values = reader.readValues(body)) {
+            return values.readAll();
+        } catch (IOException e) {
+            throw new DecodingException("CBOR decoding error: " + e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.bulk-insert")
+public class BulkInsertProperties {
+
+    /**
+     * Maximum number of documents sent in a single bulkWrite.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * How long a partially filled batch may wait for more documents before it is flushed.
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * Number of batches that may be written concurrently. Together with the batch size this
+     * bounds how many documents are requested from the client at any time.
+     */
+    private int maxInFlight = 4;
+
+}
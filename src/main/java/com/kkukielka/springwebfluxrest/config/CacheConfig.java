@@ -0,0 +1,61 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kkukielka.springwebfluxrest.cache.CacheEvictionListener;
+import com.kkukielka.springwebfluxrest.cache.ReadThroughCache;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    private final EntityCacheProperties properties;
+
+    public CacheConfig(EntityCacheProperties properties) {
+        this.properties = properties;
+    }
+
+    @Bean
+    public ReadThroughCache<Vendor> vendorCache() {
+        return new ReadThroughCache<>(newCache());
+    }
+
+    @Bean
+    public ReadThroughCache<Category> categoryCache() {
+        return new ReadThroughCache<>(newCache());
+    }
+
+    @Bean
+    public CacheEvictionListener<Vendor> vendorCacheEvictionListener(ReadThroughCache<Vendor> vendorCache) {
+        return new CacheEvictionListener<>(Vendor.class, vendorCache);
+    }
+
+    @Bean
+    public CacheEvictionListener<Category> categoryCacheEvictionListener(ReadThroughCache<Category> categoryCache) {
+        return new CacheEvictionListener<>(Category.class, categoryCache);
+    }
+
+    @Bean
+    public CaffeineCacheMetrics vendorCacheMetrics(ReadThroughCache<Vendor> vendorCache) {
+        return new CaffeineCacheMetrics(vendorCache.getNativeCache(), "vendors", Tags.empty());
+    }
+
+    @Bean
+    public CaffeineCacheMetrics categoryCacheMetrics(ReadThroughCache<Category> categoryCache) {
+        return new CaffeineCacheMetrics(categoryCache.getNativeCache(), "categories", Tags.empty());
+    }
+
+    private <T> Cache<String, T> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .build();
+    }
+
+}
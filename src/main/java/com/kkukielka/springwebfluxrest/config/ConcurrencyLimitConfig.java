@@ -0,0 +1,20 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.kkukielka.springwebfluxrest.limit.AdaptiveConcurrencyLimit;
+import com.kkukielka.springwebfluxrest.limit.ConcurrencyLimitFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "app.concurrency-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public ConcurrencyLimitFilter concurrencyLimitFilter(ConcurrencyLimitProperties properties) {
+        return new ConcurrencyLimitFilter(() -> new AdaptiveConcurrencyLimit(properties.getInitialLimit(),
+                properties.getMinLimit(), properties.getMaxLimit(), properties.getLatencyThreshold(),
+                properties.getBackoffRatio()), properties.getRetryAfter());
+    }
+
+}
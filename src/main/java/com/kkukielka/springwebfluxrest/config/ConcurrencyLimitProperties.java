@@ -0,0 +1,47 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    /**
+     * Whether excess requests are shed with 503 once a route group reaches its in-flight limit.
+     */
+    private boolean enabled = true;
+
+    /**
+     * In-flight limit each route group starts with.
+     */
+    private int initialLimit = 200;
+
+    /**
+     * Lower bound the limit never shrinks below.
+     */
+    private int minLimit = 10;
+
+    /**
+     * Upper bound the limit never grows above.
+     */
+    private int maxLimit = 2000;
+
+    /**
+     * Responses slower than this shrink the limit; faster ones let it grow while it is in use.
+     */
+    private Duration latencyThreshold = Duration.ofMillis(500);
+
+    /**
+     * Factor the limit is multiplied by on a slow response.
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * Value of the Retry-After header sent with a 503.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+}
@@ -0,0 +1,22 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.cache")
+public class EntityCacheProperties {
+
+    /**
+     * Maximum number of entries kept per entity type.
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * How long an entry may be served after it was loaded.
+     */
+    private Duration timeToLive = Duration.ofMinutes(5);
+
+}
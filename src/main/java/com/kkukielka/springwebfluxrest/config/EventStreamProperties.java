@@ -0,0 +1,26 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.kkukielka.springwebfluxrest.events.MutationEventPublisher;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.events")
+public class EventStreamProperties {
+
+    /**
+     * Number of recent events per resource that a reconnecting client can resume from.
+     */
+    private int historySize = 1000;
+
+    /**
+     * Number of events buffered for a subscriber that does not keep up.
+     */
+    private int bufferSize = 256;
+
+    /**
+     * What happens once a subscriber's buffer is full.
+     */
+    private MutationEventPublisher.Overflow overflow = MutationEventPublisher.Overflow.DROP_OLDEST;
+
+}
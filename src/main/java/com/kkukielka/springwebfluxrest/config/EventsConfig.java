@@ -0,0 +1,33 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.events.MutationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EventsConfig {
+
+    private final EventStreamProperties properties;
+
+    public EventsConfig(EventStreamProperties properties) {
+        this.properties = properties;
+    }
+
+    @Bean
+    public MutationEventPublisher<Vendor> vendorEvents() {
+        return newPublisher();
+    }
+
+    @Bean
+    public MutationEventPublisher<Category> categoryEvents() {
+        return newPublisher();
+    }
+
+    private <T> MutationEventPublisher<T> newPublisher() {
+        return new MutationEventPublisher<>(properties.getHistorySize(), properties.getBufferSize(),
+                properties.getOverflow());
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.export")
+public class ExportProperties {
+
+    /**
+     * Number of documents Mongo returns per cursor round trip.
+     */
+    private int cursorBatchSize = 5000;
+
+    /**
+     * Number of documents rendered into one response buffer.
+     */
+    private int documentsPerBuffer = 500;
+
+}
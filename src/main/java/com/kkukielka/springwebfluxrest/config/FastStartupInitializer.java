@@ -0,0 +1,104 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.controllers.CategoryController;
+import com.kkukielka.springwebfluxrest.controllers.VendorController;
+import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.CategoryRepositoryCustomImpl;
+import com.kkukielka.springwebfluxrest.repositories.MongoBulkInserter;
+import com.kkukielka.springwebfluxrest.repositories.MongoExporter;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepositoryCustomImpl;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.Profiles;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Registers the controllers and the Mongo repositories with plain suppliers instead of leaving
+ * them to component scanning and repository scanning, which spare the reflective constructor
+ * resolution and the repository classpath scan at startup. Wired in by the {@code fast-startup}
+ * profile through {@code context.initializer.classes}, together with
+ * {@code spring.data.mongodb.repositories.type=none} so the repositories are not defined twice.
+ * Under the {@code in-memory} and {@code sharded} profiles the repositories come from
+ * {@link InMemoryRepositoryConfig} and {@link ShardedRepositoryConfig}, and only the controllers
+ * are registered here.
+ */
+public class FastStartupInitializer implements ApplicationContextInitializer<GenericApplicationContext> {
+
+    public static final String PROFILE = "fast-startup";
+
+    @Override
+    public void initialize(GenericApplicationContext context) {
+        context.getBeanFactory().registerSingleton(ScannedControllerExcludeFilter.class.getName(),
+                new ScannedControllerExcludeFilter());
+
+        context.registerBean("vendorController", VendorController.class,
+                () -> new VendorController(context.getBean(VendorRepository.class),
+                        bean(context, "vendorEvents"), bean(context, "vendorStats"),
+                        context.getBean(ObjectMapper.class)));
+        context.registerBean("categoryController", CategoryController.class,
+                () -> new CategoryController(context.getBean(CategoryRepository.class),
+                        bean(context, "categoryEvents"), bean(context, "categoryStats")));
+
+        if (context.getEnvironment().acceptsProfiles(
+                Profiles.of(InMemoryRepositoryConfig.PROFILE, ShardedRepositoryConfig.PROFILE))) {
+            return;
+        }
+
+        context.registerBean("vendorRepository", VendorRepository.class,
+                () -> repositoryFactory(context).getRepository(VendorRepository.class, RepositoryFragments.just(
+                        new VendorRepositoryCustomImpl(context.getBean(ReactiveMongoTemplate.class),
+                                context.getBean(MongoBulkInserter.class), context.getBean(MongoExporter.class),
+                                context.getBean(BulkInsertProperties.class), bean(context, "vendorCache")))));
+        context.registerBean("categoryRepository", CategoryRepository.class,
+                () -> repositoryFactory(context).getRepository(CategoryRepository.class, RepositoryFragments.just(
+                        new CategoryRepositoryCustomImpl(context.getBean(ReactiveMongoTemplate.class),
+                                context.getBean(MongoBulkInserter.class), context.getBean(MongoExporter.class),
+                                bean(context, "categoryCache")))));
+    }
+
+    private static ReactiveMongoRepositoryFactory repositoryFactory(GenericApplicationContext context) {
+        return new ReactiveMongoRepositoryFactory(context.getBean(ReactiveMongoTemplate.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T bean(GenericApplicationContext context, String name) {
+        return (T) context.getBean(name);
+    }
+
+    /**
+     * Keeps component scanning from defining the controllers registered above a second time.
+     */
+    static class ScannedControllerExcludeFilter extends TypeExcludeFilter {
+
+        private static final Set<String> EXCLUDED = new HashSet<>(Arrays.asList(
+                VendorController.class.getName(), CategoryController.class.getName()));
+
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            return EXCLUDED.contains(metadataReader.getClassMetadata().getClassName());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other != null && getClass() == other.getClass();
+        }
+
+        @Override
+        public int hashCode() {
+            return getClass().hashCode();
+        }
+
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.in-memory")
+public class InMemoryProperties {
+
+    /**
+     * Directory the in-memory stores are snapshotted to and restored from at startup. Snapshots
+     * are disabled when unset.
+     */
+    private String snapshotDirectory;
+
+    /**
+     * How often stores that changed since their last snapshot are written again. A final
+     * snapshot is always written on shutdown.
+     */
+    private Duration snapshotInterval = Duration.ofMinutes(1);
+
+}
@@ -0,0 +1,72 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.InMemoryCategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.InMemorySnapshots;
+import com.kkukielka.springwebfluxrest.repositories.InMemoryStore;
+import com.kkukielka.springwebfluxrest.repositories.InMemoryVendorRepository;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Replaces the Mongo repositories with in-process ones under the {@code in-memory} profile, which
+ * also switches off the Mongo auto-configuration.
+ */
+@Configuration
+@Profile(InMemoryRepositoryConfig.PROFILE)
+public class InMemoryRepositoryConfig {
+
+    public static final String PROFILE = "in-memory";
+
+    private final BulkInsertProperties bulkProperties;
+    private final ExportProperties exportProperties;
+
+    public InMemoryRepositoryConfig(BulkInsertProperties bulkProperties, ExportProperties exportProperties) {
+        this.bulkProperties = bulkProperties;
+        this.exportProperties = exportProperties;
+    }
+
+    @Bean
+    public InMemoryStore<Vendor> vendorStore() {
+        return InMemoryVendorRepository.newStore();
+    }
+
+    @Bean
+    public InMemoryStore<Category> categoryStore() {
+        return InMemoryCategoryRepository.newStore();
+    }
+
+    @Bean
+    public VendorRepository vendorRepository(InMemoryStore<Vendor> vendorStore, InMemoryStore<Category> categoryStore,
+                                             ObjectMapper objectMapper) {
+        return new InMemoryVendorRepository(vendorStore, categoryStore, bulkProperties, exportProperties,
+                objectMapper);
+    }
+
+    @Bean
+    public CategoryRepository categoryRepository(InMemoryStore<Category> categoryStore, ObjectMapper objectMapper) {
+        return new InMemoryCategoryRepository(categoryStore, bulkProperties, exportProperties, objectMapper);
+    }
+
+    /**
+     * Never lazy, so that snapshots are restored before the first request.
+     */
+    @Bean
+    @Lazy(false)
+    @ConditionalOnProperty(prefix = "app.in-memory", name = "snapshot-directory")
+    public InMemorySnapshots inMemorySnapshots(List<InMemoryStore<?>> stores, InMemoryProperties properties) {
+        return new InMemorySnapshots(stores, Paths.get(properties.getSnapshotDirectory()),
+                properties.getSnapshotInterval());
+    }
+
+}
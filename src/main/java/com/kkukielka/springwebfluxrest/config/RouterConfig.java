@@ -0,0 +1,32 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.kkukielka.springwebfluxrest.controllers.CategoryController;
+import com.kkukielka.springwebfluxrest.controllers.CategoryRoutes;
+import com.kkukielka.springwebfluxrest.controllers.VendorController;
+import com.kkukielka.springwebfluxrest.controllers.VendorRoutes;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Serves the API through functional routes when {@code app.web.style=functional}. The router
+ * function mapping is consulted before the annotated handler mapping, so the routes take over
+ * every request they match.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.web.style", havingValue = "functional")
+public class RouterConfig {
+
+    @Bean
+    public RouterFunction<ServerResponse> vendorRoutes(VendorController vendorController) {
+        return new VendorRoutes(vendorController).routerFunction();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> categoryRoutes(CategoryController categoryController) {
+        return new CategoryRoutes(categoryController).routerFunction();
+    }
+
+}
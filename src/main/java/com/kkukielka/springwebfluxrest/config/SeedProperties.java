@@ -0,0 +1,35 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.seed")
+public class SeedProperties {
+
+    /**
+     * Whether synthetic data is written at startup. Must be switched off in production.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Whether both collections are emptied before seeding.
+     */
+    private boolean clear = true;
+
+    /**
+     * Number of vendors to generate.
+     */
+    private int vendors = 3;
+
+    /**
+     * Number of categories to generate.
+     */
+    private int categories = 3;
+
+    /**
+     * Seed of the generator; the same seed and counts always produce the same documents.
+     */
+    private long seed = 42;
+
+}
@@ -0,0 +1,77 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.kkukielka.springwebfluxrest.cache.ReadThroughCache;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.CategoryRepositoryCustomImpl;
+import com.kkukielka.springwebfluxrest.repositories.MongoBulkInserter;
+import com.kkukielka.springwebfluxrest.repositories.MongoExporter;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepositoryCustomImpl;
+import com.kkukielka.springwebfluxrest.sharding.RebalanceEndpoint;
+import com.kkukielka.springwebfluxrest.sharding.ShardRebalancer;
+import com.kkukielka.springwebfluxrest.sharding.ShardedVendorRepository;
+import com.kkukielka.springwebfluxrest.sharding.VendorShards;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+/**
+ * Spreads vendors over the Mongo instances listed under {@code app.sharding.shards} under the
+ * {@code sharded} profile, which also switches off repository scanning. Categories stay on the
+ * instance configured under {@code spring.data.mongodb}.
+ */
+@Configuration
+@Profile(ShardedRepositoryConfig.PROFILE)
+public class ShardedRepositoryConfig {
+
+    public static final String PROFILE = "sharded";
+
+    private final ShardingProperties properties;
+    private final BulkInsertProperties bulkProperties;
+
+    public ShardedRepositoryConfig(ShardingProperties properties, BulkInsertProperties bulkProperties) {
+        this.properties = properties;
+        this.bulkProperties = bulkProperties;
+    }
+
+    @Bean
+    public VendorShards vendorShards(MappingMongoConverter converter, ApplicationEventPublisher eventPublisher,
+                                     ExportProperties exportProperties, ReadThroughCache<Vendor> vendorCache) {
+        return VendorShards.connect(properties, converter, eventPublisher,
+                template -> new ReactiveMongoRepositoryFactory(template).getRepository(VendorRepository.class,
+                        RepositoryFragments.just(new VendorRepositoryCustomImpl(template,
+                                new MongoBulkInserter(template, bulkProperties),
+                                new MongoExporter(template, exportProperties), bulkProperties, vendorCache))));
+    }
+
+    @Bean
+    public VendorRepository vendorRepository(VendorShards vendorShards, CategoryRepository categoryRepository) {
+        return new ShardedVendorRepository(vendorShards, categoryRepository, properties, bulkProperties);
+    }
+
+    @Bean
+    public CategoryRepository categoryRepository(ReactiveMongoTemplate mongoTemplate, MongoBulkInserter bulkInserter,
+                                                 MongoExporter exporter, ReadThroughCache<Category> categoryCache) {
+        return new ReactiveMongoRepositoryFactory(mongoTemplate).getRepository(CategoryRepository.class,
+                RepositoryFragments.just(new CategoryRepositoryCustomImpl(mongoTemplate, bulkInserter, exporter,
+                        categoryCache)));
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(VendorShards vendorShards) {
+        return new ShardRebalancer(vendorShards, properties.getRebalanceConcurrency());
+    }
+
+    @Bean
+    public RebalanceEndpoint rebalanceEndpoint(ShardRebalancer shardRebalancer) {
+        return new RebalanceEndpoint(shardRebalancer);
+    }
+
+}
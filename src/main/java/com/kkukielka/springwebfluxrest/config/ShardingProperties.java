@@ -0,0 +1,48 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+    /**
+     * Connection string of every shard, by shard name, each naming its database. Shards being
+     * drained keep their entry until the rebalance is done.
+     */
+    private Map<String, String> shards = new LinkedHashMap<>();
+
+    /**
+     * Names of the shards vendors are hashed onto; all configured shards when empty. The names,
+     * not the connection strings, place vendors on the ring, so a shard can move hosts.
+     */
+    private List<String> active = new ArrayList<>();
+
+    /**
+     * The active shards before the last change, set until the rebalance has moved every vendor.
+     * Until then, single-vendor operations move their vendor over on demand.
+     */
+    private List<String> previous = new ArrayList<>();
+
+    /**
+     * Points per shard on the hash ring; more points give a more even split.
+     */
+    private int virtualNodes = 160;
+
+    /**
+     * Vendors requested ahead from each shard when merging their results.
+     */
+    private int mergePrefetch = 256;
+
+    /**
+     * Vendors moved concurrently by a rebalance.
+     */
+    private int rebalanceConcurrency = 16;
+
+}
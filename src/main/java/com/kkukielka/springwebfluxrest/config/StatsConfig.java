@@ -0,0 +1,23 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.stats.EntityCounter;
+import com.kkukielka.springwebfluxrest.stats.StatsReconciler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StatsConfig {
+
+    @Bean
+    public EntityCounter<Vendor> vendorStats() {
+        return new EntityCounter<>(StatsReconciler::lastNameInitial);
+    }
+
+    @Bean
+    public EntityCounter<Category> categoryStats() {
+        return new EntityCounter<>(null);
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.stats")
+public class StatsProperties {
+
+    /**
+     * How often the counters are recomputed from Mongo, so that writes made outside the
+     * controllers cannot make them drift for long.
+     */
+    private Duration reconcileInterval = Duration.ofMinutes(5);
+
+    /**
+     * How soon a counter is recomputed after a write whose effect on it could not be tracked
+     * incrementally, such as a PUT that may have created the entity.
+     */
+    private Duration staleReconcileDelay = Duration.ofSeconds(10);
+
+}
@@ -0,0 +1,28 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.warmup")
+public class WarmupProperties {
+
+    /**
+     * Number of Mongo connections opened, with one concurrent ping each, before the application
+     * reports ready.
+     */
+    private int connections = 4;
+
+    /**
+     * How many times a failed warm-up is retried, with exponential backoff, before giving up.
+     */
+    private long maxRetries = 10;
+
+    /**
+     * Delay before the first retry.
+     */
+    private Duration firstBackoff = Duration.ofMillis(100);
+
+}
@@ -0,0 +1,60 @@
+package com.kkukielka.springwebfluxrest.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.codec.CborDecoder;
+import com.kkukielka.springwebfluxrest.codec.CborEncoder;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+import java.util.Arrays;
+
+@Configuration
+public class WebConfig implements WebFluxConfigurer {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+    public static final String APPLICATION_STREAM_SMILE_VALUE = "application/stream+x-jackson-smile";
+    public static final MediaType APPLICATION_STREAM_SMILE = MediaType.parseMediaType(APPLICATION_STREAM_SMILE_VALUE);
+
+    private static final MimeType[] JSON_MIME_TYPES = {
+            MediaType.APPLICATION_JSON,
+            new MediaType("application", "*+json"),
+            MediaType.APPLICATION_STREAM_JSON,
+            APPLICATION_NDJSON
+    };
+
+    private final ObjectMapper objectMapper;
+
+    public WebConfig(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Registers application/x-ndjson next to application/stream+json so that a {@code Flux}
+     * requested as NDJSON is written one document per line as it comes off the Mongo cursor,
+     * instead of being collected into a single JSON array.
+     */
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, JSON_MIME_TYPES);
+        encoder.setStreamingMediaTypes(Arrays.asList(MediaType.APPLICATION_STREAM_JSON, APPLICATION_NDJSON));
+
+        configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+        configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper, JSON_MIME_TYPES));
+
+        // Smile (incl. application/stream+x-jackson-smile) is registered by default once
+        // jackson-dataformat-smile is on the classpath; CBOR has to be added explicitly
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        configurer.customCodecs().encoder(new CborEncoder(cborMapper));
+        configurer.customCodecs().decoder(new CborDecoder(cborMapper));
+    }
+
+}
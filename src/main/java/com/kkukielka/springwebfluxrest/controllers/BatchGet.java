@@ -0,0 +1,74 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.kkukielka.springwebfluxrest.domain.BatchGetResult;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+final class BatchGet {
+
+    static final String BATCH_GET_PATH = "/_batchGet";
+    static final int MAX_IDS = 10_000;
+    static final int CHUNK_SIZE = 1_000;
+    private static final int CHUNK_CONCURRENCY = 4;
+
+    private BatchGet() {
+    }
+
+    /**
+     * Looks up the distinct ids with one {@code $in} query per chunk of {@link #CHUNK_SIZE} and answers
+     * with one result per requested id, in request order, marking the ids that were not found.
+     */
+    static <T> Flux<BatchGetResult<T>> resolve(List<String> ids, Function<Collection<String>, Flux<T>> finder,
+                                               Function<T, String> idExtractor) {
+        if (ids.size() > MAX_IDS) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("at most %d ids can be requested at once", MAX_IDS)));
+        }
+
+        if (ids.contains(null)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "ids must not be null"));
+        }
+
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+
+        return Flux.fromIterable(chunks(new LinkedHashSet<>(ids)))
+                .flatMap(finder, CHUNK_CONCURRENCY)
+                .collectMap(idExtractor)
+                .flatMapIterable(found -> inRequestOrder(ids, found));
+    }
+
+    private static List<List<String>> chunks(Set<String> ids) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(Math.min(ids.size(), CHUNK_SIZE));
+        for (String id : ids) {
+            if (chunk.size() == CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+            chunk.add(id);
+        }
+        chunks.add(chunk);
+        return chunks;
+    }
+
+    private static <T> List<BatchGetResult<T>> inRequestOrder(List<String> ids, Map<String, T> found) {
+        List<BatchGetResult<T>> results = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            T entity = found.get(id);
+            results.add(new BatchGetResult<>(id, entity != null, entity));
+        }
+        return results;
+    }
+
+}
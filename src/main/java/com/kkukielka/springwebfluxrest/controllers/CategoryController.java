@@ -1,72 +1,205 @@
 package com.kkukielka.springwebfluxrest.controllers;
 
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.domain.BatchGetResult;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
 import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.EntityStats;
+import com.kkukielka.springwebfluxrest.domain.MutationEvent;
+import com.kkukielka.springwebfluxrest.events.MutationEventPublisher;
 import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.ExportFormat;
+import com.kkukielka.springwebfluxrest.repositories.Updated;
+import com.kkukielka.springwebfluxrest.stats.EntityCounter;
 import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Set;
+
 @RequestMapping(CategoryController.BASE_URL)
 @RestController
 public class CategoryController {
 
     public static final String BASE_URL = "/api/v1/categories";
 
+    static final String FIELDS_PARAM = "fields";
+    static final String STATS_PATH = "/_stats";
+
     private final CategoryRepository categoryRepository;
+    private final MutationEventPublisher<Category> categoryEvents;
+    private final EntityCounter<Category> categoryStats;
 
-    public CategoryController(CategoryRepository categoryRepository) {
+    public CategoryController(CategoryRepository categoryRepository, MutationEventPublisher<Category> categoryEvents,
+                              EntityCounter<Category> categoryStats) {
         this.categoryRepository = categoryRepository;
+        this.categoryEvents = categoryEvents;
+        this.categoryStats = categoryStats;
+    }
+
+    @GetMapping(params = {"!" + Pagination.AFTER_PARAM, "!" + Pagination.LIMIT_PARAM},
+            produces = {MediaType.APPLICATION_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_SMILE_VALUE,
+                    WebConfig.APPLICATION_STREAM_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public Flux<Category> listCategories(@RequestParam(name = FIELDS_PARAM, required = false) Set<String> fields) {
+        return fields == null ? categoryRepository.findAll() : categoryRepository.findAllProjected(fields);
     }
 
     @GetMapping
-    public Flux<Category> listCategories() {
-        return categoryRepository.findAll();
+    public Mono<ResponseEntity<List<Category>>> listCategoriesPage(
+            @RequestParam(name = Pagination.AFTER_PARAM, required = false) String after,
+            @RequestParam(name = Pagination.LIMIT_PARAM, defaultValue = "" + Pagination.DEFAULT_PAGE_SIZE) int limit) {
+        Pageable page = Pagination.pageOf(limit);
+        Flux<Category> categoryPage = after == null
+                ? categoryRepository.findAllByOrderByIdAsc(page)
+                : categoryRepository.findByIdGreaterThanOrderByIdAsc(after, page);
+
+        return categoryPage.collectList()
+                .map(categories -> Pagination.toResponse(categories, limit, Category::getId,
+                        Category::getVersion));
+    }
+
+    @GetMapping(value = EventStreams.EVENTS_PATH, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<MutationEvent<Category>>> streamCategoryEvents(
+            @RequestHeader(name = EventStreams.LAST_EVENT_ID_HEADER, required = false) Long lastEventIdHeader,
+            @RequestParam(name = EventStreams.LAST_EVENT_ID_PARAM, required = false) Long lastEventIdParam) {
+        return categoryEvents.stream(EventStreams.resumeAfter(lastEventIdHeader, lastEventIdParam))
+                .map(EventStreams::toServerSentEvent);
+    }
+
+    @GetMapping(STATS_PATH)
+    public Mono<EntityStats> getCategoryStats() {
+        return Mono.fromSupplier(categoryStats::snapshot);
+    }
+
+    @GetMapping(Exports.EXPORT_PATH)
+    public ResponseEntity<Flux<DataBuffer>> exportCategories(
+            @RequestParam(name = Exports.FORMAT_PARAM, defaultValue = Exports.DEFAULT_FORMAT) String format,
+            ServerHttpResponse response) {
+        ExportFormat exportFormat = Exports.format(format);
+        return Exports.response(exportFormat, "categories",
+                categoryRepository.export(exportFormat, response.bufferFactory()));
     }
 
     @GetMapping("/{id}")
-    public Mono<Category> getCategoryById(@PathVariable String id) {
-        return categoryRepository.findById(id);
+    public Mono<ResponseEntity<Category>> getCategoryById(@PathVariable String id,
+            @RequestParam(name = FIELDS_PARAM, required = false) Set<String> fields) {
+        if (fields != null) {
+            return categoryRepository.findByIdProjected(id, fields).map(ResponseEntity::ok);
+        }
+
+        return categoryRepository.findById(id).map(CategoryController::tagged);
+    }
+
+    @PostMapping(value = BatchGet.BATCH_GET_PATH,
+            produces = {MediaType.APPLICATION_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_SMILE_VALUE,
+                    WebConfig.APPLICATION_STREAM_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public Flux<BatchGetResult<Category>> batchGetCategories(@RequestBody List<String> ids) {
+        return BatchGet.resolve(ids, categoryRepository::findAllById, Category::getId);
     }
 
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping
     public Mono<Void> createCategory(@RequestBody Publisher<Category> categoryStream) {
-        return categoryRepository.saveAll(categoryStream).then();
+        return categoryRepository.saveAll(categoryStream)
+                .doOnNext(saved -> categoryEvents.publish(MutationEvent.Type.CREATED, saved.getId(), saved))
+                .doOnNext(this::countSaved)
+                .then();
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(params = "bulk=true")
+    public Flux<BulkInsertResult> createCategoriesInBulk(@RequestBody Publisher<Category> categoryStream) {
+        return categoryRepository.bulkInsert(categoryStream)
+                .doOnNext(this::publishInserted)
+                .doOnNext(result -> categoryStats.createdInBulk(result.getInserted()));
     }
 
-    @ResponseStatus(HttpStatus.OK)
     @PutMapping("/{id}")
-    public Mono<Category> updateCategory(@PathVariable String id, @RequestBody Category category) {
-        category.setId(id);
-        return categoryRepository.save(category);
+    public Mono<ResponseEntity<Category>> updateCategory(@PathVariable String id,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Category category) {
+        Long expectedVersion = EntityTags.expectedVersion(ifMatch);
+
+        return categoryRepository.replace(id, category, expectedVersion)
+                .doOnNext(replaced -> categoryEvents.publish(MutationEvent.Type.UPDATED, id, replaced.getCurrent()))
+                .doOnNext(replaced -> categoryStats.updated(replaced.getPrevious(), replaced.getCurrent()))
+                .map(Updated::getCurrent)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(EntityTags.preconditionFailed())))
+                .map(CategoryController::tagged);
     }
 
-    @ResponseStatus(HttpStatus.OK)
     @PatchMapping("/{id}")
-    public Mono<Category> patchCategory(@PathVariable String id, @RequestBody Category category) throws RuntimeException {
-        Category foundCategory = categoryRepository.findById(id).block();
+    public Mono<ResponseEntity<Category>> patchCategory(@PathVariable String id,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Category category) {
+        Long expectedVersion = EntityTags.expectedVersion(ifMatch);
+
+        return categoryRepository.updateIfChanged(id, category, expectedVersion)
+                .doOnNext(updated -> categoryEvents.publish(MutationEvent.Type.UPDATED, id, updated))
+                .switchIfEmpty(Mono.defer(() -> unchangedCategory(id, expectedVersion)))
+                .map(CategoryController::tagged);
+    }
 
-        if (foundCategory == null) {
-            throw new RuntimeException(String.format("Category with ID = %s not found", id));
-        }
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @DeleteMapping("/{id}")
+    public Mono<Void> deleteCategory(@PathVariable String id) {
+        return categoryRepository.findAndDeleteById(id)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(categoryNotFound(id))))
+                .doOnNext(deleted -> categoryEvents.publish(MutationEvent.Type.DELETED, id, deleted))
+                .doOnNext(categoryStats::deleted)
+                .then();
+    }
 
-        if (category == null) {
-            throw new RuntimeException("Request category is null");
-        }
+    /**
+     * Nothing was written, so the stored entity is returned as is, provided it exists and is still
+     * at the version the client expects.
+     */
+    private Mono<Category> unchangedCategory(String id, Long expectedVersion) {
+        return categoryRepository.findById(id)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(categoryNotFound(id))))
+                .flatMap(current -> EntityTags.matches(current.getVersion(), expectedVersion)
+                        ? Mono.just(current)
+                        : Mono.error(EntityTags.preconditionFailed()));
+    }
 
-        if (foundCategory.getDescription() == null) {
-            foundCategory.setDescription("");
-        }
+    /**
+     * Bulk inserts do not read the categories back, so their events carry the id without the
+     * category.
+     */
+    private void publishInserted(BulkInsertResult result) {
+        result.getInsertedIds().forEach(id -> categoryEvents.publish(MutationEvent.Type.CREATED, id, null));
+    }
 
-        if (category.getDescription() != null &&
-                !foundCategory.getDescription().equals(category.getDescription())) {
-            foundCategory.setDescription(category.getDescription());
-            return categoryRepository.save(foundCategory);
+    /**
+     * Spring Data inserts entities without a version and starts them at version 0, so any higher
+     * version means an existing category was overwritten.
+     */
+    private void countSaved(Category saved) {
+        if (saved.getVersion() == null || saved.getVersion() == 0) {
+            categoryStats.created(saved);
         }
+    }
+
+    private static ResponseEntity<Category> tagged(Category category) {
+        return ResponseEntity.ok().eTag(EntityTags.of(category.getVersion())).body(category);
+    }
 
-        return Mono.just(foundCategory);
+    private static ResponseStatusException categoryNotFound(String id) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND,
+                String.format("Category with ID = %s not found", id));
     }
 
 }
@@ -0,0 +1,128 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.kkukielka.springwebfluxrest.domain.BatchGetResult;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.EntityStats;
+import com.kkukielka.springwebfluxrest.domain.MutationEvent;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * Functional equivalent of the {@link CategoryController} request mappings. Requests are parsed
+ * directly from the {@link ServerRequest} and handed to the controller methods, which skips the
+ * reflective handler-method invocation and argument resolution.
+ */
+public class CategoryRoutes {
+
+    private static final String ID_PATH = CategoryController.BASE_URL + "/{id}";
+    private static final ParameterizedTypeReference<BatchGetResult<Category>> BATCH_GET_RESULT_TYPE =
+            new ParameterizedTypeReference<BatchGetResult<Category>>() {
+            };
+    private static final ParameterizedTypeReference<ServerSentEvent<MutationEvent<Category>>> EVENT_TYPE =
+            new ParameterizedTypeReference<ServerSentEvent<MutationEvent<Category>>>() {
+            };
+
+    private final CategoryController categoryController;
+
+    public CategoryRoutes(CategoryController categoryController) {
+        this.categoryController = categoryController;
+    }
+
+    public RouterFunction<ServerResponse> routerFunction() {
+        return RouterFunctions.route()
+                .GET(CategoryController.BASE_URL, this::listCategories)
+                .GET(CategoryController.BASE_URL + EventStreams.EVENTS_PATH, this::streamCategoryEvents)
+                .GET(CategoryController.BASE_URL + CategoryController.STATS_PATH, this::getCategoryStats)
+                .GET(CategoryController.BASE_URL + Exports.EXPORT_PATH, this::exportCategories)
+                .GET(ID_PATH, this::getCategoryById)
+                .POST(CategoryController.BASE_URL + BatchGet.BATCH_GET_PATH, this::batchGetCategories)
+                .POST(CategoryController.BASE_URL, RequestPredicates.queryParam("bulk", "true"::equals),
+                        this::createCategoriesInBulk)
+                .POST(CategoryController.BASE_URL, this::createCategory)
+                .PUT(ID_PATH, this::updateCategory)
+                .PATCH(ID_PATH, this::patchCategory)
+                .DELETE(ID_PATH, this::deleteCategory)
+                .build();
+    }
+
+    private Mono<ServerResponse> listCategories(ServerRequest request) {
+        if (RouteSupport.isPageRequest(request)) {
+            return RouteSupport.entity(request, categoryController.listCategoriesPage(
+                    RouteSupport.param(request, Pagination.AFTER_PARAM),
+                    RouteSupport.intParam(request, Pagination.LIMIT_PARAM, Pagination.DEFAULT_PAGE_SIZE)));
+        }
+
+        return RouteSupport.stream(request, HttpStatus.OK,
+                categoryController.listCategories(RouteSupport.fields(request, CategoryController.FIELDS_PARAM)),
+                Category.class);
+    }
+
+    private Mono<ServerResponse> streamCategoryEvents(ServerRequest request) {
+        Long lastEventIdHeader = RouteSupport.longValue(
+                request.headers().asHttpHeaders().getFirst(EventStreams.LAST_EVENT_ID_HEADER),
+                EventStreams.LAST_EVENT_ID_HEADER);
+        Long lastEventIdParam = RouteSupport.longValue(
+                RouteSupport.param(request, EventStreams.LAST_EVENT_ID_PARAM), EventStreams.LAST_EVENT_ID_PARAM);
+
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(categoryController.streamCategoryEvents(lastEventIdHeader, lastEventIdParam), EVENT_TYPE);
+    }
+
+    private Mono<ServerResponse> getCategoryStats(ServerRequest request) {
+        return ServerResponse.ok().body(categoryController.getCategoryStats(), EntityStats.class);
+    }
+
+    private Mono<ServerResponse> exportCategories(ServerRequest request) {
+        return RouteSupport.export(categoryController.exportCategories(
+                request.queryParam(Exports.FORMAT_PARAM).orElse(Exports.DEFAULT_FORMAT),
+                request.exchange().getResponse()));
+    }
+
+    private Mono<ServerResponse> getCategoryById(ServerRequest request) {
+        return RouteSupport.entity(request, categoryController.getCategoryById(request.pathVariable("id"),
+                RouteSupport.fields(request, CategoryController.FIELDS_PARAM)));
+    }
+
+    private Mono<ServerResponse> batchGetCategories(ServerRequest request) {
+        return RouteSupport.ids(request).flatMap(ids -> RouteSupport.stream(request, HttpStatus.OK,
+                categoryController.batchGetCategories(ids), BATCH_GET_RESULT_TYPE));
+    }
+
+    private Mono<ServerResponse> createCategory(ServerRequest request) {
+        return RouteSupport.empty(HttpStatus.CREATED,
+                categoryController.createCategory(request.bodyToFlux(Category.class)));
+    }
+
+    private Mono<ServerResponse> createCategoriesInBulk(ServerRequest request) {
+        return RouteSupport.stream(request, HttpStatus.CREATED,
+                categoryController.createCategoriesInBulk(request.bodyToFlux(Category.class)), BulkInsertResult.class);
+    }
+
+    private Mono<ServerResponse> updateCategory(ServerRequest request) {
+        String ifMatch = request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_MATCH);
+        return RouteSupport.entity(request, request.bodyToMono(Category.class)
+                .flatMap(category -> categoryController.updateCategory(request.pathVariable("id"), ifMatch, category)));
+    }
+
+    private Mono<ServerResponse> patchCategory(ServerRequest request) {
+        String ifMatch = request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_MATCH);
+        return RouteSupport.entity(request, request.bodyToMono(Category.class)
+                .flatMap(category -> categoryController.patchCategory(request.pathVariable("id"), ifMatch, category)));
+    }
+
+    private Mono<ServerResponse> deleteCategory(ServerRequest request) {
+        return RouteSupport.empty(HttpStatus.NO_CONTENT, categoryController.deleteCategory(request.pathVariable("id")));
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.kkukielka.springwebfluxrest.repositories.Versions;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+final class EntityTags {
+
+    private static final String ANY = "*";
+
+    private EntityTags() {
+    }
+
+    /**
+     * Strong ETag of a single entity. Documents written without a version count as version 0.
+     */
+    static String of(Long version) {
+        return quote(String.valueOf(version == null ? 0L : version));
+    }
+
+    /**
+     * Strong ETag of a page, derived from the ids and versions of its elements so that it changes
+     * whenever one of them is created, updated or deleted.
+     */
+    static <T> String ofPage(List<T> page, Function<T, String> idExtractor, Function<T, Long> versionExtractor) {
+        StringBuilder state = new StringBuilder();
+        for (T element : page) {
+            Long version = versionExtractor.apply(element);
+            state.append(idExtractor.apply(element)).append(':').append(version == null ? 0L : version).append(',');
+        }
+        return quote(DigestUtils.md5DigestAsHex(state.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the version an If-Match header asks for, or {@code null} when the header is absent
+     * or matches any version. Weak or malformed tags can never match and fail with 412.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ANY.equals(ifMatch.trim())) {
+            return null;
+        }
+
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw preconditionFailed();
+        }
+
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw preconditionFailed();
+        }
+    }
+
+    static boolean matches(Long currentVersion, Long expectedVersion) {
+        return Versions.matches(currentVersion, expectedVersion);
+    }
+
+    static ResponseStatusException preconditionFailed() {
+        return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                "If-Match does not match the current version");
+    }
+
+    private static String quote(String value) {
+        return '"' + value + '"';
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.kkukielka.springwebfluxrest.domain.MutationEvent;
+import org.springframework.http.codec.ServerSentEvent;
+
+final class EventStreams {
+
+    static final String EVENTS_PATH = "/_events";
+    static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    static final String LAST_EVENT_ID_PARAM = "lastEventId";
+
+    private EventStreams() {
+    }
+
+    /**
+     * Browsers send the Last-Event-ID header on reconnect; other clients may use the query
+     * parameter instead.
+     */
+    static Long resumeAfter(Long lastEventIdHeader, Long lastEventIdParam) {
+        return lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+    }
+
+    static <T> ServerSentEvent<MutationEvent<T>> toServerSentEvent(MutationEvent<T> event) {
+        return ServerSentEvent.builder(event)
+                .id(String.valueOf(event.getId()))
+                .event(event.getType().name())
+                .build();
+    }
+
+}
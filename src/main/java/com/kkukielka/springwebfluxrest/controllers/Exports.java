@@ -0,0 +1,48 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.repositories.ExportFormat;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+
+final class Exports {
+
+    static final String EXPORT_PATH = "/_export";
+    static final String FORMAT_PARAM = "format";
+    static final String DEFAULT_FORMAT = "ndjson";
+    static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    private Exports() {
+    }
+
+    static ExportFormat format(String name) {
+        try {
+            return ExportFormat.of(name);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or csv");
+        }
+    }
+
+    /**
+     * Headers are sent right away and the body is streamed as the buffers are rendered.
+     */
+    static ResponseEntity<Flux<DataBuffer>> response(ExportFormat format, String collection, Flux<DataBuffer> body) {
+        String fileName = collection + (format == ExportFormat.CSV ? ".csv" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(format == ExportFormat.CSV ? TEXT_CSV : WebConfig.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+                        .filename(fileName)
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+}
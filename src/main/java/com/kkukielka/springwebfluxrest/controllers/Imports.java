@@ -0,0 +1,246 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.ImportProgress;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+final class Imports {
+
+    static final String IMPORT_PATH = "/_import";
+    static final String FILE_PART = "file";
+    static final String SKIP_LINES_PARAM = "skipLines";
+    static final String SKIP_BYTES_PARAM = "skipBytes";
+    static final int MAX_LINE_BYTES = 1024 * 1024;
+
+    private Imports() {
+    }
+
+    /**
+     * Splits the body into lines as the buffers arrive, parses each line into an entity and hands
+     * the entities to {@code bulkInsert}, emitting the accumulated progress after every batch and
+     * once more at the end. Only the line being assembled is held in memory. Lines before line
+     * {@code skipLines + 1} or starting before byte {@code skipBytes} are skipped, blank lines are
+     * ignored and lines that do not parse are counted as failed without stopping the import. Lines
+     * are read with {@code objectMapper}, so they parse like request bodies do.
+     */
+    static <T> Flux<ImportProgress> run(Flux<DataBuffer> body, long skipLines, long skipBytes,
+                                        ObjectMapper objectMapper, Class<T> type,
+                                        Function<Flux<T>, Flux<BulkInsertResult>> bulkInsert) {
+        if (skipLines < 0 || skipBytes < 0) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("%s and %s must not be negative", SKIP_LINES_PARAM, SKIP_BYTES_PARAM)));
+        }
+
+        ObjectReader reader = objectMapper.readerFor(type);
+
+        return Flux.defer(() -> {
+            Progress progress = new Progress();
+            Flux<T> entities = lines(body)
+                    .doOnNext(progress::read)
+                    .filter(line -> line.number > skipLines && line.start >= skipBytes && !line.isBlank())
+                    .<T>handle((line, sink) -> {
+                        try {
+                            T entity = reader.readValue(line.bytes);
+                            progress.pending.add(line);
+                            sink.next(entity);
+                        } catch (IOException e) {
+                            line.error = String.format("line %d: %s", line.number, e instanceof JsonProcessingException
+                                    ? ((JsonProcessingException) e).getOriginalMessage() : e.getMessage());
+                            progress.pending.add(line);
+                        }
+                    });
+
+            return bulkInsert.apply(entities)
+                    .map(progress::written)
+                    .concatWith(Mono.fromSupplier(progress::finished));
+        });
+    }
+
+    static Flux<Line> lines(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            LineSplitter splitter = new LineSplitter();
+            return body.concatMapIterable(splitter::split)
+                    .concatWith(Mono.fromSupplier(splitter::last));
+        });
+    }
+
+    static final class Line {
+
+        final long number;
+        final long start;
+        final long end;
+        final byte[] bytes;
+        String error;
+
+        Line(long number, long start, long end, byte[] bytes) {
+            this.number = number;
+            this.start = start;
+            this.end = end;
+            this.bytes = bytes;
+        }
+
+        boolean isBlank() {
+            for (byte b : bytes) {
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private static final class LineSplitter {
+
+        private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+        private long number;
+        private long position;
+
+        List<Line> split(DataBuffer buffer) {
+            try {
+                List<Line> lines = new ArrayList<>();
+                while (buffer.readableByteCount() > 0) {
+                    int newline = buffer.indexOf(b -> b == '\n', buffer.readPosition());
+                    int length = (newline == -1 ? buffer.writePosition() : newline) - buffer.readPosition();
+                    if (partial.size() + length > MAX_LINE_BYTES) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(
+                                "line %d is longer than %d bytes", number + 1, MAX_LINE_BYTES));
+                    }
+
+                    byte[] bytes = new byte[length];
+                    buffer.read(bytes);
+                    if (newline == -1) {
+                        partial.write(bytes, 0, length);
+                        break;
+                    }
+
+                    buffer.read();
+                    if (partial.size() > 0) {
+                        partial.write(bytes, 0, length);
+                        bytes = partial.toByteArray();
+                        partial.reset();
+                    }
+                    lines.add(line(bytes, 1));
+                }
+                return lines;
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        Line last() {
+            if (partial.size() == 0) {
+                return null;
+            }
+
+            Line line = line(partial.toByteArray(), 0);
+            partial.reset();
+            return line;
+        }
+
+        private Line line(byte[] bytes, int delimiterLength) {
+            long start = position;
+            position += bytes.length + delimiterLength;
+            return new Line(++number, start, position, bytes);
+        }
+
+    }
+
+    /**
+     * Parsed and rejected lines queue up in input order. The bulk insert reports its batches in
+     * order as well, so each result settles the lines of the entities in it plus the rejected
+     * lines in between, which keeps the reported offsets free of gaps. The offsets stop at the
+     * first batch with failed writes, so that resuming from them writes that batch again rather
+     * than skipping the vendors it lost; the batches after it still count as inserted.
+     */
+    private static final class Progress {
+
+        private final Queue<Line> pending = new ConcurrentLinkedQueue<>();
+        private final ImportProgress total = new ImportProgress();
+        private volatile Line lastRead;
+        private boolean unsettled;
+
+        void read(Line line) {
+            lastRead = line;
+        }
+
+        ImportProgress written(BulkInsertResult result) {
+            if (result.getFailed() > 0) {
+                unsettled = true;
+            }
+
+            int entities = result.getSize();
+            while (entities > 0 || (!pending.isEmpty() && pending.peek().error != null)) {
+                Line line = pending.poll();
+                if (line == null) {
+                    break;
+                }
+                settle(line);
+                if (line.error == null) {
+                    entities--;
+                }
+            }
+
+            total.setInserted(total.getInserted() + result.getInserted());
+            total.setFailed(total.getFailed() + result.getFailed());
+            if (result.getError() != null) {
+                total.setError(result.getError());
+            }
+            return snapshot();
+        }
+
+        ImportProgress finished() {
+            for (Line line = pending.poll(); line != null; line = pending.poll()) {
+                settle(line);
+            }
+
+            Line last = lastRead;
+            if (last != null && !unsettled) {
+                total.setLines(last.number);
+                total.setBytes(last.end);
+            }
+            total.setDone(true);
+            return snapshot();
+        }
+
+        private void settle(Line line) {
+            if (!unsettled) {
+                total.setLines(line.number);
+                total.setBytes(line.end);
+            }
+            if (line.error != null) {
+                total.setFailed(total.getFailed() + 1);
+                total.setError(line.error);
+            }
+        }
+
+        private ImportProgress snapshot() {
+            return ImportProgress.builder()
+                    .lines(total.getLines())
+                    .bytes(total.getBytes())
+                    .inserted(total.getInserted())
+                    .failed(total.getFailed())
+                    .error(total.getError())
+                    .done(total.isDone())
+                    .build();
+        }
+
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.Function;
+
+final class Pagination {
+
+    static final String AFTER_PARAM = "after";
+    static final String LIMIT_PARAM = "limit";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private Pagination() {
+    }
+
+    static Pageable pageOf(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("limit must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        return PageRequest.of(0, limit);
+    }
+
+    /**
+     * A full page means there may be more documents, so the id of its last element is handed
+     * back as the cursor for the next request. The page is tagged so that unchanged pages can be
+     * answered with 304.
+     */
+    static <T> ResponseEntity<List<T>> toResponse(List<T> page, int limit, Function<T, String> idExtractor,
+                                                  Function<T, Long> versionExtractor) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(EntityTags.ofPage(page, idExtractor, versionExtractor));
+        if (page.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, idExtractor.apply(page.get(page.size() - 1)));
+        }
+        return response.body(page);
+    }
+
+}
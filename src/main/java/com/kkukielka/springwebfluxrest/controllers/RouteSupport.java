@@ -0,0 +1,177 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Request parsing and response rendering shared by the functional routes, mirroring what argument
+ * resolvers and result handlers do for the annotated controllers.
+ */
+final class RouteSupport {
+
+    private static final List<MediaType> STREAMING_TYPES = Arrays.asList(MediaType.APPLICATION_JSON,
+            WebConfig.APPLICATION_NDJSON, MediaType.APPLICATION_STREAM_JSON, WebConfig.APPLICATION_SMILE,
+            WebConfig.APPLICATION_STREAM_SMILE, MediaType.APPLICATION_CBOR);
+    private static final ParameterizedTypeReference<List<String>> ID_LIST_TYPE =
+            new ParameterizedTypeReference<List<String>>() {
+            };
+
+    private RouteSupport() {
+    }
+
+    static String param(ServerRequest request, String name) {
+        return request.queryParam(name).orElse(null);
+    }
+
+    static int intParam(ServerRequest request, String name, int defaultValue) {
+        String value = param(request, name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("%s must be a number", name));
+        }
+    }
+
+    static Long longValue(String value, String name) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("%s must be a number", name));
+        }
+    }
+
+    /**
+     * Accepts both repeated and comma-separated values, like a {@code Set<String>} request parameter.
+     */
+    static Set<String> fields(ServerRequest request, String name) {
+        List<String> values = request.queryParams().get(name);
+        if (values == null) {
+            return null;
+        }
+
+        Set<String> fields = new LinkedHashSet<>();
+        for (String value : values) {
+            for (String field : StringUtils.commaDelimitedListToStringArray(value)) {
+                if (StringUtils.hasText(field)) {
+                    fields.add(field.trim());
+                }
+            }
+        }
+        return fields;
+    }
+
+    static boolean isPageRequest(ServerRequest request) {
+        return request.queryParam(Pagination.AFTER_PARAM).isPresent()
+                || request.queryParam(Pagination.LIMIT_PARAM).isPresent();
+    }
+
+    /**
+     * Reads a JSON array of ids, failing with 400 when the body is missing like a required
+     * {@code @RequestBody} would.
+     */
+    static Mono<List<String>> ids(ServerRequest request) {
+        return request.bodyToMono(ID_LIST_TYPE)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(
+                        new ResponseStatusException(HttpStatus.BAD_REQUEST, "Request body is missing"))));
+    }
+
+    static <T> Mono<ServerResponse> stream(ServerRequest request, HttpStatus status, Flux<T> body, Class<T> type) {
+        return ServerResponse.status(status)
+                .contentType(streamingType(request))
+                .body(body, type);
+    }
+
+    static <T> Mono<ServerResponse> stream(ServerRequest request, HttpStatus status, Flux<T> body,
+                                           ParameterizedTypeReference<T> type) {
+        return ServerResponse.status(status)
+                .contentType(streamingType(request))
+                .body(body, type);
+    }
+
+    static <T> Mono<ServerResponse> entity(ServerRequest request, Mono<ResponseEntity<T>> response) {
+        return response
+                .flatMap(entity -> render(request, entity))
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.ok().build()));
+    }
+
+    static Mono<ServerResponse> export(ResponseEntity<Flux<DataBuffer>> export) {
+        return ServerResponse.status(export.getStatusCode())
+                .headers(headers -> headers.addAll(export.getHeaders()))
+                .body(BodyInserters.fromDataBuffers(export.getBody()));
+    }
+
+    static Mono<ServerResponse> empty(HttpStatus status, Mono<Void> completion) {
+        return completion.then(Mono.defer(() -> ServerResponse.status(status).build()));
+    }
+
+    private static <T> Mono<ServerResponse> render(ServerRequest request, ResponseEntity<T> entity) {
+        String eTag = entity.getHeaders().getETag();
+        if (eTag != null && notModified(request, eTag)) {
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+                    .headers(headers -> headers.addAll(entity.getHeaders()))
+                    .build();
+        }
+
+        ServerResponse.BodyBuilder builder = ServerResponse.status(entity.getStatusCode())
+                .headers(headers -> headers.addAll(entity.getHeaders()));
+        return entity.getBody() == null ? builder.build() : builder.bodyValue(entity.getBody());
+    }
+
+    private static boolean notModified(ServerRequest request, String eTag) {
+        if (request.method() != HttpMethod.GET && request.method() != HttpMethod.HEAD) {
+            return false;
+        }
+
+        for (String candidate : request.headers().asHttpHeaders().getIfNoneMatch()) {
+            if ("*".equals(candidate) || stripWeak(candidate).equals(stripWeak(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    private static MediaType streamingType(ServerRequest request) {
+        List<MediaType> accepted = new ArrayList<>(request.headers().accept());
+        MediaType.sortBySpecificityAndQuality(accepted);
+
+        for (MediaType acceptedType : accepted) {
+            for (MediaType candidate : STREAMING_TYPES) {
+                if (acceptedType.includes(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+}
@@ -1,84 +1,315 @@
 package com.kkukielka.springwebfluxrest.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.domain.BatchGetResult;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
+import com.kkukielka.springwebfluxrest.domain.EntityStats;
+import com.kkukielka.springwebfluxrest.domain.ImportProgress;
+import com.kkukielka.springwebfluxrest.domain.MutationEvent;
 import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.domain.VendorWithCategories;
+import com.kkukielka.springwebfluxrest.events.MutationEventPublisher;
+import com.kkukielka.springwebfluxrest.repositories.ExportFormat;
+import com.kkukielka.springwebfluxrest.repositories.Updated;
 import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import com.kkukielka.springwebfluxrest.stats.EntityCounter;
 import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 @RestController
 @RequestMapping(VendorController.BASE_URL)
 public class VendorController {
 
     public static final String BASE_URL = "/api/v1/vendors";
 
+    static final String FIELDS_PARAM = "fields";
+    static final String EXPAND_PARAM = "expand";
+    static final String EXPAND_CATEGORIES = "categories";
+    static final String STATS_PATH = "/_stats";
+    static final int DEFAULT_SEARCH_LIMIT = 50;
+    private static final int MAX_SEARCH_LIMIT = 500;
+
     private VendorRepository vendorRepository;
+    private MutationEventPublisher<Vendor> vendorEvents;
+    private EntityCounter<Vendor> vendorStats;
+    private ObjectMapper objectMapper;
 
-    public VendorController(VendorRepository vendorRepository) {
+    public VendorController(VendorRepository vendorRepository, MutationEventPublisher<Vendor> vendorEvents,
+                            EntityCounter<Vendor> vendorStats, ObjectMapper objectMapper) {
         this.vendorRepository = vendorRepository;
+        this.vendorEvents = vendorEvents;
+        this.vendorStats = vendorStats;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping(params = {"!" + Pagination.AFTER_PARAM, "!" + Pagination.LIMIT_PARAM, "!" + EXPAND_PARAM},
+            produces = {MediaType.APPLICATION_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_SMILE_VALUE,
+                    WebConfig.APPLICATION_STREAM_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public Flux<Vendor> listVendors(@RequestParam(name = FIELDS_PARAM, required = false) Set<String> fields) {
+        return fields == null ? vendorRepository.findAll() : vendorRepository.findAllProjected(fields);
+    }
+
+    @GetMapping(params = "!" + EXPAND_PARAM)
+    public Mono<ResponseEntity<List<Vendor>>> listVendorsPage(
+            @RequestParam(name = Pagination.AFTER_PARAM, required = false) String after,
+            @RequestParam(name = Pagination.LIMIT_PARAM, defaultValue = "" + Pagination.DEFAULT_PAGE_SIZE) int limit) {
+        Pageable page = Pagination.pageOf(limit);
+        Flux<Vendor> vendorPage = after == null
+                ? vendorRepository.findAllByOrderByIdAsc(page)
+                : vendorRepository.findByIdGreaterThanOrderByIdAsc(after, page);
+
+        return vendorPage.collectList()
+                .map(vendors -> Pagination.toResponse(vendors, limit, Vendor::getId, Vendor::getVersion));
+    }
+
+    /**
+     * Pages like {@link #listVendorsPage} but streams the page, so no cursor header is sent: the id
+     * of the last vendor is the {@code after} of the next page.
+     */
+    @GetMapping(params = EXPAND_PARAM,
+            produces = {MediaType.APPLICATION_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_SMILE_VALUE,
+                    WebConfig.APPLICATION_STREAM_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public Flux<VendorWithCategories> listVendorsWithCategories(@RequestParam(EXPAND_PARAM) String expand,
+            @RequestParam(name = Pagination.AFTER_PARAM, required = false) String after,
+            @RequestParam(name = Pagination.LIMIT_PARAM, defaultValue = "" + Pagination.DEFAULT_PAGE_SIZE) int limit) {
+        if (!EXPAND_CATEGORIES.equals(expand)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("%s must be %s", EXPAND_PARAM, EXPAND_CATEGORIES)));
+        }
+
+        return vendorRepository.findWithCategories(after, Pagination.pageOf(limit));
+    }
+
+    @GetMapping(value = "/search",
+            produces = {MediaType.APPLICATION_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_SMILE_VALUE,
+                    WebConfig.APPLICATION_STREAM_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public Flux<Vendor> searchVendors(@RequestParam(required = false) String lastName,
+                                      @RequestParam(required = false) String firstName,
+                                      @RequestParam(defaultValue = "" + DEFAULT_SEARCH_LIMIT) int limit) {
+        if (!StringUtils.hasText(lastName) && !StringUtils.hasText(firstName)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "lastName or firstName is required"));
+        }
+
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("limit must be between 1 and %d", MAX_SEARCH_LIMIT)));
+        }
+
+        return vendorRepository.searchByName(StringUtils.hasText(lastName) ? lastName : null,
+                StringUtils.hasText(firstName) ? firstName : null, limit);
+    }
+
+    @GetMapping(value = EventStreams.EVENTS_PATH, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<MutationEvent<Vendor>>> streamVendorEvents(
+            @RequestHeader(name = EventStreams.LAST_EVENT_ID_HEADER, required = false) Long lastEventIdHeader,
+            @RequestParam(name = EventStreams.LAST_EVENT_ID_PARAM, required = false) Long lastEventIdParam) {
+        return vendorEvents.stream(EventStreams.resumeAfter(lastEventIdHeader, lastEventIdParam))
+                .map(EventStreams::toServerSentEvent);
+    }
+
+    @GetMapping(STATS_PATH)
+    public Mono<EntityStats> getVendorStats() {
+        return Mono.fromSupplier(vendorStats::snapshot);
     }
 
-    @GetMapping
-    public Flux<Vendor> listVendors() {
-        return vendorRepository.findAll();
+    @GetMapping(Exports.EXPORT_PATH)
+    public ResponseEntity<Flux<DataBuffer>> exportVendors(
+            @RequestParam(name = Exports.FORMAT_PARAM, defaultValue = Exports.DEFAULT_FORMAT) String format,
+            ServerHttpResponse response) {
+        ExportFormat exportFormat = Exports.format(format);
+        return Exports.response(exportFormat, "vendors",
+                vendorRepository.export(exportFormat, response.bufferFactory()));
     }
 
     @GetMapping("/{id}")
-    public Mono<Vendor> getVendorById(@PathVariable String id) {
-        return vendorRepository.findById(id);
+    public Mono<ResponseEntity<Vendor>> getVendorById(@PathVariable String id,
+            @RequestParam(name = FIELDS_PARAM, required = false) Set<String> fields) {
+        if (fields != null) {
+            return vendorRepository.findByIdProjected(id, fields).map(ResponseEntity::ok);
+        }
+
+        return vendorRepository.findById(id).map(VendorController::tagged);
+    }
+
+    @PostMapping(value = BatchGet.BATCH_GET_PATH,
+            produces = {MediaType.APPLICATION_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_SMILE_VALUE,
+                    WebConfig.APPLICATION_STREAM_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public Flux<BatchGetResult<Vendor>> batchGetVendors(@RequestBody List<String> ids) {
+        return BatchGet.resolve(ids, vendorRepository::findAllById, Vendor::getId);
     }
 
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping
     public Mono<Void> createVendor(@RequestBody Publisher<Vendor> vendorStream) {
-        return vendorRepository.saveAll(vendorStream).then();
+        return vendorRepository.saveAll(vendorStream)
+                .doOnNext(saved -> vendorEvents.publish(MutationEvent.Type.CREATED, saved.getId(), saved))
+                .doOnNext(this::countSaved)
+                .then();
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(params = "bulk=true")
+    public Flux<BulkInsertResult> createVendorsInBulk(@RequestBody Publisher<Vendor> vendorStream) {
+        return vendorRepository.bulkInsert(vendorStream)
+                .doOnNext(this::publishInserted)
+                .doOnNext(result -> vendorStats.createdInBulk(result.getInserted()));
+    }
+
+    @PostMapping(value = Imports.IMPORT_PATH, consumes = WebConfig.APPLICATION_NDJSON_VALUE,
+            produces = {MediaType.APPLICATION_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_STREAM_JSON_VALUE})
+    public Flux<ImportProgress> importVendors(@RequestBody Flux<DataBuffer> body,
+            @RequestParam(name = Imports.SKIP_LINES_PARAM, defaultValue = "0") long skipLines,
+            @RequestParam(name = Imports.SKIP_BYTES_PARAM, defaultValue = "0") long skipBytes) {
+        return Imports.run(body, skipLines, skipBytes, objectMapper, Vendor.class,
+                vendors -> vendorRepository.bulkInsert(vendors)
+                        .doOnNext(this::publishInserted)
+                        .doOnNext(result -> vendorStats.createdInBulk(result.getInserted())));
+    }
+
+    @PostMapping(value = Imports.IMPORT_PATH, consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = {MediaType.APPLICATION_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_STREAM_JSON_VALUE})
+    public Flux<ImportProgress> importVendorsFromFile(@RequestPart(Imports.FILE_PART) Mono<FilePart> file,
+            @RequestParam(name = Imports.SKIP_LINES_PARAM, defaultValue = "0") long skipLines,
+            @RequestParam(name = Imports.SKIP_BYTES_PARAM, defaultValue = "0") long skipBytes) {
+        return file.flatMapMany(part -> importVendors(part.content(), skipLines, skipBytes));
     }
 
-    @ResponseStatus(HttpStatus.OK)
     @PutMapping("/{id}")
-    public Mono<Vendor> updateVendor(@PathVariable String id, @RequestBody Vendor vendor) {
-        vendor.setId(id);
-        return vendorRepository.save(vendor);
+    public Mono<ResponseEntity<Vendor>> updateVendor(@PathVariable String id,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Vendor vendor) {
+        Long expectedVersion = EntityTags.expectedVersion(ifMatch);
+
+        return vendorRepository.replace(id, vendor, expectedVersion)
+                .doOnNext(replaced -> vendorEvents.publish(MutationEvent.Type.UPDATED, id, replaced.getCurrent()))
+                .doOnNext(replaced -> vendorStats.updated(replaced.getPrevious(), replaced.getCurrent()))
+                .map(Updated::getCurrent)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(EntityTags.preconditionFailed())))
+                .map(VendorController::tagged);
+    }
+
+    @PatchMapping(produces = {MediaType.APPLICATION_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE,
+            MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_SMILE_VALUE,
+            WebConfig.APPLICATION_STREAM_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public Flux<BulkPatchResult> patchVendorsInBulk(@RequestBody Publisher<Vendor> vendorStream) {
+        return Flux.defer(() -> {
+            // one result per patch, in input order
+            Queue<Boolean> renames = new ConcurrentLinkedQueue<>();
+            return vendorRepository.bulkPatch(Flux.from(vendorStream)
+                    .doOnNext(patch -> renames.add(patch.getLastName() != null)))
+                    .doOnNext(result -> countPatched(result, Boolean.TRUE.equals(renames.poll())))
+                    .doOnNext(this::publishPatched);
+        });
     }
 
-    @ResponseStatus(HttpStatus.OK)
     @PatchMapping("/{id}")
-    public Mono<Vendor> patchVendor(@PathVariable String id, @RequestBody Vendor vendor) {
-        Vendor foundVendor = vendorRepository.findById(id).block();
-        boolean vendorChanged = false;
+    public Mono<ResponseEntity<Vendor>> patchVendor(@PathVariable String id,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Vendor vendor) {
+        Long expectedVersion = EntityTags.expectedVersion(ifMatch);
 
-        if (foundVendor == null) {
-            throw new RuntimeException(String.format("Vendor with ID = %s not found", id));
-        }
+        return vendorRepository.updateIfChanged(id, vendor, expectedVersion)
+                .doOnNext(updated -> vendorEvents.publish(MutationEvent.Type.UPDATED, id, updated.getCurrent()))
+                .doOnNext(updated -> vendorStats.updated(updated.getPrevious(), updated.getCurrent()))
+                .map(Updated::getCurrent)
+                .switchIfEmpty(Mono.defer(() -> unchangedVendor(id, expectedVersion)))
+                .map(VendorController::tagged);
+    }
 
-        if (vendor == null) {
-            throw new RuntimeException("Request vendor is null");
-        }
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @DeleteMapping("/{id}")
+    public Mono<Void> deleteVendor(@PathVariable String id) {
+        return vendorRepository.findAndDeleteById(id)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(vendorNotFound(id))))
+                .doOnNext(deleted -> vendorEvents.publish(MutationEvent.Type.DELETED, id, deleted))
+                .doOnNext(vendorStats::deleted)
+                .then();
+    }
 
-        if (foundVendor.getFirstName() == null) {
-            foundVendor.setFirstName("");
-        }
+    /**
+     * Nothing was written, so the stored entity is returned as is, provided it exists and is still
+     * at the version the client expects.
+     */
+    private Mono<Vendor> unchangedVendor(String id, Long expectedVersion) {
+        return vendorRepository.findById(id)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(vendorNotFound(id))))
+                .flatMap(current -> EntityTags.matches(current.getVersion(), expectedVersion)
+                        ? Mono.just(current)
+                        : Mono.error(EntityTags.preconditionFailed()));
+    }
 
-        if (foundVendor.getLastName() == null) {
-            foundVendor.setLastName("");
+    /**
+     * Bulk inserts do not read the vendors back, so their events carry the id without the vendor.
+     */
+    private void publishInserted(BulkInsertResult result) {
+        result.getInsertedIds().forEach(id -> vendorEvents.publish(MutationEvent.Type.CREATED, id, null));
+    }
+
+    /**
+     * Like bulk inserts, bulk patches do not read the vendors back, so the event carries the id only.
+     */
+    private void publishPatched(BulkPatchResult result) {
+        if (result.getStatus() == BulkPatchResult.Status.MODIFIED) {
+            vendorEvents.publish(MutationEvent.Type.UPDATED, result.getId(), null);
         }
+    }
 
-        if (vendor.getFirstName() != null &&
-                !foundVendor.getFirstName().equals(vendor.getFirstName())) {
-            vendorChanged = true;
-            foundVendor.setFirstName(vendor.getFirstName());
+    /**
+     * Spring Data inserts entities without a version and starts them at version 0, so any higher
+     * version means an existing vendor was overwritten, possibly under another last name.
+     */
+    private void countSaved(Vendor saved) {
+        if (saved.getVersion() == null || saved.getVersion() == 0) {
+            vendorStats.created(saved);
+        } else {
+            vendorStats.markStale();
         }
+    }
 
-        if (vendor.getLastName() != null &&
-                !foundVendor.getLastName().equals(vendor.getLastName())) {
-            vendorChanged = true;
-            foundVendor.setLastName(vendor.getLastName());
+    /**
+     * Bulk patches do not report the previous last names, so a rename that was written may have
+     * moved a vendor to another initial and leaves the breakdown to the reconciler.
+     */
+    private void countPatched(BulkPatchResult result, boolean renamed) {
+        if (renamed && result.getStatus() == BulkPatchResult.Status.MODIFIED) {
+            vendorStats.markStale();
         }
+    }
 
-        return vendorChanged ? vendorRepository.save(foundVendor) : Mono.just(foundVendor);
+    private static ResponseEntity<Vendor> tagged(Vendor vendor) {
+        return ResponseEntity.ok().eTag(EntityTags.of(vendor.getVersion())).body(vendor);
+    }
 
+    private static ResponseStatusException vendorNotFound(String id) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND,
+                String.format("Vendor with ID = %s not found", id));
     }
 
 }
@@ -0,0 +1,187 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.domain.BatchGetResult;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
+import com.kkukielka.springwebfluxrest.domain.EntityStats;
+import com.kkukielka.springwebfluxrest.domain.ImportProgress;
+import com.kkukielka.springwebfluxrest.domain.MutationEvent;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.domain.VendorWithCategories;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * Functional equivalent of the {@link VendorController} request mappings. Requests are parsed
+ * directly from the {@link ServerRequest} and handed to the controller methods, which skips the
+ * reflective handler-method invocation and argument resolution.
+ */
+public class VendorRoutes {
+
+    private static final String ID_PATH = VendorController.BASE_URL + "/{id}";
+    private static final ParameterizedTypeReference<BatchGetResult<Vendor>> BATCH_GET_RESULT_TYPE =
+            new ParameterizedTypeReference<BatchGetResult<Vendor>>() {
+            };
+    private static final ParameterizedTypeReference<ServerSentEvent<MutationEvent<Vendor>>> EVENT_TYPE =
+            new ParameterizedTypeReference<ServerSentEvent<MutationEvent<Vendor>>>() {
+            };
+
+    private final VendorController vendorController;
+
+    public VendorRoutes(VendorController vendorController) {
+        this.vendorController = vendorController;
+    }
+
+    public RouterFunction<ServerResponse> routerFunction() {
+        return RouterFunctions.route()
+                .GET(VendorController.BASE_URL, this::listVendors)
+                .GET(VendorController.BASE_URL + "/search", this::searchVendors)
+                .GET(VendorController.BASE_URL + EventStreams.EVENTS_PATH, this::streamVendorEvents)
+                .GET(VendorController.BASE_URL + VendorController.STATS_PATH, this::getVendorStats)
+                .GET(VendorController.BASE_URL + Exports.EXPORT_PATH, this::exportVendors)
+                .GET(ID_PATH, this::getVendorById)
+                .POST(VendorController.BASE_URL + BatchGet.BATCH_GET_PATH, this::batchGetVendors)
+                .POST(VendorController.BASE_URL + Imports.IMPORT_PATH,
+                        RequestPredicates.contentType(WebConfig.APPLICATION_NDJSON), this::importVendors)
+                .POST(VendorController.BASE_URL + Imports.IMPORT_PATH,
+                        RequestPredicates.contentType(MediaType.MULTIPART_FORM_DATA), this::importVendorsFromFile)
+                .POST(VendorController.BASE_URL, RequestPredicates.queryParam("bulk", "true"::equals),
+                        this::createVendorsInBulk)
+                .POST(VendorController.BASE_URL, this::createVendor)
+                .PUT(ID_PATH, this::updateVendor)
+                .PATCH(VendorController.BASE_URL, this::patchVendorsInBulk)
+                .PATCH(ID_PATH, this::patchVendor)
+                .DELETE(ID_PATH, this::deleteVendor)
+                .build();
+    }
+
+    private Mono<ServerResponse> listVendors(ServerRequest request) {
+        if (request.queryParam(VendorController.EXPAND_PARAM).isPresent()) {
+            return RouteSupport.stream(request, HttpStatus.OK, vendorController.listVendorsWithCategories(
+                    RouteSupport.param(request, VendorController.EXPAND_PARAM),
+                    RouteSupport.param(request, Pagination.AFTER_PARAM),
+                    RouteSupport.intParam(request, Pagination.LIMIT_PARAM, Pagination.DEFAULT_PAGE_SIZE)),
+                    VendorWithCategories.class);
+        }
+
+        if (RouteSupport.isPageRequest(request)) {
+            return RouteSupport.entity(request, vendorController.listVendorsPage(
+                    RouteSupport.param(request, Pagination.AFTER_PARAM),
+                    RouteSupport.intParam(request, Pagination.LIMIT_PARAM, Pagination.DEFAULT_PAGE_SIZE)));
+        }
+
+        return RouteSupport.stream(request, HttpStatus.OK,
+                vendorController.listVendors(RouteSupport.fields(request, VendorController.FIELDS_PARAM)),
+                Vendor.class);
+    }
+
+    private Mono<ServerResponse> searchVendors(ServerRequest request) {
+        return RouteSupport.stream(request, HttpStatus.OK, vendorController.searchVendors(
+                RouteSupport.param(request, "lastName"),
+                RouteSupport.param(request, "firstName"),
+                RouteSupport.intParam(request, "limit", VendorController.DEFAULT_SEARCH_LIMIT)), Vendor.class);
+    }
+
+    private Mono<ServerResponse> streamVendorEvents(ServerRequest request) {
+        Long lastEventIdHeader = RouteSupport.longValue(
+                request.headers().asHttpHeaders().getFirst(EventStreams.LAST_EVENT_ID_HEADER),
+                EventStreams.LAST_EVENT_ID_HEADER);
+        Long lastEventIdParam = RouteSupport.longValue(
+                RouteSupport.param(request, EventStreams.LAST_EVENT_ID_PARAM), EventStreams.LAST_EVENT_ID_PARAM);
+
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(vendorController.streamVendorEvents(lastEventIdHeader, lastEventIdParam), EVENT_TYPE);
+    }
+
+    private Mono<ServerResponse> getVendorStats(ServerRequest request) {
+        return ServerResponse.ok().body(vendorController.getVendorStats(), EntityStats.class);
+    }
+
+    private Mono<ServerResponse> exportVendors(ServerRequest request) {
+        return RouteSupport.export(vendorController.exportVendors(
+                request.queryParam(Exports.FORMAT_PARAM).orElse(Exports.DEFAULT_FORMAT),
+                request.exchange().getResponse()));
+    }
+
+    private Mono<ServerResponse> getVendorById(ServerRequest request) {
+        return RouteSupport.entity(request, vendorController.getVendorById(request.pathVariable("id"),
+                RouteSupport.fields(request, VendorController.FIELDS_PARAM)));
+    }
+
+    private Mono<ServerResponse> batchGetVendors(ServerRequest request) {
+        return RouteSupport.ids(request).flatMap(ids -> RouteSupport.stream(request, HttpStatus.OK,
+                vendorController.batchGetVendors(ids), BATCH_GET_RESULT_TYPE));
+    }
+
+    private Mono<ServerResponse> importVendors(ServerRequest request) {
+        return RouteSupport.stream(request, HttpStatus.OK, vendorController.importVendors(
+                request.bodyToFlux(DataBuffer.class), skipLines(request), skipBytes(request)), ImportProgress.class);
+    }
+
+    private Mono<ServerResponse> importVendorsFromFile(ServerRequest request) {
+        Mono<FilePart> file = request.body(BodyExtractors.toParts())
+                .filter(part -> part instanceof FilePart && Imports.FILE_PART.equals(part.name()))
+                .cast(FilePart.class)
+                .next();
+        return RouteSupport.stream(request, HttpStatus.OK,
+                vendorController.importVendorsFromFile(file, skipLines(request), skipBytes(request)),
+                ImportProgress.class);
+    }
+
+    private static long skipLines(ServerRequest request) {
+        Long skipLines = RouteSupport.longValue(RouteSupport.param(request, Imports.SKIP_LINES_PARAM),
+                Imports.SKIP_LINES_PARAM);
+        return skipLines == null ? 0 : skipLines;
+    }
+
+    private static long skipBytes(ServerRequest request) {
+        Long skipBytes = RouteSupport.longValue(RouteSupport.param(request, Imports.SKIP_BYTES_PARAM),
+                Imports.SKIP_BYTES_PARAM);
+        return skipBytes == null ? 0 : skipBytes;
+    }
+
+    private Mono<ServerResponse> createVendor(ServerRequest request) {
+        return RouteSupport.empty(HttpStatus.CREATED, vendorController.createVendor(request.bodyToFlux(Vendor.class)));
+    }
+
+    private Mono<ServerResponse> createVendorsInBulk(ServerRequest request) {
+        return RouteSupport.stream(request, HttpStatus.CREATED,
+                vendorController.createVendorsInBulk(request.bodyToFlux(Vendor.class)), BulkInsertResult.class);
+    }
+
+    private Mono<ServerResponse> updateVendor(ServerRequest request) {
+        String ifMatch = request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_MATCH);
+        return RouteSupport.entity(request, request.bodyToMono(Vendor.class)
+                .flatMap(vendor -> vendorController.updateVendor(request.pathVariable("id"), ifMatch, vendor)));
+    }
+
+    private Mono<ServerResponse> patchVendorsInBulk(ServerRequest request) {
+        return RouteSupport.stream(request, HttpStatus.OK,
+                vendorController.patchVendorsInBulk(request.bodyToFlux(Vendor.class)), BulkPatchResult.class);
+    }
+
+    private Mono<ServerResponse> patchVendor(ServerRequest request) {
+        String ifMatch = request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_MATCH);
+        return RouteSupport.entity(request, request.bodyToMono(Vendor.class)
+                .flatMap(vendor -> vendorController.patchVendor(request.pathVariable("id"), ifMatch, vendor)));
+    }
+
+    private Mono<ServerResponse> deleteVendor(ServerRequest request) {
+        return RouteSupport.empty(HttpStatus.NO_CONTENT, vendorController.deleteVendor(request.pathVariable("id")));
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchGetResult<T> {
+
+    private String id;
+    private boolean found;
+    private T entity;
+
+}
@@ -0,0 +1,38 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkInsertResult {
+
+    private long batch;
+    private int size;
+    private int inserted;
+    private int failed;
+    private String error;
+
+    /**
+     * Ids of the entities this batch inserted, for publishing their change events. Not part of
+     * the response.
+     */
+    @JsonIgnore
+    private List<String> insertedIds;
+
+    public List<String> getInsertedIds() {
+        if (insertedIds == null) {
+            insertedIds = new ArrayList<>();
+        }
+        return insertedIds;
+    }
+
+}
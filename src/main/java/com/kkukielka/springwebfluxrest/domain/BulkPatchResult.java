@@ -0,0 +1,31 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPatchResult {
+
+    public enum Status {
+        /**
+         * At least one supplied field differed and was written.
+         */
+        MODIFIED,
+        /**
+         * The entity exists but already had the supplied values.
+         */
+        MATCHED,
+        NOT_FOUND,
+        FAILED
+    }
+
+    private String id;
+    private Status status;
+    private String error;
+
+}
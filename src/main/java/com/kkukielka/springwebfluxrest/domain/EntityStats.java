@@ -0,0 +1,25 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityStats {
+
+    private long count;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Long> countsByLastNameInitial;
+
+    private Instant reconciledAt;
+
+}
@@ -0,0 +1,27 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of an import. Every line up to {@code lines}, which ends at byte {@code bytes}, has
+ * been written or rejected, so a failed import resumes by posting the file again with
+ * {@code skipLines} or {@code skipBytes} set to these values. Once a batch fails to write, these
+ * stay at the end of the last batch before it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportProgress {
+
+    private long lines;
+    private long bytes;
+    private long inserted;
+    private long failed;
+    private String error;
+    private boolean done;
+
+}
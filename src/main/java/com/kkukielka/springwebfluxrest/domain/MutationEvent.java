@@ -0,0 +1,23 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MutationEvent<T> {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private long id;
+    private Type type;
+    private String entityId;
+    private T entity;
+
+}
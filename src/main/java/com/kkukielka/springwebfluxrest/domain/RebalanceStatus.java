@@ -0,0 +1,30 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Progress of moving vendors to the shards that own them after the set of shards changed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RebalanceStatus {
+
+    public enum State {
+        IDLE, RUNNING, DONE, FAILED
+    }
+
+    private State state;
+    private long scanned;
+    private long moved;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String error;
+
+}
@@ -5,8 +5,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -20,4 +23,13 @@ public class Vendor {
     private String firstName;
     private String lastName;
 
+    /**
+     * Ids of the categories the vendor belongs to; {@code GET /api/v1/vendors?expand=categories}
+     * resolves them.
+     */
+    private List<String> categoryIds;
+
+    @Version
+    private Long version;
+
 }
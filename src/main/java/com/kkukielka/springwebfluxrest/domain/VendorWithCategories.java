@@ -0,0 +1,30 @@
+package com.kkukielka.springwebfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+import java.util.List;
+
+/**
+ * A vendor with its {@link Vendor#getCategoryIds() category references} resolved. Categories that
+ * no longer exist are left out of {@code categories}, and the rest come in no particular order.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VendorWithCategories {
+
+    @Id
+    private String id;
+
+    private String firstName;
+    private String lastName;
+    private List<String> categoryIds;
+    private List<Category> categories;
+    private Long version;
+
+}
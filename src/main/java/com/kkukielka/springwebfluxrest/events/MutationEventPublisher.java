@@ -0,0 +1,79 @@
+package com.kkukielka.springwebfluxrest.events;
+
+import com.kkukielka.springwebfluxrest.domain.MutationEvent;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.ReplayProcessor;
+
+/**
+ * Multicasts the mutations of one resource to any number of subscribers. The last
+ * {@code historySize} events are retained so that a reconnecting client can resume after the
+ * last event id it has seen.
+ */
+@Slf4j
+public class MutationEventPublisher<T> {
+
+    public enum Overflow {
+        /**
+         * Keep the newest {@code bufferSize} events for a slow subscriber and drop older ones.
+         */
+        DROP_OLDEST,
+        /**
+         * Terminate a subscriber whose buffer of {@code bufferSize} events fills up.
+         */
+        DISCONNECT
+    }
+
+    private final ReplayProcessor<MutationEvent<T>> events;
+    private final FluxSink<MutationEvent<T>> sink;
+    private final int bufferSize;
+    private final Overflow overflow;
+
+    private long sequence;
+
+    public MutationEventPublisher(int historySize, int bufferSize, Overflow overflow) {
+        this.events = ReplayProcessor.create(historySize);
+        this.sink = events.sink();
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Ids are assigned and emitted under the same lock so that subscribers always see them in
+     * increasing order, which the resume filter relies on.
+     */
+    public synchronized void publish(MutationEvent.Type type, String entityId, T entity) {
+        sink.next(MutationEvent.<T>builder()
+                .id(++sequence)
+                .type(type)
+                .entityId(entityId)
+                .entity(entity)
+                .build());
+    }
+
+    /**
+     * Streams events published after {@code lastEventId}, or only new events when it is
+     * {@code null}. Events that already fell out of the history are not replayed.
+     */
+    public Flux<MutationEvent<T>> stream(Long lastEventId) {
+        return Flux.defer(() -> {
+            long after = lastEventId != null ? lastEventId : currentSequence();
+            Flux<MutationEvent<T>> stream = events.filter(event -> event.getId() > after);
+
+            if (overflow == Overflow.DISCONNECT) {
+                return stream.onBackpressureBuffer(bufferSize);
+            }
+
+            return stream.onBackpressureBuffer(bufferSize,
+                    dropped -> log.debug("Dropped event {} for a slow subscriber", dropped.getId()),
+                    BufferOverflowStrategy.DROP_OLDEST);
+        });
+    }
+
+    private synchronized long currentSequence() {
+        return sequence;
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.kkukielka.springwebfluxrest.limit;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-flight request limit adjusted by additive increase / multiplicative decrease: a response
+ * slower than the latency threshold multiplies the limit by the backoff ratio, while fast
+ * responses grow it by roughly one per limit's worth of requests, but only while at least half of
+ * it is in use. The requests that finish slowly right after a decrease were admitted before it,
+ * so the limit backs off at most once per latency threshold.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    // written under the lock only, read without it on every acquire
+    private volatile double limit;
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold,
+                                    double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - latencyThresholdNanos;
+    }
+
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Returns a permit. Latency only counts when {@code sample} is set, so that cancelled requests
+     * do not skew the limit.
+     */
+    public void release(long latencyNanos, boolean sample) {
+        int inFlightBeforeRelease = inFlight.getAndDecrement();
+        if (sample) {
+            onSample(latencyNanos, inFlightBeforeRelease);
+        }
+    }
+
+    private synchronized void onSample(long latencyNanos, int inFlightBeforeRelease) {
+        double current = limit;
+        if (latencyNanos > latencyThresholdNanos) {
+            long now = System.nanoTime();
+            if (now - lastDecreaseNanos >= latencyThresholdNanos) {
+                limit = Math.max(minLimit, current * backoffRatio);
+                lastDecreaseNanos = now;
+            }
+        } else if (inFlightBeforeRelease * 2 >= current) {
+            limit = Math.min(maxLimit, current + 1 / current);
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+}
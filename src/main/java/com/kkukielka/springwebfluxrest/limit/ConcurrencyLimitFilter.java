@@ -0,0 +1,158 @@
+package com.kkukielka.springwebfluxrest.limit;
+
+import com.kkukielka.springwebfluxrest.controllers.CategoryController;
+import com.kkukielka.springwebfluxrest.controllers.VendorController;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sheds requests with 503 once a route group (vendors or categories, reads or writes) has as many
+ * requests in flight as its adaptive limit allows. Event streams and exports are long-lived by
+ * design, so they are not counted. Bulk inserts, bulk patches and imports hold a write permit, but
+ * take as long as their input does, and unpaged listings take as long as the collection is large,
+ * so their latency does not shrink the limit. Other requests are timed until the response is
+ * committed, so a streamed response counts the time to its first element rather than how fast the
+ * client reads the rest.
+ */
+public class ConcurrencyLimitFilter implements WebFilter, MeterBinder, Ordered {
+
+    private static final String EVENTS_PATH_SUFFIX = "/_events";
+    private static final String EXPORT_PATH_SUFFIX = "/_export";
+    private static final String BATCH_GET_PATH_SUFFIX = "/_batchGet";
+    private static final String IMPORT_PATH_SUFFIX = "/_import";
+    private static final String BULK_PARAM = "bulk";
+    private static final String AFTER_PARAM = "after";
+    private static final String LIMIT_PARAM = "limit";
+    private static final String EXPAND_PARAM = "expand";
+
+    private final Map<String, AdaptiveConcurrencyLimit> limits = new LinkedHashMap<>();
+    private final String retryAfterSeconds;
+
+    public ConcurrencyLimitFilter(Supplier<AdaptiveConcurrencyLimit> limitFactory, Duration retryAfter) {
+        for (String resource : Arrays.asList("vendors", "categories")) {
+            limits.put(resource + ".read", limitFactory.get());
+            limits.put(resource + ".write", limitFactory.get());
+        }
+        this.retryAfterSeconds = String.valueOf(Math.max(1, retryAfter.getSeconds()));
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String group = group(exchange.getRequest());
+        if (group == null) {
+            return chain.filter(exchange);
+        }
+
+        AdaptiveConcurrencyLimit limit = limits.get(group);
+        if (!limit.tryAcquire()) {
+            return reject(exchange.getResponse());
+        }
+
+        boolean sampled = !isBulk(exchange.getRequest()) && !isScan(exchange.getRequest());
+        long start = System.nanoTime();
+        AtomicLong untilCommit = new AtomicLong(-1);
+        exchange.getResponse().beforeCommit(() -> {
+            untilCommit.compareAndSet(-1, System.nanoTime() - start);
+            return Mono.empty();
+        });
+
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    long latency = untilCommit.get();
+                    limit.release(latency >= 0 ? latency : System.nanoTime() - start,
+                            sampled && signal != SignalType.CANCEL);
+                });
+    }
+
+    // after the metrics filter, so that shed requests still show up in http.server.requests
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        limits.forEach((group, limit) -> {
+            Gauge.builder("http.server.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Current adaptive in-flight limit")
+                    .tag("group", group)
+                    .register(registry);
+            Gauge.builder("http.server.concurrency.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("Requests currently holding a permit")
+                    .tag("group", group)
+                    .register(registry);
+            FunctionCounter.builder("http.server.concurrency.rejected", limit, AdaptiveConcurrencyLimit::getRejected)
+                    .description("Requests shed with 503")
+                    .tag("group", group)
+                    .register(registry);
+        });
+    }
+
+    AdaptiveConcurrencyLimit limit(String group) {
+        return limits.get(group);
+    }
+
+    private static String group(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        String resource = path.startsWith(VendorController.BASE_URL) ? "vendors"
+                : path.startsWith(CategoryController.BASE_URL) ? "categories"
+                : null;
+
+        // by route rather than by Accept header, which any client could set to get around the limit
+        if (resource == null || path.endsWith(EVENTS_PATH_SUFFIX) || path.endsWith(EXPORT_PATH_SUFFIX)) {
+            return null;
+        }
+
+        HttpMethod method = request.getMethod();
+        boolean read = method == HttpMethod.GET || method == HttpMethod.HEAD
+                || path.endsWith(BATCH_GET_PATH_SUFFIX);
+        return resource + (read ? ".read" : ".write");
+    }
+
+    private static boolean isBulk(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        boolean collection = path.equals(VendorController.BASE_URL) || path.equals(CategoryController.BASE_URL);
+        HttpMethod method = request.getMethod();
+        return path.endsWith(IMPORT_PATH_SUFFIX)
+                || collection && method == HttpMethod.PATCH
+                || collection && method == HttpMethod.POST
+                && Boolean.parseBoolean(request.getQueryParams().getFirst(BULK_PARAM));
+    }
+
+    private static boolean isScan(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        boolean collection = path.equals(VendorController.BASE_URL) || path.equals(CategoryController.BASE_URL);
+        MultiValueMap<String, String> params = request.getQueryParams();
+        return collection && (request.getMethod() == HttpMethod.GET || request.getMethod() == HttpMethod.HEAD)
+                && !params.containsKey(AFTER_PARAM) && !params.containsKey(LIMIT_PARAM)
+                && !params.containsKey(EXPAND_PARAM);
+    }
+
+    private Mono<Void> reject(ServerHttpResponse response) {
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        return response.setComplete();
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.kkukielka.springwebfluxrest.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
+import reactor.netty.resources.LoopResources;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes the number of open server connections and the pending task count of every Reactor
+ * Netty server event loop.
+ */
+public class NettyServerMetrics implements MeterBinder, WebServerFactoryCustomizer<NettyReactiveWebServerFactory> {
+
+    private final ReactorResourceFactory resourceFactory;
+    private final AtomicInteger activeConnections = new AtomicInteger();
+
+    public NettyServerMetrics(ReactorResourceFactory resourceFactory) {
+        this.resourceFactory = resourceFactory;
+    }
+
+    @Override
+    public void customize(NettyReactiveWebServerFactory factory) {
+        factory.addServerCustomizers(httpServer -> httpServer.tcpConfiguration(tcpServer ->
+                tcpServer.doOnConnection(connection -> {
+                    activeConnections.incrementAndGet();
+                    connection.onDispose(activeConnections::decrementAndGet);
+                })));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("reactor.netty.connections.active", activeConnections, AtomicInteger::get)
+                .description("Open HTTP server connections")
+                .register(registry);
+
+        int index = 0;
+        for (EventExecutor executor : resourceFactory.getLoopResources().onServer(LoopResources.DEFAULT_NATIVE)) {
+            if (executor instanceof SingleThreadEventExecutor) {
+                Gauge.builder("reactor.netty.eventloop.pending.tasks", (SingleThreadEventExecutor) executor,
+                        SingleThreadEventExecutor::pendingTasks)
+                        .description("Tasks queued on a server event loop")
+                        .tag("eventloop", String.valueOf(index++))
+                        .register(registry);
+            }
+        }
+    }
+
+}
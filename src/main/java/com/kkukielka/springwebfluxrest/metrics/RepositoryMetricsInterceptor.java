@@ -0,0 +1,101 @@
+package com.kkukielka.springwebfluxrest.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every reactive repository call from subscription to termination and counts its errors.
+ * Meters are resolved once per method and then reused, so the hot path is two clock reads and
+ * one timer update.
+ */
+public class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+    public static final String INVOCATIONS_METRIC = "repository.invocations";
+    public static final String ERRORS_METRIC = "repository.errors";
+
+    private final MeterRegistry meterRegistry;
+    private final String repository;
+    private final Map<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    public RepositoryMetricsInterceptor(MeterRegistry meterRegistry, String repository) {
+        this.meterRegistry = meterRegistry;
+        this.repository = repository;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+
+        if (result instanceof Mono) {
+            MethodMeters methodMeters = metersFor(invocation.getMethod());
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return ((Mono<?>) result)
+                        .doOnError(error -> methodMeters.errors.increment())
+                        .doFinally(signal -> methodMeters.record(signal, System.nanoTime() - start));
+            });
+        }
+
+        if (result instanceof Flux) {
+            MethodMeters methodMeters = metersFor(invocation.getMethod());
+            return Flux.defer(() -> {
+                long start = System.nanoTime();
+                return ((Flux<?>) result)
+                        .doOnError(error -> methodMeters.errors.increment())
+                        .doFinally(signal -> methodMeters.record(signal, System.nanoTime() - start));
+            });
+        }
+
+        return result;
+    }
+
+    private MethodMeters metersFor(Method method) {
+        return meters.computeIfAbsent(method, m -> new MethodMeters(m.getName()));
+    }
+
+    private final class MethodMeters {
+
+        private final Timer success;
+        private final Timer error;
+        private final Timer cancelled;
+        private final Counter errors;
+
+        private MethodMeters(String method) {
+            this.success = timer(method, "SUCCESS");
+            this.error = timer(method, "ERROR");
+            this.cancelled = timer(method, "CANCELLED");
+            this.errors = Counter.builder(ERRORS_METRIC)
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .register(meterRegistry);
+        }
+
+        private Timer timer(String method, String outcome) {
+            return Timer.builder(INVOCATIONS_METRIC)
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+
+        private void record(SignalType signal, long nanos) {
+            Timer timer = signal == SignalType.ON_ERROR ? error
+                    : signal == SignalType.CANCEL ? cancelled
+                    : success;
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.kkukielka.springwebfluxrest.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+/**
+ * Wraps every reactive Mongo repository in a proxy that records {@link RepositoryMetricsInterceptor}
+ * timings. The registry is looked up lazily because post processors are created before it.
+ */
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof ReactiveMongoRepository)) {
+            return bean;
+        }
+
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.addAdvice(new RepositoryMetricsInterceptor(meterRegistry.getObject(), beanName));
+        return proxyFactory.getProxy();
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Cuts a stream into batches of at most the configured size, flushing a partially filled batch
+ * once the flush interval passes. Unlike {@code bufferTimeout}, which fails with "Could not emit
+ * buffer due to lack of requests" when the timer fires while the consumer is busy, a tick that
+ * finds no demand is dropped, and items are only requested as the consumer takes batches.
+ */
+public final class Batches {
+
+    private Batches() {
+    }
+
+    public static <T> Flux<List<T>> of(Publisher<T> items, BulkInsertProperties properties) {
+        int batchSize = properties.getBatchSize();
+
+        return Flux.defer(() -> {
+            MonoProcessor<Void> itemsDone = MonoProcessor.create();
+            AtomicInteger filled = new AtomicInteger();
+
+            Flux<Optional<T>> present = Flux.from(items)
+                    .map(Optional::of)
+                    .doFinally(signal -> itemsDone.onComplete());
+            Flux<Optional<T>> ticks = Flux.interval(properties.getFlushInterval())
+                    .onBackpressureDrop()
+                    .map(tick -> Optional.<T>empty())
+                    .takeUntilOther(itemsDone);
+
+            return Flux.merge(present, ticks)
+                    .bufferUntil(item -> {
+                        if (item.isPresent() && filled.incrementAndGet() < batchSize) {
+                            return false;
+                        }
+                        filled.set(0);
+                        return true;
+                    })
+                    .map(buffered -> buffered.stream()
+                            .filter(Optional::isPresent)
+                            .map(Optional::get)
+                            .collect(Collectors.toList()))
+                    .filter(batch -> !batch.isEmpty());
+        });
+    }
+
+}
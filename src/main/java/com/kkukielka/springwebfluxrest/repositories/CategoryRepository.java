@@ -1,7 +1,14 @@
 package com.kkukielka.springwebfluxrest.repositories;
 
 import com.kkukielka.springwebfluxrest.domain.Category;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+public interface CategoryRepository extends ReactiveMongoRepository<Category, String>, CategoryRepositoryCustom {
+
+    Flux<Category> findAllByOrderByIdAsc(Pageable pageable);
+
+    Flux<Category> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
 
-public interface CategoryRepository extends ReactiveMongoRepository<Category, String> {
 }
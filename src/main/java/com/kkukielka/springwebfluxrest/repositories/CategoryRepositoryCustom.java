@@ -0,0 +1,51 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface CategoryRepositoryCustom {
+
+    /**
+     * Overrides the derived lookup so that reads go through the in-process entity cache.
+     */
+    Mono<Category> findById(String id);
+
+    Mono<Category> findByIdProjected(String id, Collection<String> fields);
+
+    Flux<Category> findAllProjected(Collection<String> fields);
+
+    /**
+     * Applies the non-null fields of {@code category} in a single findAndModify that only matches
+     * when at least one of them differs from the stored value. Completes empty when nothing
+     * was written, either because the category does not exist or because nothing changed.
+     */
+    Mono<Category> updateIfChanged(String id, Category category, Long expectedVersion);
+
+    /**
+     * Replaces the description of the category and bumps its version. Without
+     * {@code expectedVersion} a missing category is created; with it, completes empty unless the
+     * stored version matches.
+     */
+    Mono<Updated<Category>> replace(String id, Category category, Long expectedVersion);
+
+    /**
+     * Deletes the category with a single findAndRemove and emits it as it was before the delete,
+     * or completes empty when there was no such category.
+     */
+    Mono<Category> findAndDeleteById(String id);
+
+    Flux<BulkInsertResult> bulkInsert(Publisher<Category> categories);
+
+    /**
+     * Streams every category as NDJSON or CSV without mapping the documents to entities.
+     */
+    Flux<DataBuffer> export(ExportFormat format, DataBufferFactory bufferFactory);
+
+}
@@ -0,0 +1,127 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.kkukielka.springwebfluxrest.cache.ReadThroughCache;
+import com.kkukielka.springwebfluxrest.cache.SingleFlight;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+public class CategoryRepositoryCustomImpl implements CategoryRepositoryCustom {
+
+    private static final List<String> CSV_COLUMNS = Arrays.asList("id", "description", "version");
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MongoBulkInserter bulkInserter;
+    private final MongoExporter exporter;
+    private final ReadThroughCache<Category> categoryCache;
+    private final SingleFlight<Category> categoryLoads = new SingleFlight<>();
+
+    public CategoryRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate,
+                                       MongoBulkInserter bulkInserter,
+                                       MongoExporter exporter,
+                                       ReadThroughCache<Category> categoryCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.bulkInserter = bulkInserter;
+        this.exporter = exporter;
+        this.categoryCache = categoryCache;
+    }
+
+    @Override
+    public Mono<Category> findById(String id) {
+        return categoryCache.get(id, key -> categoryLoads.execute(key,
+                k -> mongoTemplate.findById(k, Category.class)));
+    }
+
+    @Override
+    public Mono<Category> findByIdProjected(String id, Collection<String> fields) {
+        return Mono.fromCallable(() -> projection(Query.query(Criteria.where("id").is(id)), fields))
+                .flatMap(query -> mongoTemplate.findOne(query, Category.class));
+    }
+
+    @Override
+    public Flux<Category> findAllProjected(Collection<String> fields) {
+        return Mono.fromCallable(() -> projection(new Query(), fields))
+                .flatMapMany(query -> mongoTemplate.find(query, Category.class));
+    }
+
+    @Override
+    public Mono<Category> updateIfChanged(String id, Category category, Long expectedVersion) {
+        if (category.getDescription() == null) {
+            return Mono.empty();
+        }
+
+        Query query = Query.query(Versions.matching(Criteria.where("id").is(id), expectedVersion)
+                .and("description").ne(category.getDescription()));
+        Update update = Versions.increment(Update.update("description", category.getDescription()));
+
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Category.class)
+                .doOnNext(updated -> categoryCache.invalidate(id));
+    }
+
+    /**
+     * Reads the pre-image back like the vendor replace does; without an expected version an
+     * empty result means the category was created by the upsert.
+     */
+    @Override
+    public Mono<Updated<Category>> replace(String id, Category category, Long expectedVersion) {
+        Query query = Query.query(Versions.matching(Criteria.where("id").is(id), expectedVersion));
+        Update update = Versions.increment(new Update());
+        if (category.getDescription() == null) {
+            update.unset("description");
+        } else {
+            update.set("description", category.getDescription());
+        }
+
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(false).upsert(expectedVersion == null), Category.class)
+                .map(previous -> new Updated<>(previous, replacement(id, category, previous)))
+                .switchIfEmpty(expectedVersion == null
+                        ? Mono.fromSupplier(() -> new Updated<>(null, replacement(id, category, null)))
+                        : Mono.empty())
+                .doOnNext(replaced -> categoryCache.invalidate(id));
+    }
+
+    private static Category replacement(String id, Category category, Category previous) {
+        return Category.builder()
+                .id(id)
+                .description(category.getDescription())
+                .version(Versions.next(previous == null ? null : previous.getVersion()))
+                .build();
+    }
+
+    @Override
+    public Mono<Category> findAndDeleteById(String id) {
+        return mongoTemplate.findAndRemove(Query.query(Criteria.where("id").is(id)), Category.class)
+                .doOnNext(deleted -> categoryCache.invalidate(id));
+    }
+
+    @Override
+    public Flux<BulkInsertResult> bulkInsert(Publisher<Category> categories) {
+        return bulkInserter.insert(categories, Category.class);
+    }
+
+    @Override
+    public Flux<DataBuffer> export(ExportFormat format, DataBufferFactory bufferFactory) {
+        return exporter.export(Category.class, format, CSV_COLUMNS, bufferFactory);
+    }
+
+    private Query projection(Query query, Collection<String> fields) {
+        return Projections.include(query,
+                mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(Category.class), fields);
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.support.ExampleMatcherAccessor;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates a query by example in process the way Mongo does for flat documents: every property
+ * the probe sets (or, with {@link ExampleMatcher.NullHandler#INCLUDE}, every property it leaves
+ * null) must match, or with {@link ExampleMatcher#matchingAny()} at least one of them. Strings
+ * follow the string matcher and case sensitivity of their path, other values are compared with
+ * {@code equals}, and entities that are not of the probe's type never match.
+ */
+final class Examples {
+
+    private Examples() {
+    }
+
+    static Predicate<Object> matching(Example<?> example) {
+        ExampleMatcher matcher = example.getMatcher();
+        ExampleMatcherAccessor accessor = new ExampleMatcherAccessor(matcher);
+        BeanWrapper probe = new BeanWrapperImpl(example.getProbe());
+
+        List<Predicate<BeanWrapper>> properties = new ArrayList<>();
+        for (PropertyDescriptor descriptor : probe.getPropertyDescriptors()) {
+            String path = descriptor.getName();
+            if (descriptor.getReadMethod() == null || "class".equals(path) || accessor.isIgnoredPath(path)) {
+                continue;
+            }
+
+            Optional<Object> value = accessor.getValueTransformerForPath(path)
+                    .apply(Optional.ofNullable(probe.getPropertyValue(path)));
+            if (value.isPresent()) {
+                properties.add(property(accessor, path, value.get()));
+            } else if (accessor.getNullHandler() == ExampleMatcher.NullHandler.INCLUDE) {
+                properties.add(entity -> entity.getPropertyValue(path) == null);
+            }
+        }
+
+        Class<?> type = example.getProbeType();
+        return entity -> {
+            if (!type.isInstance(entity)) {
+                return false;
+            }
+            if (properties.isEmpty()) {
+                return true;
+            }
+
+            BeanWrapper wrapper = new BeanWrapperImpl(entity);
+            return matcher.isAllMatching()
+                    ? properties.stream().allMatch(property -> property.test(wrapper))
+                    : properties.stream().anyMatch(property -> property.test(wrapper));
+        };
+    }
+
+    private static Predicate<BeanWrapper> property(ExampleMatcherAccessor accessor, String path, Object expected) {
+        if (!(expected instanceof String)) {
+            return entity -> Objects.equals(expected, entity.getPropertyValue(path));
+        }
+
+        Predicate<String> matches = string(accessor.getStringMatcherForPath(path), (String) expected,
+                accessor.isIgnoreCaseForPath(path));
+        return entity -> {
+            Object actual = entity.getPropertyValue(path);
+            return actual instanceof String && matches.test((String) actual);
+        };
+    }
+
+    private static Predicate<String> string(ExampleMatcher.StringMatcher matcher, String expected,
+                                            boolean ignoreCase) {
+        switch (matcher) {
+            case STARTING:
+                return actual -> actual.regionMatches(ignoreCase, 0, expected, 0, expected.length());
+            case ENDING:
+                return actual -> actual.length() >= expected.length() && actual.regionMatches(ignoreCase,
+                        actual.length() - expected.length(), expected, 0, expected.length());
+            case CONTAINING:
+                return Pattern.compile(Pattern.quote(expected), ignoreCase ? Pattern.CASE_INSENSITIVE : 0)
+                        .asPredicate();
+            case REGEX:
+                // unanchored, like $regex
+                return Pattern.compile(expected, ignoreCase ? Pattern.CASE_INSENSITIVE : 0).asPredicate();
+            default:
+                return ignoreCase ? expected::equalsIgnoreCase : expected::equals;
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import java.util.Locale;
+
+public enum ExportFormat {
+
+    NDJSON, CSV;
+
+    /**
+     * Case-insensitive lookup, failing with {@link IllegalArgumentException} for unknown names.
+     */
+    public static ExportFormat of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+}
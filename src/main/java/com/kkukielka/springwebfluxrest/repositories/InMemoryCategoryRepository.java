@@ -0,0 +1,95 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.config.ExportProperties;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Categories kept in process, for running without Mongo.
+ */
+public class InMemoryCategoryRepository extends InMemoryRepository<Category> implements CategoryRepository {
+
+    private static final List<String> CSV_COLUMNS = Arrays.asList("id", "description", "version");
+
+    public InMemoryCategoryRepository(InMemoryStore<Category> store, BulkInsertProperties bulkProperties,
+                                      ExportProperties exportProperties, ObjectMapper objectMapper) {
+        super(store, CSV_COLUMNS, bulkProperties, exportProperties, objectMapper);
+    }
+
+    public static InMemoryStore<Category> newStore() {
+        return new InMemoryStore<>(Category.class, Category::getId, Collections.emptyList());
+    }
+
+    @Override
+    Category copy(Category category) {
+        return Category.builder()
+                .id(category.getId())
+                .description(category.getDescription())
+                .version(category.getVersion())
+                .build();
+    }
+
+    @Override
+    void setId(Category category, String id) {
+        category.setId(id);
+    }
+
+    @Override
+    Long getVersion(Category category) {
+        return category.getVersion();
+    }
+
+    @Override
+    void setVersion(Category category, Long version) {
+        category.setVersion(version);
+    }
+
+    @Override
+    public Mono<Category> updateIfChanged(String id, Category category, Long expectedVersion) {
+        if (category.getDescription() == null) {
+            return Mono.empty();
+        }
+
+        return Mono.fromSupplier(() -> store.update(id, current -> {
+            if (current == null || !Versions.matches(current.getVersion(), expectedVersion)
+                    || Objects.equals(current.getDescription(), category.getDescription())) {
+                return current;
+            }
+            return Category.builder()
+                    .id(id)
+                    .description(category.getDescription())
+                    .version(Versions.next(current.getVersion()))
+                    .build();
+        })).map(this::copy);
+    }
+
+    @Override
+    public Mono<Updated<Category>> replace(String id, Category category, Long expectedVersion) {
+        return Mono.fromSupplier(() -> {
+            AtomicReference<Category> previous = new AtomicReference<>();
+            Category written = store.update(id, current -> {
+                previous.set(current);
+                if (expectedVersion != null && (current == null
+                        || !Versions.matches(current.getVersion(), expectedVersion))) {
+                    return current;
+                }
+                return Category.builder()
+                        .id(id)
+                        .description(category.getDescription())
+                        .version(Versions.next(current == null ? null : current.getVersion()))
+                        .build();
+            });
+            return written == null ? null
+                    : new Updated<>(previous.get() == null ? null : copy(previous.get()), copy(written));
+        });
+    }
+
+}
@@ -0,0 +1,404 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.config.ExportProperties;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ReactiveMongoRepository} contract on top of an {@link InMemoryStore}, mirroring what the
+ * Mongo-backed repositories do: ids are generated as ObjectIds, {@code save} honors the version
+ * like a versioned entity and {@code insert} fails on duplicate ids. Queries by example are
+ * evaluated against every stored entity.
+ */
+@Slf4j
+abstract class InMemoryRepository<T> implements ReactiveMongoRepository<T, String> {
+
+    final InMemoryStore<T> store;
+    private final List<String> csvColumns;
+    private final BulkInsertProperties bulkProperties;
+    private final ExportProperties exportProperties;
+    private final ObjectMapper objectMapper;
+
+    InMemoryRepository(InMemoryStore<T> store, List<String> csvColumns, BulkInsertProperties bulkProperties,
+                       ExportProperties exportProperties, ObjectMapper objectMapper) {
+        this.store = store;
+        this.csvColumns = csvColumns;
+        this.bulkProperties = bulkProperties;
+        this.exportProperties = exportProperties;
+        this.objectMapper = objectMapper;
+    }
+
+    abstract T copy(T entity);
+
+    abstract void setId(T entity, String id);
+
+    abstract Long getVersion(T entity);
+
+    abstract void setVersion(T entity, Long version);
+
+    @Override
+    public <S extends T> Mono<S> save(S entity) {
+        Assert.notNull(entity, "Entity must not be null");
+
+        return Mono.fromCallable(() -> {
+            if (getVersion(entity) == null) {
+                return insertOne(entity, true);
+            }
+
+            Long version = getVersion(entity);
+            store.update(store.idOf(entity), current -> {
+                if (current == null || !Objects.equals(getVersion(current), version)) {
+                    throw new OptimisticLockingFailureException(String.format(
+                            "Cannot save %s %s with version %s. Has it been modified meanwhile?",
+                            store.getType().getSimpleName(), store.idOf(entity), version));
+                }
+                setVersion(entity, version + 1);
+                return copy(entity);
+            });
+            return entity;
+        });
+    }
+
+    @Override
+    public <S extends T> Flux<S> saveAll(Iterable<S> entities) {
+        return Flux.fromIterable(entities).concatMap(this::save);
+    }
+
+    @Override
+    public <S extends T> Flux<S> saveAll(Publisher<S> entityStream) {
+        return Flux.from(entityStream).concatMap(this::save);
+    }
+
+    @Override
+    public <S extends T> Mono<S> insert(S entity) {
+        Assert.notNull(entity, "Entity must not be null");
+        return Mono.fromCallable(() -> insertOne(entity, true));
+    }
+
+    @Override
+    public <S extends T> Flux<S> insert(Iterable<S> entities) {
+        return Flux.fromIterable(entities).concatMap(this::insert);
+    }
+
+    @Override
+    public <S extends T> Flux<S> insert(Publisher<S> entities) {
+        return Flux.from(entities).concatMap(this::insert);
+    }
+
+    /**
+     * @param initializeVersion whether a missing version starts at 0 as it does for repository
+     *                          inserts; bulk inserts leave it unset
+     */
+    private <S extends T> S insertOne(S entity, boolean initializeVersion) {
+        if (store.idOf(entity) == null) {
+            setId(entity, new ObjectId().toHexString());
+        }
+        if (initializeVersion && getVersion(entity) == null) {
+            setVersion(entity, 0L);
+        }
+
+        String id = store.idOf(entity);
+        store.update(id, current -> {
+            if (current != null) {
+                throw new DuplicateKeyException(String.format("Duplicate %s id %s",
+                        store.getType().getSimpleName(), id));
+            }
+            return copy(entity);
+        });
+        return entity;
+    }
+
+    @Override
+    public Mono<T> findById(String id) {
+        Assert.notNull(id, "The given id must not be null");
+        return Mono.fromSupplier(() -> store.get(id)).map(this::copy);
+    }
+
+    @Override
+    public Mono<T> findById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String id) {
+        Assert.notNull(id, "The given id must not be null");
+        return Mono.fromSupplier(() -> store.contains(id));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<T> findAll() {
+        return Flux.fromIterable(store.values()).map(this::copy);
+    }
+
+    @Override
+    public Flux<T> findAll(Sort sort) {
+        return Flux.defer(() -> {
+            List<T> sorted = new ArrayList<>(store.values());
+            sorted.sort(SortOrders.comparator(sort));
+            return Flux.fromIterable(sorted);
+        }).map(this::copy);
+    }
+
+    @Override
+    public Flux<T> findAllById(Iterable<String> ids) {
+        return Flux.fromIterable(ids).concatMap(this::findById);
+    }
+
+    @Override
+    public Flux<T> findAllById(Publisher<String> idStream) {
+        return Flux.from(idStream).concatMap(this::findById);
+    }
+
+    public Flux<T> findAllByOrderByIdAsc(Pageable pageable) {
+        return page(store.values(), pageable);
+    }
+
+    public Flux<T> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable) {
+        return Flux.defer(() -> page(store.valuesAfter(id), pageable));
+    }
+
+    private Flux<T> page(Collection<T> entities, Pageable pageable) {
+        Flux<T> page = Flux.fromIterable(entities);
+        if (pageable.isPaged()) {
+            page = page.skip(pageable.getOffset()).take(pageable.getPageSize());
+        }
+        return page.map(this::copy);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(() -> (long) store.size());
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        Assert.notNull(id, "The given id must not be null");
+        return Mono.fromRunnable(() -> store.remove(id));
+    }
+
+    /**
+     * The removed entity is no longer stored, so it is emitted without a copy.
+     */
+    public Mono<T> findAndDeleteById(String id) {
+        Assert.notNull(id, "The given id must not be null");
+        return Mono.fromSupplier(() -> store.remove(id));
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(T entity) {
+        return deleteById(store.idOf(entity));
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends T> entities) {
+        return Flux.fromIterable(entities).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends T> entityStream) {
+        return Flux.from(entityStream).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Mono.fromRunnable(store::clear);
+    }
+
+    /**
+     * Fails with {@link IncorrectResultSizeDataAccessException} when more than one entity matches,
+     * like the Mongo repository does.
+     */
+    @Override
+    public <S extends T> Mono<S> findOne(Example<S> example) {
+        return findAll(example)
+                .take(2)
+                .collectList()
+                .flatMap(matches -> matches.size() > 1
+                        ? Mono.error(new IncorrectResultSizeDataAccessException(1, matches.size()))
+                        : Mono.justOrEmpty(matches.isEmpty() ? null : matches.get(0)));
+    }
+
+    @Override
+    public <S extends T> Flux<S> findAll(Example<S> example) {
+        return Flux.defer(() -> Flux.fromIterable(matching(example))).map(entity -> copy(example, entity));
+    }
+
+    @Override
+    public <S extends T> Flux<S> findAll(Example<S> example, Sort sort) {
+        return Flux.defer(() -> {
+            List<T> sorted = matching(example);
+            sorted.sort(SortOrders.comparator(sort));
+            return Flux.fromIterable(sorted);
+        }).map(entity -> copy(example, entity));
+    }
+
+    @Override
+    public <S extends T> Mono<Long> count(Example<S> example) {
+        return Mono.fromSupplier(() -> (long) matching(example).size());
+    }
+
+    @Override
+    public <S extends T> Mono<Boolean> exists(Example<S> example) {
+        return Mono.fromSupplier(() -> store.values().stream().anyMatch(Examples.matching(example)));
+    }
+
+    private List<T> matching(Example<?> example) {
+        return store.values().stream()
+                .filter(Examples.matching(example))
+                .collect(Collectors.toList());
+    }
+
+    // only entities of the probe's type match, so the cast holds
+    private <S extends T> S copy(Example<S> example, T entity) {
+        return example.getProbeType().cast(copy(entity));
+    }
+
+    public Mono<T> findByIdProjected(String id, Collection<String> fields) {
+        return Mono.fromRunnable(() -> Projections.validate(store.getType(), fields))
+                .then(Mono.fromSupplier(() -> store.get(id)))
+                .map(entity -> Projections.include(entity, store.getType(), fields));
+    }
+
+    public Flux<T> findAllProjected(Collection<String> fields) {
+        return Mono.fromRunnable(() -> Projections.validate(store.getType(), fields))
+                .thenMany(Flux.fromIterable(store.values()))
+                .map(entity -> Projections.include(entity, store.getType(), fields));
+    }
+
+    /**
+     * Batches like the Mongo bulk inserter and, like an unordered bulkWrite, keeps going past
+     * duplicate ids and reports them as failed.
+     */
+    public Flux<BulkInsertResult> bulkInsert(Publisher<T> entities) {
+        return Flux.defer(() -> {
+            AtomicLong batchSequence = new AtomicLong();
+
+            return Batches.of(entities, bulkProperties)
+                    .map(batch -> insertBatch(batchSequence.incrementAndGet(), batch));
+        });
+    }
+
+    private BulkInsertResult insertBatch(long batchNumber, List<T> batch) {
+        BulkInsertResult result = BulkInsertResult.builder().batch(batchNumber).size(batch.size()).build();
+        for (T entity : batch) {
+            try {
+                insertOne(entity, false);
+                result.setInserted(result.getInserted() + 1);
+                result.getInsertedIds().add(store.idOf(entity));
+            } catch (DuplicateKeyException e) {
+                result.setFailed(result.getFailed() + 1);
+                result.setError(e.getMessage());
+            }
+        }
+
+        if (result.getFailed() > 0) {
+            log.warn("Bulk insert batch {} failed: {}", batchNumber, result.getError());
+        }
+        return result;
+    }
+
+    /**
+     * Renders the stored entities with the application's JSON mapper, so NDJSON lines look
+     * exactly like the API's responses.
+     */
+    public Flux<DataBuffer> export(ExportFormat format, DataBufferFactory bufferFactory) {
+        Flux<DataBuffer> rows = Flux.fromIterable(store.values())
+                .buffer(exportProperties.getDocumentsPerBuffer())
+                .map(batch -> format == ExportFormat.CSV ? csv(batch, bufferFactory) : ndjson(batch, bufferFactory));
+
+        return (format == ExportFormat.CSV
+                ? Flux.defer(() -> Flux.just(csvHeader(bufferFactory))).concatWith(rows)
+                : rows)
+                .doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+    }
+
+    private DataBuffer ndjson(List<T> batch, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer();
+        try (OutputStream out = buffer.asOutputStream();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            for (T entity : batch) {
+                objectMapper.writeValue(generator, entity);
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+        return buffer;
+    }
+
+    private DataBuffer csv(List<T> batch, DataBufferFactory bufferFactory) {
+        StringBuilder rows = new StringBuilder();
+        String[] row = new String[csvColumns.size()];
+        for (T entity : batch) {
+            BeanWrapper properties = new BeanWrapperImpl(entity);
+            for (int i = 0; i < row.length; i++) {
+                row[i] = cell(properties.getPropertyValue(csvColumns.get(i)));
+            }
+            MongoExporter.appendRow(rows, row);
+        }
+        return MongoExporter.write(rows, bufferFactory);
+    }
+
+    private DataBuffer csvHeader(DataBufferFactory bufferFactory) {
+        StringBuilder header = new StringBuilder();
+        MongoExporter.appendRow(header, csvColumns.toArray(new String[0]));
+        return MongoExporter.write(header, bufferFactory);
+    }
+
+    private static String cell(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).stream().map(String::valueOf).collect(Collectors.joining(";"));
+        }
+        return value.toString();
+    }
+
+}
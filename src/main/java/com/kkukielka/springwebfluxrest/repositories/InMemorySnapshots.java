@@ -0,0 +1,165 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists the in-memory stores as one Smile file per entity type so that a restart does not
+ * start from scratch. Snapshots are restored before the application starts serving, with the
+ * file memory-mapped so that it is parsed straight from the page cache, and written again
+ * periodically and on shutdown whenever the store changed. A snapshot is not a point-in-time
+ * copy: writes made while it is being written may or may not be included.
+ */
+@Slf4j
+public class InMemorySnapshots {
+
+    private static final String EXTENSION = ".smile";
+
+    private final List<InMemoryStore<?>> stores;
+    private final Path directory;
+    private final Duration interval;
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory())
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private final Map<InMemoryStore<?>, Long> snapshotModifications = new ConcurrentHashMap<>();
+    private Disposable schedule;
+
+    public InMemorySnapshots(List<InMemoryStore<?>> stores, Path directory, Duration interval) {
+        this.stores = stores;
+        this.directory = directory;
+        this.interval = interval;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        for (InMemoryStore<?> store : stores) {
+            restore(store);
+        }
+
+        schedule = Flux.interval(interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromRunnable(this::snapshotChanged)
+                        .subscribeOn(Schedulers.boundedElastic()), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+        snapshotChanged();
+    }
+
+    void snapshotChanged() {
+        for (InMemoryStore<?> store : stores) {
+            long modifications = store.getModifications();
+            if (snapshotModifications.getOrDefault(store, -1L) == modifications) {
+                continue;
+            }
+
+            try {
+                long start = System.nanoTime();
+                int written = write(store);
+                snapshotModifications.put(store, modifications);
+                log.debug("Snapshotted {} {} entities in {} ms", written, store.getType().getSimpleName(),
+                        Duration.ofNanos(System.nanoTime() - start).toMillis());
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Failed to snapshot {} entities: {}", store.getType().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    private <T> void restore(InMemoryStore<T> store) throws IOException {
+        Path file = file(store);
+        if (Files.exists(file)) {
+            long start = System.nanoTime();
+            int restored = read(store, file);
+            log.info("Restored {} {} entities from {} in {} ms", restored, store.getType().getSimpleName(), file,
+                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+        snapshotModifications.put(store, store.getModifications());
+    }
+
+    private <T> int read(InMemoryStore<T> store, Path file) throws IOException {
+        int restored = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             InputStream in = channel.size() <= Integer.MAX_VALUE
+                     ? new ByteBufferBackedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()))
+                     : Channels.newInputStream(channel);
+             JsonParser parser = smileMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                store.put(smileMapper.readValue(parser, store.getType()));
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Writes next to the snapshot and moves the result over it, so a crash mid-write leaves the
+     * previous snapshot intact.
+     */
+    private <T> int write(InMemoryStore<T> store) throws IOException {
+        Path file = file(store);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        int written = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+             JsonGenerator generator = smileMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (T entity : store.values()) {
+                smileMapper.writeValue(generator, entity);
+                written++;
+            }
+            generator.writeEndArray();
+            generator.flush();
+            channel.force(false);
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    private Path file(InMemoryStore<?> store) {
+        return directory.resolve(store.getType().getSimpleName().toLowerCase(Locale.ROOT) + EXTENSION);
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Entities of one type kept in process, ordered by id like the {@code _id} index of a collection.
+ * Reads never block; writes are serialized so that a read-modify-write and the secondary indexes
+ * it touches stay consistent. Stored instances are never handed out or modified in place: the
+ * repositories copy them on the way in and out.
+ */
+public class InMemoryStore<T> {
+
+    private static final char SEPARATOR = '\u0000';
+    private static final char HIGHEST_CHAR = '\uffff';
+
+    private final Class<T> type;
+    private final Function<T, String> idOf;
+    private final ConcurrentSkipListMap<String, T> entities = new ConcurrentSkipListMap<>();
+    private final Map<String, Index<T>> indexes = new LinkedHashMap<>();
+    private volatile long modifications;
+
+    public InMemoryStore(Class<T> type, Function<T, String> idOf, List<Index<T>> indexes) {
+        this.type = type;
+        this.idOf = idOf;
+        indexes.forEach(index -> this.indexes.put(index.name, index));
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Number of writes so far, used to tell whether anything changed since the last snapshot.
+     */
+    public long getModifications() {
+        return modifications;
+    }
+
+    String idOf(T entity) {
+        return idOf.apply(entity);
+    }
+
+    T get(String id) {
+        return entities.get(id);
+    }
+
+    boolean contains(String id) {
+        return entities.containsKey(id);
+    }
+
+    /**
+     * All entities in id order. The view is weakly consistent: writes made while it is iterated
+     * may or may not be seen.
+     */
+    public Collection<T> values() {
+        return Collections.unmodifiableCollection(entities.values());
+    }
+
+    Collection<T> valuesAfter(String id) {
+        return Collections.unmodifiableCollection(entities.tailMap(id, false).values());
+    }
+
+    int size() {
+        return entities.size();
+    }
+
+    Index<T> index(String name) {
+        return indexes.get(name);
+    }
+
+    public synchronized void put(T entity) {
+        store(idOf(entity), entities.get(idOf(entity)), entity);
+    }
+
+    /**
+     * Applies {@code change} to the entity stored under {@code id}, or to {@code null} when there
+     * is none, while holding the write lock. Returning the current entity or {@code null} leaves
+     * the store untouched; anything else replaces it.
+     *
+     * @return the entity written, or {@code null} when nothing was written
+     */
+    synchronized T update(String id, UnaryOperator<T> change) {
+        T current = entities.get(id);
+        T next = change.apply(current);
+        if (next == null || next == current) {
+            return null;
+        }
+
+        store(id, current, next);
+        return next;
+    }
+
+    synchronized T remove(String id) {
+        T removed = entities.remove(id);
+        if (removed != null) {
+            indexes.values().forEach(index -> index.remove(removed, id));
+            modifications++;
+        }
+        return removed;
+    }
+
+    synchronized void clear() {
+        entities.clear();
+        indexes.values().forEach(index -> index.entries.clear());
+        modifications++;
+    }
+
+    private void store(String id, T current, T next) {
+        entities.put(id, next);
+        for (Index<T> index : indexes.values()) {
+            if (current != null) {
+                index.remove(current, id);
+            }
+            index.add(next, id);
+        }
+        modifications++;
+    }
+
+    /**
+     * Sorted secondary index over a case-insensitive key. Each entry maps the key, followed by the
+     * id to keep entries unique, to the id of the entity, so a prefix lookup is a range scan.
+     */
+    public static final class Index<T> {
+
+        private final String name;
+        private final Function<T, String> keyOf;
+        private final ConcurrentSkipListMap<String, String> entries = new ConcurrentSkipListMap<>();
+
+        /**
+         * @param keyOf builds the key of an entity, usually with {@link #key(String...)}
+         */
+        public Index(String name, Function<T, String> keyOf) {
+            this.name = name;
+            this.keyOf = keyOf;
+        }
+
+        /**
+         * Joins the lower-cased parts so that entries sort by the first part, then the second and
+         * so on. Missing parts sort first.
+         */
+        public static String key(String... parts) {
+            StringBuilder key = new StringBuilder();
+            for (String part : parts) {
+                if (part != null) {
+                    key.append(part.toLowerCase(Locale.ROOT));
+                }
+                key.append(SEPARATOR);
+            }
+            return key.toString();
+        }
+
+        /**
+         * Ids of the entities whose key starts with {@code prefix}, ignoring case, in key order.
+         */
+        Collection<String> idsWithPrefix(String prefix) {
+            String from = prefix.toLowerCase(Locale.ROOT);
+            return entries.subMap(from, from + HIGHEST_CHAR).values();
+        }
+
+        private void add(T entity, String id) {
+            entries.put(keyOf.apply(entity) + id, id);
+        }
+
+        private void remove(T entity, String id) {
+            entries.remove(keyOf.apply(entity) + id);
+        }
+
+    }
+
+}
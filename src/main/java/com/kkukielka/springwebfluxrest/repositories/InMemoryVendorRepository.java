@@ -0,0 +1,221 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.config.ExportProperties;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.domain.VendorWithCategories;
+import com.kkukielka.springwebfluxrest.stats.StatsReconciler;
+import org.reactivestreams.Publisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Vendors kept in process, for running without Mongo. The name searches are served from two
+ * sorted indexes mirroring the Mongo ones. Keys are lower-cased rather than collated, so
+ * accented names may sort differently than in Mongo.
+ */
+public class InMemoryVendorRepository extends InMemoryRepository<Vendor> implements VendorRepository {
+
+    private static final List<String> CSV_COLUMNS = Arrays.asList("id", "firstName", "lastName", "version");
+    private static final String LAST_NAME_INDEX = "lastName_firstName_ci";
+    private static final String FIRST_NAME_INDEX = "firstName_lastName_ci";
+
+    private final InMemoryStore<Category> categoryStore;
+
+    public InMemoryVendorRepository(InMemoryStore<Vendor> store, InMemoryStore<Category> categoryStore,
+                                    BulkInsertProperties bulkProperties, ExportProperties exportProperties,
+                                    ObjectMapper objectMapper) {
+        super(store, CSV_COLUMNS, bulkProperties, exportProperties, objectMapper);
+        this.categoryStore = categoryStore;
+    }
+
+    public static InMemoryStore<Vendor> newStore() {
+        return new InMemoryStore<>(Vendor.class, Vendor::getId, Arrays.asList(
+                new InMemoryStore.Index<Vendor>(LAST_NAME_INDEX,
+                        vendor -> InMemoryStore.Index.key(vendor.getLastName(), vendor.getFirstName())),
+                new InMemoryStore.Index<Vendor>(FIRST_NAME_INDEX,
+                        vendor -> InMemoryStore.Index.key(vendor.getFirstName(), vendor.getLastName()))));
+    }
+
+    @Override
+    Vendor copy(Vendor vendor) {
+        return Vendor.builder()
+                .id(vendor.getId())
+                .firstName(vendor.getFirstName())
+                .lastName(vendor.getLastName())
+                .categoryIds(vendor.getCategoryIds() == null ? null : new ArrayList<>(vendor.getCategoryIds()))
+                .version(vendor.getVersion())
+                .build();
+    }
+
+    @Override
+    void setId(Vendor vendor, String id) {
+        vendor.setId(id);
+    }
+
+    @Override
+    Long getVersion(Vendor vendor) {
+        return vendor.getVersion();
+    }
+
+    @Override
+    void setVersion(Vendor vendor, Long version) {
+        vendor.setVersion(version);
+    }
+
+    @Override
+    public Mono<Updated<Vendor>> updateIfChanged(String id, Vendor vendor, Long expectedVersion) {
+        return update(id, current -> {
+            if (current == null || !Versions.matches(current.getVersion(), expectedVersion)
+                    || !VendorRepositoryCustomImpl.differs(current, vendor)) {
+                return current;
+            }
+            return patched(current, vendor);
+        });
+    }
+
+    @Override
+    public Mono<Updated<Vendor>> replace(String id, Vendor vendor, Long expectedVersion) {
+        return update(id, current -> {
+            if (expectedVersion != null && (current == null
+                    || !Versions.matches(current.getVersion(), expectedVersion))) {
+                return current;
+            }
+            return Vendor.builder()
+                    .id(id)
+                    .firstName(vendor.getFirstName())
+                    .lastName(vendor.getLastName())
+                    .categoryIds(vendor.getCategoryIds() == null ? null : new ArrayList<>(vendor.getCategoryIds()))
+                    .version(Versions.next(current == null ? null : current.getVersion()))
+                    .build();
+        });
+    }
+
+    private Mono<Updated<Vendor>> update(String id, UnaryOperator<Vendor> change) {
+        return Mono.fromSupplier(() -> {
+            AtomicReference<Vendor> previous = new AtomicReference<>();
+            Vendor written = store.update(id, current -> {
+                previous.set(current);
+                return change.apply(current);
+            });
+            return written == null ? null
+                    : new Updated<>(previous.get() == null ? null : copy(previous.get()), copy(written));
+        });
+    }
+
+    /**
+     * Patches are applied one by one as they arrive; with no round trips to save there is nothing
+     * to gain from batching.
+     */
+    @Override
+    public Flux<BulkPatchResult> bulkPatch(Publisher<Vendor> patches) {
+        return Flux.from(patches).map(this::patch);
+    }
+
+    private BulkPatchResult patch(Vendor patch) {
+        String id = patch.getId();
+        if (id == null) {
+            return BulkPatchResult.builder().status(BulkPatchResult.Status.FAILED).error("id is required").build();
+        }
+
+        Vendor written = store.update(id, current -> current == null
+                || !VendorRepositoryCustomImpl.differs(current, patch) ? current : patched(current, patch));
+
+        BulkPatchResult.Status status = written != null ? BulkPatchResult.Status.MODIFIED
+                : store.contains(id) ? BulkPatchResult.Status.MATCHED : BulkPatchResult.Status.NOT_FOUND;
+        return BulkPatchResult.builder().id(id).status(status).build();
+    }
+
+    private Vendor patched(Vendor current, Vendor patch) {
+        Vendor patched = copy(current);
+        VendorRepositoryCustomImpl.apply(patched, patch);
+        patched.setVersion(Versions.next(current.getVersion()));
+        return patched;
+    }
+
+    /**
+     * Walks the index of the first given name and checks the other name on each hit, so a search
+     * on both names costs a range scan of the last name index.
+     */
+    @Override
+    public Flux<Vendor> searchByName(String lastNamePrefix, String firstNamePrefix, int limit) {
+        InMemoryStore.Index<Vendor> index = store.index(lastNamePrefix != null ? LAST_NAME_INDEX : FIRST_NAME_INDEX);
+        String prefix = lastNamePrefix != null ? lastNamePrefix : firstNamePrefix != null ? firstNamePrefix : "";
+
+        return Flux.fromIterable(index.idsWithPrefix(prefix))
+                .<Vendor>handle((id, sink) -> {
+                    Vendor vendor = store.get(id);
+                    if (vendor != null && matches(vendor.getLastName(), lastNamePrefix)
+                            && matches(vendor.getFirstName(), firstNamePrefix)) {
+                        sink.next(copy(vendor));
+                    }
+                })
+                .take(limit);
+    }
+
+    private static boolean matches(String name, String prefix) {
+        return prefix == null || StringUtils.startsWithIgnoreCase(name, prefix);
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countByLastNameInitial() {
+        return Mono.fromSupplier(() -> {
+            Map<String, Long> counts = new HashMap<>();
+            for (Vendor vendor : store.values()) {
+                counts.merge(StatsReconciler.lastNameInitial(vendor), 1L, Long::sum);
+            }
+            return counts;
+        });
+    }
+
+    @Override
+    public Flux<VendorWithCategories> findWithCategories(String afterId, Pageable pageable) {
+        Flux<Vendor> page = afterId == null
+                ? findAllByOrderByIdAsc(pageable)
+                : findByIdGreaterThanOrderByIdAsc(afterId, pageable);
+        return page.map(this::withCategories);
+    }
+
+    /**
+     * Like the {@code $lookup}, resolves each referenced category once and skips missing ones.
+     */
+    private VendorWithCategories withCategories(Vendor vendor) {
+        List<Category> categories = new ArrayList<>();
+        if (vendor.getCategoryIds() != null) {
+            for (String categoryId : new LinkedHashSet<>(vendor.getCategoryIds())) {
+                Category category = categoryStore.get(categoryId);
+                if (category != null) {
+                    categories.add(Category.builder()
+                            .id(category.getId())
+                            .description(category.getDescription())
+                            .version(category.getVersion())
+                            .build());
+                }
+            }
+        }
+
+        return VendorWithCategories.builder()
+                .id(vendor.getId())
+                .firstName(vendor.getFirstName())
+                .lastName(vendor.getLastName())
+                .categoryIds(vendor.getCategoryIds())
+                .categories(categories)
+                .version(vendor.getVersion())
+                .build();
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.config.InMemoryRepositoryConfig;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+@Profile("!" + InMemoryRepositoryConfig.PROFILE)
+public class MongoBulkInserter {
+
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final String ID = "_id";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final BulkInsertProperties properties;
+
+    public MongoBulkInserter(ReactiveMongoTemplate mongoTemplate, BulkInsertProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+    }
+
+    /**
+     * Groups the incoming entities into batches and writes each batch with one unordered
+     * bulkWrite. Upstream demand is bounded by batch size times the number of batches in flight,
+     * so a fast producer is throttled instead of being buffered on the heap.
+     */
+    public <T> Flux<BulkInsertResult> insert(Publisher<T> entities, Class<T> entityClass) {
+        String collectionName = mongoTemplate.getCollectionName(entityClass);
+
+        return Flux.defer(() -> {
+            AtomicLong batchSequence = new AtomicLong();
+
+            return Batches.of(entities, properties)
+                    .flatMapSequential(batch -> insertBatch(collectionName, batchSequence.incrementAndGet(), batch),
+                            properties.getMaxInFlight());
+        });
+    }
+
+    /**
+     * Ids are generated here rather than by the driver, so that the result can tell which
+     * documents were inserted.
+     */
+    private <T> Mono<BulkInsertResult> insertBatch(String collectionName, long batchNumber, List<T> batch) {
+        List<InsertOneModel<Document>> inserts = new ArrayList<>(batch.size());
+        for (T entity : batch) {
+            Document document = new Document();
+            mongoTemplate.getConverter().write(entity, document);
+            if (document.get(ID) == null) {
+                document.put(ID, new ObjectId());
+            }
+            inserts.add(new InsertOneModel<>(document));
+        }
+
+        return mongoTemplate.execute(collectionName, collection -> collection.bulkWrite(inserts, UNORDERED))
+                .next()
+                .map(result -> BulkInsertResult.builder()
+                        .batch(batchNumber)
+                        .size(batch.size())
+                        .inserted(result.getInsertedCount())
+                        .insertedIds(insertedIds(inserts, Collections.emptySet()))
+                        .build())
+                .onErrorResume(error -> Mono.just(failedBatch(batchNumber, inserts, error)));
+    }
+
+    private static BulkInsertResult failedBatch(long batchNumber, List<InsertOneModel<Document>> inserts,
+                                                Throwable error) {
+        log.warn("Bulk insert batch {} failed: {}", batchNumber, error.getMessage());
+
+        MongoBulkWriteException bulkWriteException = findBulkWriteException(error);
+        int inserted = bulkWriteException != null ? bulkWriteException.getWriteResult().getInsertedCount() : 0;
+        List<String> insertedIds = bulkWriteException != null
+                ? insertedIds(inserts, failedIndexes(bulkWriteException))
+                : Collections.emptyList();
+
+        return BulkInsertResult.builder()
+                .batch(batchNumber)
+                .size(inserts.size())
+                .inserted(inserted)
+                .failed(inserts.size() - inserted)
+                .error(error.getMessage())
+                .insertedIds(insertedIds)
+                .build();
+    }
+
+    private static Set<Integer> failedIndexes(MongoBulkWriteException bulkWriteException) {
+        Set<Integer> failed = new HashSet<>();
+        for (BulkWriteError writeError : bulkWriteException.getWriteErrors()) {
+            failed.add(writeError.getIndex());
+        }
+        return failed;
+    }
+
+    private static List<String> insertedIds(List<InsertOneModel<Document>> inserts, Set<Integer> failed) {
+        List<String> ids = new ArrayList<>(inserts.size() - failed.size());
+        for (int i = 0; i < inserts.size(); i++) {
+            if (!failed.contains(i)) {
+                ids.add(inserts.get(i).getDocument().get(ID).toString());
+            }
+        }
+        return ids;
+    }
+
+    static boolean isBulkWriteFailure(Throwable error) {
+        return findBulkWriteException(error) != null;
+    }
+
+    // the template translates driver exceptions, so the partial result may sit in the cause chain
+    static MongoBulkWriteException findBulkWriteException(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof MongoBulkWriteException) {
+                return (MongoBulkWriteException) current;
+            }
+        }
+        return null;
+    }
+
+}
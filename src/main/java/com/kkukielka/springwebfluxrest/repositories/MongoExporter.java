@@ -0,0 +1,298 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.kkukielka.springwebfluxrest.config.ExportProperties;
+import com.kkukielka.springwebfluxrest.config.InMemoryRepositoryConfig;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams whole collections as NDJSON or CSV. Documents are fetched as {@link RawBsonDocument}s and
+ * their BSON is rendered straight into response buffers, so no entity or {@code Document} is
+ * materialized and heap usage stays flat regardless of the collection size.
+ */
+@Component
+@Profile("!" + InMemoryRepositoryConfig.PROFILE)
+public class MongoExporter {
+
+    private static final String ID_FIELD = "_id";
+    private static final String TYPE_HINT_FIELD = "_class";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().setRootValueSeparator(null);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ExportProperties properties;
+
+    public MongoExporter(ReactiveMongoTemplate mongoTemplate, ExportProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+    }
+
+    /**
+     * @param columns the CSV columns, in order; ignored for NDJSON, which writes every field
+     */
+    public Flux<DataBuffer> export(Class<?> entityClass, ExportFormat format, List<String> columns,
+                                   DataBufferFactory bufferFactory) {
+        Flux<DataBuffer> rows = mongoTemplate.execute(entityClass, collection -> collection
+                .withDocumentClass(RawBsonDocument.class)
+                .find()
+                .batchSize(properties.getCursorBatchSize()))
+                .buffer(properties.getDocumentsPerBuffer())
+                .map(batch -> format == ExportFormat.CSV
+                        ? csv(batch, columns, bufferFactory)
+                        : ndjson(batch, bufferFactory));
+
+        return (format == ExportFormat.CSV
+                ? Flux.defer(() -> Flux.just(csvHeader(columns, bufferFactory))).concatWith(rows)
+                : rows)
+                .doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+    }
+
+    static DataBuffer ndjson(List<RawBsonDocument> batch, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(encodedSize(batch));
+        try (OutputStream out = buffer.asOutputStream();
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            for (RawBsonDocument document : batch) {
+                try (BsonBinaryReader reader = reader(document)) {
+                    writeEntity(reader, generator);
+                }
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+        return buffer;
+    }
+
+    static DataBuffer csv(List<RawBsonDocument> batch, List<String> columns, DataBufferFactory bufferFactory) {
+        Map<String, Integer> columnIndexes = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            columnIndexes.put(columns.get(i), i);
+        }
+
+        StringBuilder rows = new StringBuilder(encodedSize(batch));
+        String[] row = new String[columns.size()];
+        for (RawBsonDocument document : batch) {
+            try (BsonBinaryReader reader = reader(document)) {
+                readRow(reader, columnIndexes, row);
+            }
+            appendRow(rows, row);
+        }
+        return write(rows, bufferFactory);
+    }
+
+    private static DataBuffer csvHeader(List<String> columns, DataBufferFactory bufferFactory) {
+        StringBuilder header = new StringBuilder();
+        appendRow(header, columns.toArray(new String[0]));
+        return write(header, bufferFactory);
+    }
+
+    /**
+     * Writes a top-level document the way the entity is serialized by the API: {@code _id} becomes
+     * {@code id} and the mapping type hint is dropped.
+     */
+    private static void writeEntity(BsonReader reader, JsonGenerator generator) throws IOException {
+        reader.readStartDocument();
+        generator.writeStartObject();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (TYPE_HINT_FIELD.equals(name)) {
+                reader.skipValue();
+                continue;
+            }
+            generator.writeFieldName(ID_FIELD.equals(name) ? "id" : name);
+            writeValue(reader, generator);
+        }
+        reader.readEndDocument();
+        generator.writeEndObject();
+    }
+
+    private static void writeValue(BsonReader reader, JsonGenerator generator) throws IOException {
+        switch (reader.getCurrentBsonType()) {
+            case DOCUMENT:
+                reader.readStartDocument();
+                generator.writeStartObject();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    generator.writeFieldName(reader.readName());
+                    writeValue(reader, generator);
+                }
+                reader.readEndDocument();
+                generator.writeEndObject();
+                break;
+            case ARRAY:
+                reader.readStartArray();
+                generator.writeStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    writeValue(reader, generator);
+                }
+                reader.readEndArray();
+                generator.writeEndArray();
+                break;
+            case STRING:
+                generator.writeString(reader.readString());
+                break;
+            case OBJECT_ID:
+                generator.writeString(reader.readObjectId().toHexString());
+                break;
+            case INT32:
+                generator.writeNumber(reader.readInt32());
+                break;
+            case INT64:
+                generator.writeNumber(reader.readInt64());
+                break;
+            case DOUBLE:
+                generator.writeNumber(reader.readDouble());
+                break;
+            case DECIMAL128:
+                generator.writeString(reader.readDecimal128().toString());
+                break;
+            case BOOLEAN:
+                generator.writeBoolean(reader.readBoolean());
+                break;
+            case DATE_TIME:
+                generator.writeString(Instant.ofEpochMilli(reader.readDateTime()).toString());
+                break;
+            case NULL:
+                reader.readNull();
+                generator.writeNull();
+                break;
+            default:
+                reader.skipValue();
+                generator.writeNull();
+        }
+    }
+
+    private static void readRow(BsonReader reader, Map<String, Integer> columnIndexes, String[] row) {
+        for (int i = 0; i < row.length; i++) {
+            row[i] = "";
+        }
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            Integer index = columnIndexes.get(ID_FIELD.equals(name) ? "id" : name);
+            if (index == null) {
+                reader.skipValue();
+            } else {
+                row[index] = readScalar(reader);
+            }
+        }
+        reader.readEndDocument();
+    }
+
+    /**
+     * Arrays of scalars are joined with {@code ;}; nested documents do not fit a CSV cell and are
+     * left empty.
+     */
+    private static String readScalar(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case STRING:
+                return reader.readString();
+            case OBJECT_ID:
+                return reader.readObjectId().toHexString();
+            case INT32:
+                return String.valueOf(reader.readInt32());
+            case INT64:
+                return String.valueOf(reader.readInt64());
+            case DOUBLE:
+                return String.valueOf(reader.readDouble());
+            case DECIMAL128:
+                return reader.readDecimal128().toString();
+            case BOOLEAN:
+                return String.valueOf(reader.readBoolean());
+            case DATE_TIME:
+                return Instant.ofEpochMilli(reader.readDateTime()).toString();
+            case ARRAY:
+                StringBuilder joined = new StringBuilder();
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    if (joined.length() > 0) {
+                        joined.append(';');
+                    }
+                    joined.append(readScalar(reader));
+                }
+                reader.readEndArray();
+                return joined.toString();
+            case NULL:
+                reader.readNull();
+                return "";
+            default:
+                reader.skipValue();
+                return "";
+        }
+    }
+
+    static void appendRow(StringBuilder rows, String[] row) {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                rows.append(',');
+            }
+            appendCell(rows, row[i]);
+        }
+        rows.append("\r\n");
+    }
+
+    // RFC 4180: cells containing separators, quotes or line breaks are quoted, with quotes doubled
+    private static void appendCell(StringBuilder rows, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+
+        if (!quote) {
+            rows.append(value);
+            return;
+        }
+
+        rows.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                rows.append('"');
+            }
+            rows.append(c);
+        }
+        rows.append('"');
+    }
+
+    static DataBuffer write(CharSequence text, DataBufferFactory bufferFactory) {
+        return bufferFactory.allocateBuffer(text.length()).write(text, StandardCharsets.UTF_8);
+    }
+
+    private static BsonBinaryReader reader(RawBsonDocument document) {
+        return new BsonBinaryReader(document.getByteBuffer().asNIO());
+    }
+
+    private static int encodedSize(List<RawBsonDocument> batch) {
+        int size = 0;
+        for (RawBsonDocument document : batch) {
+            size += document.getByteBuffer().remaining();
+        }
+        return size;
+    }
+
+}
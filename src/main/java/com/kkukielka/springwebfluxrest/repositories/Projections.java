@@ -0,0 +1,69 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.beans.PropertyDescriptor;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+final class Projections {
+
+    private static final String ID_FIELD = "id";
+
+    private Projections() {
+    }
+
+    /**
+     * Restricts {@code query} to the given entity properties so that Mongo only returns those
+     * fields. The id is always returned.
+     */
+    static Query include(Query query, MongoPersistentEntity<?> entity, Collection<String> fields) {
+        List<String> unknown = fields.stream()
+                .filter(field -> entity.getPersistentProperty(field) == null)
+                .collect(Collectors.toList());
+
+        if (!unknown.isEmpty()) {
+            throw new UnknownFieldException(entity.getType(), unknown);
+        }
+
+        fields.forEach(field -> query.fields().include(field));
+        return query;
+    }
+
+    /**
+     * Copies only the given properties and the id of {@code entity}, the way an included
+     * projection would have returned it. The fields must have passed {@link #validate} first.
+     */
+    static <T> T include(T entity, Class<T> type, Collection<String> fields) {
+        BeanWrapper source = new BeanWrapperImpl(entity);
+        BeanWrapper target = new BeanWrapperImpl(BeanUtils.instantiateClass(type));
+        target.setPropertyValue(ID_FIELD, source.getPropertyValue(ID_FIELD));
+        fields.forEach(field -> target.setPropertyValue(field, source.getPropertyValue(field)));
+
+        @SuppressWarnings("unchecked")
+        T projected = (T) target.getWrappedInstance();
+        return projected;
+    }
+
+    /**
+     * In-process counterpart of the field check in {@link #include(Query, MongoPersistentEntity, Collection)}.
+     */
+    static void validate(Class<?> type, Collection<String> fields) {
+        List<String> unknown = fields.stream()
+                .filter(field -> {
+                    PropertyDescriptor property = BeanUtils.getPropertyDescriptor(type, field);
+                    return property == null || property.getWriteMethod() == null;
+                })
+                .collect(Collectors.toList());
+
+        if (!unknown.isEmpty()) {
+            throw new UnknownFieldException(type, unknown);
+        }
+    }
+
+}
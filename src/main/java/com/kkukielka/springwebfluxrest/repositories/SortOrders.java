@@ -0,0 +1,41 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Sort;
+
+import java.util.Comparator;
+
+/**
+ * Sorts entities in process the way Mongo sorts documents without a collation: null and missing
+ * values come first in ascending order and last in descending order, and other values compare
+ * by their natural order.
+ */
+public final class SortOrders {
+
+    private SortOrders() {
+    }
+
+    public static <T> Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = (left, right) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<Object> values = order.isIgnoreCase() ? SortOrders::compareIgnoringCase : SortOrders::compare;
+            Comparator<T> byProperty = Comparator.<T, Object>comparing(
+                    entity -> new BeanWrapperImpl(entity).getPropertyValue(order.getProperty()),
+                    Comparator.nullsFirst(values));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    private static int compareIgnoringCase(Object left, Object right) {
+        return left instanceof String && right instanceof String
+                ? ((String) left).compareToIgnoreCase((String) right)
+                : compare(left, right);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object left, Object right) {
+        return ((Comparable<Object>) left).compareTo(right);
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Collection;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnknownFieldException extends IllegalArgumentException {
+
+    public UnknownFieldException(Class<?> entityType, Collection<String> fields) {
+        super(String.format("Unknown %s fields: %s", entityType.getSimpleName(), String.join(", ", fields)));
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+/**
+ * An entity as a single write left it, together with what it replaced, so that callers keeping
+ * derived state can move it from the old value to the new one.
+ */
+public class Updated<T> {
+
+    private final T previous;
+    private final T current;
+
+    public Updated(T previous, T current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    /**
+     * The entity before the write, or {@code null} when the write created it.
+     */
+    public T getPrevious() {
+        return previous;
+    }
+
+    public T getCurrent() {
+        return current;
+    }
+
+}
@@ -1,7 +1,14 @@
 package com.kkukielka.springwebfluxrest.repositories;
 
 import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+public interface VendorRepository extends ReactiveMongoRepository<Vendor, String>, VendorRepositoryCustom {
+
+    Flux<Vendor> findAllByOrderByIdAsc(Pageable pageable);
+
+    Flux<Vendor> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
 
-public interface VendorRepository extends ReactiveMongoRepository<Vendor, String> {
 }
@@ -0,0 +1,79 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.domain.VendorWithCategories;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface VendorRepositoryCustom {
+
+    /**
+     * Overrides the derived lookup so that reads go through the in-process entity cache.
+     */
+    Mono<Vendor> findById(String id);
+
+    Mono<Vendor> findByIdProjected(String id, Collection<String> fields);
+
+    Flux<Vendor> findAllProjected(Collection<String> fields);
+
+    /**
+     * Applies the non-null fields of {@code vendor} in a single findAndModify that only matches
+     * when at least one of them differs from the stored value and, if {@code expectedVersion} is
+     * given, the stored version equals it. Completes empty when nothing was written, either
+     * because the vendor does not exist, the version did not match or nothing changed.
+     */
+    Mono<Updated<Vendor>> updateIfChanged(String id, Vendor vendor, Long expectedVersion);
+
+    /**
+     * Replaces all fields of the vendor and bumps its version. Without {@code expectedVersion} a
+     * missing vendor is created; with it, completes empty unless the stored version matches.
+     */
+    Mono<Updated<Vendor>> replace(String id, Vendor vendor, Long expectedVersion);
+
+    /**
+     * Deletes the vendor with a single findAndRemove and emits it as it was before the delete, or
+     * completes empty when there was no such vendor.
+     */
+    Mono<Vendor> findAndDeleteById(String id);
+
+    Flux<BulkInsertResult> bulkInsert(Publisher<Vendor> vendors);
+
+    /**
+     * Streams every vendor as NDJSON or CSV without mapping the documents to entities.
+     */
+    Flux<DataBuffer> export(ExportFormat format, DataBufferFactory bufferFactory);
+
+    /**
+     * Applies the non-null fields of each vendor to the stored vendor with the same id. Patches are
+     * grouped into batches, and each batch costs one {@code $in} read and one unordered bulkWrite
+     * instead of two round trips per patch. Emits one result per patch, in input order.
+     */
+    Flux<BulkPatchResult> bulkPatch(Publisher<Vendor> patches);
+
+    /**
+     * Case-insensitive prefix match on last and/or first name, served from the name indexes.
+     */
+    Flux<Vendor> searchByName(String lastNamePrefix, String firstNamePrefix, int limit);
+
+    /**
+     * Number of vendors per {@link com.kkukielka.springwebfluxrest.stats.StatsReconciler#lastNameInitial}
+     * bucket, computed from the stored documents.
+     */
+    Mono<Map<String, Long>> countByLastNameInitial();
+
+    /**
+     * A page of vendors in id order, starting after {@code afterId} when given, each with its
+     * categories resolved by the repository rather than by one lookup per reference.
+     */
+    Flux<VendorWithCategories> findWithCategories(String afterId, Pageable pageable);
+
+}
@@ -0,0 +1,433 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.kkukielka.springwebfluxrest.cache.ReadThroughCache;
+import com.kkukielka.springwebfluxrest.cache.SingleFlight;
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.domain.VendorWithCategories;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.convert.UpdateMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+@Slf4j
+public class VendorRepositoryCustomImpl implements VendorRepositoryCustom {
+
+    private static final List<String> CSV_COLUMNS = Arrays.asList("id", "firstName", "lastName", "version");
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final List<Document> COUNT_BY_LAST_NAME_INITIAL = Collections.singletonList(
+            new Document("$group", new Document("_id", new Document("$toUpper", new Document("$substrCP",
+                    Arrays.asList(new Document("$ifNull", Arrays.asList("$lastName", "")), 0, 1))))
+                    .append("count", new Document("$sum", 1))));
+    private static final String CATEGORY_REFS = "categoryRefs";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MongoBulkInserter bulkInserter;
+    private final MongoExporter exporter;
+    private final BulkInsertProperties bulkProperties;
+    private final ReadThroughCache<Vendor> vendorCache;
+    private final SingleFlight<Vendor> vendorLoads = new SingleFlight<>();
+
+    public VendorRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate,
+                                     MongoBulkInserter bulkInserter,
+                                     MongoExporter exporter,
+                                     BulkInsertProperties bulkProperties,
+                                     ReadThroughCache<Vendor> vendorCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.bulkInserter = bulkInserter;
+        this.exporter = exporter;
+        this.bulkProperties = bulkProperties;
+        this.vendorCache = vendorCache;
+    }
+
+    @Override
+    public Mono<Vendor> findById(String id) {
+        return vendorCache.get(id, key -> vendorLoads.execute(key,
+                k -> mongoTemplate.findById(k, Vendor.class)));
+    }
+
+    @Override
+    public Mono<Vendor> findByIdProjected(String id, Collection<String> fields) {
+        return Mono.fromCallable(() -> projection(Query.query(Criteria.where("id").is(id)), fields))
+                .flatMap(query -> mongoTemplate.findOne(query, Vendor.class));
+    }
+
+    @Override
+    public Flux<Vendor> findAllProjected(Collection<String> fields) {
+        return Mono.fromCallable(() -> projection(new Query(), fields))
+                .flatMapMany(query -> mongoTemplate.find(query, Vendor.class));
+    }
+
+    /**
+     * Reads the pre-image back from findAndModify; the vendor as written is that document with the
+     * patch applied, since nothing can change it in between.
+     */
+    @Override
+    public Mono<Updated<Vendor>> updateIfChanged(String id, Vendor vendor, Long expectedVersion) {
+        Query query = patchQuery(id, vendor, expectedVersion);
+        if (query == null) {
+            return Mono.empty();
+        }
+
+        return mongoTemplate.findAndModify(query, patchUpdate(vendor),
+                FindAndModifyOptions.options().returnNew(false), Vendor.class)
+                .doOnNext(previous -> vendorCache.invalidate(id))
+                .map(previous -> {
+                    Vendor updated = copy(previous);
+                    apply(updated, vendor);
+                    updated.setVersion(Versions.next(previous.getVersion()));
+                    return new Updated<>(previous, updated);
+                });
+    }
+
+    /**
+     * Like {@link #updateIfChanged}, but an upsert has no pre-image, so without an expected version
+     * an empty result means the vendor was created.
+     */
+    @Override
+    public Mono<Updated<Vendor>> replace(String id, Vendor vendor, Long expectedVersion) {
+        Query query = Query.query(Versions.matching(Criteria.where("id").is(id), expectedVersion));
+        Update update = Versions.increment(new Update());
+        setOrUnset(update, "firstName", vendor.getFirstName());
+        setOrUnset(update, "lastName", vendor.getLastName());
+        setOrUnset(update, "categoryIds", vendor.getCategoryIds());
+
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(false).upsert(expectedVersion == null), Vendor.class)
+                .map(previous -> new Updated<>(previous, replacement(id, vendor, previous)))
+                .switchIfEmpty(expectedVersion == null
+                        ? Mono.fromSupplier(() -> new Updated<>(null, replacement(id, vendor, null)))
+                        : Mono.empty())
+                .doOnNext(replaced -> vendorCache.invalidate(id));
+    }
+
+    @Override
+    public Mono<Vendor> findAndDeleteById(String id) {
+        return mongoTemplate.findAndRemove(Query.query(Criteria.where("id").is(id)), Vendor.class)
+                .doOnNext(deleted -> vendorCache.invalidate(id));
+    }
+
+    private static Vendor replacement(String id, Vendor vendor, Vendor previous) {
+        return Vendor.builder()
+                .id(id)
+                .firstName(vendor.getFirstName())
+                .lastName(vendor.getLastName())
+                .categoryIds(vendor.getCategoryIds())
+                .version(Versions.next(previous == null ? null : previous.getVersion()))
+                .build();
+    }
+
+    private static Vendor copy(Vendor vendor) {
+        return Vendor.builder()
+                .id(vendor.getId())
+                .firstName(vendor.getFirstName())
+                .lastName(vendor.getLastName())
+                .categoryIds(vendor.getCategoryIds())
+                .version(vendor.getVersion())
+                .build();
+    }
+
+    /**
+     * Matches the vendor only if one of the supplied fields differs, or returns {@code null}
+     * when the patch carries no fields at all.
+     */
+    static Query patchQuery(String id, Vendor vendor, Long expectedVersion) {
+        List<Criteria> changes = new ArrayList<>();
+
+        if (vendor.getFirstName() != null) {
+            changes.add(Criteria.where("firstName").ne(vendor.getFirstName()));
+        }
+
+        if (vendor.getLastName() != null) {
+            changes.add(Criteria.where("lastName").ne(vendor.getLastName()));
+        }
+
+        if (vendor.getCategoryIds() != null) {
+            changes.add(Criteria.where("categoryIds").ne(vendor.getCategoryIds()));
+        }
+
+        if (changes.isEmpty()) {
+            return null;
+        }
+
+        return Query.query(Versions.matching(Criteria.where("id").is(id), expectedVersion)
+                .orOperator(changes.toArray(new Criteria[0])));
+    }
+
+    static Update patchUpdate(Vendor vendor) {
+        Update update = Versions.increment(new Update());
+
+        if (vendor.getFirstName() != null) {
+            update.set("firstName", vendor.getFirstName());
+        }
+
+        if (vendor.getLastName() != null) {
+            update.set("lastName", vendor.getLastName());
+        }
+
+        if (vendor.getCategoryIds() != null) {
+            update.set("categoryIds", vendor.getCategoryIds());
+        }
+
+        return update;
+    }
+
+    @Override
+    public Flux<BulkInsertResult> bulkInsert(Publisher<Vendor> vendors) {
+        return bulkInserter.insert(vendors, Vendor.class);
+    }
+
+    @Override
+    public Flux<DataBuffer> export(ExportFormat format, DataBufferFactory bufferFactory) {
+        return exporter.export(Vendor.class, format, CSV_COLUMNS, bufferFactory);
+    }
+
+    /**
+     * Batches run one after another, so a vendor patched in two batches always sees the result of
+     * the earlier one.
+     */
+    @Override
+    public Flux<BulkPatchResult> bulkPatch(Publisher<Vendor> patches) {
+        return Batches.of(patches, bulkProperties)
+                .concatMap(this::patchBatch, 1);
+    }
+
+    private Flux<BulkPatchResult> patchBatch(List<Vendor> batch) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (Vendor patch : batch) {
+            if (patch.getId() != null) {
+                ids.add(patch.getId());
+            }
+        }
+
+        return storedVendors(ids)
+                .flatMapMany(stored -> {
+                    Map<String, Vendor> changes = new LinkedHashMap<>();
+                    List<BulkPatchResult> results = classify(batch, stored, changes);
+
+                    return writeChanges(changes)
+                            .doFinally(signal -> changes.keySet().forEach(vendorCache::invalidate))
+                            .thenMany(Flux.fromIterable(results))
+                            .onErrorResume(MongoBulkInserter::isBulkWriteFailure, error ->
+                                    Flux.fromIterable(withWriteErrors(results, new ArrayList<>(changes.keySet()),
+                                            MongoBulkInserter.findBulkWriteException(error))));
+                })
+                .onErrorResume(error -> Flux.fromIterable(failedBatch(batch, error)));
+    }
+
+    private Mono<Map<String, Vendor>> storedVendors(Set<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+
+        Query query = Query.query(Criteria.where("id").in(ids));
+        query.fields().include("firstName").include("lastName").include("categoryIds");
+        return mongoTemplate.find(query, Vendor.class).collectMap(Vendor::getId);
+    }
+
+    /**
+     * Replays the patches against the stored vendors in input order, collecting the net change per
+     * vendor into {@code changes}. Merging repeated ids keeps the outcome independent of the order
+     * in which an unordered bulkWrite applies its operations.
+     */
+    static List<BulkPatchResult> classify(List<Vendor> batch, Map<String, Vendor> stored,
+                                          Map<String, Vendor> changes) {
+        List<BulkPatchResult> results = new ArrayList<>(batch.size());
+        for (Vendor patch : batch) {
+            String id = patch.getId();
+            Vendor current = id == null ? null : stored.get(id);
+
+            if (id == null) {
+                results.add(BulkPatchResult.builder().status(BulkPatchResult.Status.FAILED)
+                        .error("id is required").build());
+            } else if (current == null) {
+                results.add(BulkPatchResult.builder().id(id).status(BulkPatchResult.Status.NOT_FOUND).build());
+            } else if (!differs(current, patch)) {
+                results.add(BulkPatchResult.builder().id(id).status(BulkPatchResult.Status.MATCHED).build());
+            } else {
+                apply(current, patch);
+                apply(changes.computeIfAbsent(id, key -> Vendor.builder().id(key).build()), patch);
+                results.add(BulkPatchResult.builder().id(id).status(BulkPatchResult.Status.MODIFIED).build());
+            }
+        }
+        return results;
+    }
+
+    private Mono<BulkWriteResult> writeChanges(Map<String, Vendor> changes) {
+        if (changes.isEmpty()) {
+            return Mono.empty();
+        }
+
+        MongoConverter converter = mongoTemplate.getConverter();
+        MongoPersistentEntity<?> entity = converter.getMappingContext().getRequiredPersistentEntity(Vendor.class);
+        QueryMapper queryMapper = new QueryMapper(converter);
+        UpdateMapper updateMapper = new UpdateMapper(converter);
+
+        List<UpdateOneModel<Document>> updates = new ArrayList<>(changes.size());
+        for (Vendor change : changes.values()) {
+            updates.add(new UpdateOneModel<>(
+                    queryMapper.getMappedObject(patchQuery(change.getId(), change, null).getQueryObject(), entity),
+                    updateMapper.getMappedObject(patchUpdate(change).getUpdateObject(), entity)));
+        }
+
+        return mongoTemplate.execute(Vendor.class, collection -> collection.bulkWrite(updates, UNORDERED)).next();
+    }
+
+    static boolean differs(Vendor current, Vendor patch) {
+        return (patch.getFirstName() != null && !Objects.equals(patch.getFirstName(), current.getFirstName()))
+                || (patch.getLastName() != null && !Objects.equals(patch.getLastName(), current.getLastName()))
+                || (patch.getCategoryIds() != null
+                && !Objects.equals(patch.getCategoryIds(), current.getCategoryIds()));
+    }
+
+    static void apply(Vendor target, Vendor patch) {
+        if (patch.getFirstName() != null) {
+            target.setFirstName(patch.getFirstName());
+        }
+
+        if (patch.getLastName() != null) {
+            target.setLastName(patch.getLastName());
+        }
+
+        if (patch.getCategoryIds() != null) {
+            target.setCategoryIds(new ArrayList<>(patch.getCategoryIds()));
+        }
+    }
+
+    /**
+     * An unordered bulkWrite reports the index of every operation that failed while the others are
+     * still applied, so only the patches of the affected vendors are marked as failed.
+     */
+    private static List<BulkPatchResult> withWriteErrors(List<BulkPatchResult> results, List<String> changedIds,
+                                                         MongoBulkWriteException exception) {
+        Map<String, String> errors = new HashMap<>();
+        for (BulkWriteError writeError : exception.getWriteErrors()) {
+            errors.put(changedIds.get(writeError.getIndex()), writeError.getMessage());
+        }
+
+        for (BulkPatchResult result : results) {
+            String error = errors.get(result.getId());
+            if (error != null && result.getStatus() == BulkPatchResult.Status.MODIFIED) {
+                result.setStatus(BulkPatchResult.Status.FAILED);
+                result.setError(error);
+            }
+        }
+        return results;
+    }
+
+    private static List<BulkPatchResult> failedBatch(List<Vendor> batch, Throwable error) {
+        log.warn("Bulk patch batch of {} vendors failed: {}", batch.size(), error.getMessage());
+
+        List<BulkPatchResult> results = new ArrayList<>(batch.size());
+        for (Vendor patch : batch) {
+            results.add(BulkPatchResult.builder()
+                    .id(patch.getId())
+                    .status(BulkPatchResult.Status.FAILED)
+                    .error(error.getMessage())
+                    .build());
+        }
+        return results;
+    }
+
+    @Override
+    public Flux<Vendor> searchByName(String lastNamePrefix, String firstNamePrefix, int limit) {
+        return mongoTemplate.find(VendorSearch.query(lastNamePrefix, firstNamePrefix, limit), Vendor.class);
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countByLastNameInitial() {
+        return mongoTemplate.execute(Vendor.class, collection -> collection.aggregate(COUNT_BY_LAST_NAME_INITIAL))
+                .collectMap(bucket -> bucket.getString("_id"), bucket -> bucket.get("count", Number.class).longValue(),
+                        HashMap::new);
+    }
+
+    /**
+     * Pages on the {@code _id} index first and joins afterwards, so each page costs one aggregation
+     * with one {@code _id} index lookup per category reference, however many vendors it holds.
+     */
+    @Override
+    public Flux<VendorWithCategories> findWithCategories(String afterId, Pageable pageable) {
+        MongoConverter converter = mongoTemplate.getConverter();
+        MongoPersistentEntity<?> entity = converter.getMappingContext().getRequiredPersistentEntity(Vendor.class);
+        Document after = afterId == null ? null : new QueryMapper(converter)
+                .getMappedObject(Query.query(Criteria.where("id").gt(afterId)).getQueryObject(), entity);
+        List<Document> pipeline = withCategoriesPipeline(after, pageable.getPageSize(),
+                mongoTemplate.getCollectionName(Category.class));
+
+        return mongoTemplate.execute(Vendor.class, collection -> collection.aggregate(pipeline))
+                .map(document -> converter.read(VendorWithCategories.class, document));
+    }
+
+    /**
+     * Category ids are stored the way Spring Data stores ids, as ObjectIds when they are valid
+     * ones and as strings otherwise, while the references are plain strings. The references are
+     * converted the same way before the equality {@code $lookup}, which then resolves them on the
+     * category {@code _id} index.
+     */
+    static List<Document> withCategoriesPipeline(Document after, int limit, String categoryCollection) {
+        List<Document> pipeline = new ArrayList<>();
+        if (after != null) {
+            pipeline.add(new Document("$match", after));
+        }
+        pipeline.add(new Document("$sort", new Document("_id", 1)));
+        pipeline.add(new Document("$limit", limit));
+        pipeline.add(new Document("$addFields", new Document(CATEGORY_REFS, new Document("$map",
+                new Document("input", new Document("$ifNull", Arrays.asList("$categoryIds", Collections.emptyList())))
+                        .append("in", new Document("$convert", new Document("input", "$$this")
+                                .append("to", "objectId")
+                                .append("onError", "$$this")))))));
+        pipeline.add(new Document("$lookup", new Document("from", categoryCollection)
+                .append("localField", CATEGORY_REFS)
+                .append("foreignField", "_id")
+                .append("as", "categories")));
+        pipeline.add(new Document("$project", new Document(CATEGORY_REFS, 0)));
+        return pipeline;
+    }
+
+    private static void setOrUnset(Update update, String field, Object value) {
+        if (value == null) {
+            update.unset(field);
+        } else {
+            update.set(field, value);
+        }
+    }
+
+    private Query projection(Query query, Collection<String> fields) {
+        return Projections.include(query,
+                mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(Vendor.class), fields);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Case-insensitive prefix search on vendor names. Queries and indexes share a strength-2
+ * collation, and a prefix is expressed as the range [prefix, prefix + U+FFFF), which ICU sorts
+ * after every other character. That gives Mongo tight index bounds where an /^prefix/i regex
+ * would scan the whole index.
+ */
+public final class VendorSearch {
+
+    public static final Collation NAME_COLLATION = Collation.of("en").strength(Collation.ComparisonLevel.secondary());
+
+    private static final char HIGHEST_COLLATION_CHAR = '\uffff';
+
+    private VendorSearch() {
+    }
+
+    public static List<IndexDefinition> indexes() {
+        return Arrays.asList(
+                new Index().on("lastName", Sort.Direction.ASC).on("firstName", Sort.Direction.ASC)
+                        .named("lastName_firstName_ci").collation(NAME_COLLATION),
+                new Index().on("firstName", Sort.Direction.ASC).on("lastName", Sort.Direction.ASC)
+                        .named("firstName_lastName_ci").collation(NAME_COLLATION));
+    }
+
+    public static Query query(String lastNamePrefix, String firstNamePrefix, int limit) {
+        Query query = new Query().collation(NAME_COLLATION).limit(limit);
+
+        if (lastNamePrefix != null) {
+            query.addCriteria(prefix("lastName", lastNamePrefix));
+        }
+
+        if (firstNamePrefix != null) {
+            query.addCriteria(prefix("firstName", firstNamePrefix));
+        }
+
+        return query.with(lastNamePrefix != null
+                ? Sort.by("lastName", "firstName")
+                : Sort.by("firstName", "lastName"));
+    }
+
+    private static Criteria prefix(String field, String prefix) {
+        return Criteria.where(field).gte(prefix).lt(prefix + HIGHEST_COLLATION_CHAR);
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Objects;
+
+public final class Versions {
+
+    static final String VERSION_FIELD = "version";
+
+    private Versions() {
+    }
+
+    /**
+     * Restricts {@code criteria} to documents at {@code expectedVersion}, or leaves it untouched when
+     * no version is expected. Documents written without a version (e.g. by the bulk inserter) count
+     * as version 0.
+     */
+    static Criteria matching(Criteria criteria, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return criteria;
+        }
+
+        return expectedVersion == 0
+                ? criteria.and(VERSION_FIELD).in(0L, null)
+                : criteria.and(VERSION_FIELD).is(expectedVersion);
+    }
+
+    static Update increment(Update update) {
+        return update.inc(VERSION_FIELD, 1L);
+    }
+
+    /**
+     * In-process counterpart of {@link #matching(Criteria, Long)}.
+     */
+    public static boolean matches(Long storedVersion, Long expectedVersion) {
+        return expectedVersion == null
+                || Objects.equals(storedVersion == null ? 0L : storedVersion, expectedVersion);
+    }
+
+    /**
+     * In-process counterpart of {@link #increment(Update)}: {@code $inc} on a missing field yields 1.
+     */
+    static long next(Long storedVersion) {
+        return storedVersion == null ? 1L : storedVersion + 1;
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.kkukielka.springwebfluxrest.sharding;
+
+import com.kkukielka.springwebfluxrest.domain.RebalanceStatus;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+/**
+ * {@code GET /actuator/rebalance} reports on the last rebalance and
+ * {@code POST /actuator/rebalance} starts one.
+ */
+@Endpoint(id = "rebalance")
+public class RebalanceEndpoint {
+
+    private final ShardRebalancer rebalancer;
+
+    public RebalanceEndpoint(ShardRebalancer rebalancer) {
+        this.rebalancer = rebalancer;
+    }
+
+    @ReadOperation
+    public RebalanceStatus status() {
+        return rebalancer.status();
+    }
+
+    @WriteOperation
+    public RebalanceStatus start() {
+        return rebalancer.start();
+    }
+
+}
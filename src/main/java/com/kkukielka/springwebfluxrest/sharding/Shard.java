@@ -0,0 +1,38 @@
+package com.kkukielka.springwebfluxrest.sharding;
+
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+/**
+ * One Mongo instance holding a hash partition of the vendors.
+ */
+public class Shard {
+
+    private final String name;
+    private final ReactiveMongoTemplate template;
+    private final VendorRepository repository;
+
+    public Shard(String name, ReactiveMongoTemplate template, VendorRepository repository) {
+        this.name = name;
+        this.template = template;
+        this.repository = repository;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ReactiveMongoTemplate getTemplate() {
+        return template;
+    }
+
+    public VendorRepository getRepository() {
+        return repository;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.kkukielka.springwebfluxrest.sharding;
+
+import com.kkukielka.springwebfluxrest.cache.SingleFlight;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+/**
+ * Moves vendor documents between shards as raw documents, so fields the entity does not map
+ * survive the move. A move takes the vendor off its source with a single findAndRemove before
+ * writing it to the target, so only one move can ever hold a given vendor, and a vendor that was
+ * moved and deleted in the meantime cannot be brought back by a move that read it earlier.
+ * Concurrent moves of the same vendor within this process share one execution, so callers only
+ * go on once the vendor has arrived; a request served by another instance while the vendor is in
+ * flight may briefly not find it.
+ */
+class ShardMoves {
+
+    private static final String ID_FIELD = "_id";
+
+    private final SingleFlight<Boolean> inFlight = new SingleFlight<>();
+
+    /**
+     * Completes with {@code true} when the vendor was found on {@code source} and moved.
+     */
+    Mono<Boolean> move(String id, Shard source, Shard target) {
+        return inFlight.execute(id, key -> source.getTemplate()
+                .findAndRemove(byId(key), Document.class, collection(source))
+                .flatMap(document -> target.getTemplate().insert(document, collection(target))
+                        .thenReturn(true)
+                        // written to the target meanwhile, which makes the removed copy the stale one
+                        .onErrorResume(DuplicateKeyException.class, e -> Mono.just(true))
+                        .onErrorResume(error -> restore(document, source).then(Mono.error(error))))
+                .defaultIfEmpty(false));
+    }
+
+    /**
+     * Puts a vendor the target did not take back on its source, unless it was written there again
+     * meanwhile.
+     */
+    private static Mono<Void> restore(Document document, Shard source) {
+        return source.getTemplate().insert(document, collection(source))
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .then();
+    }
+
+    private static Query byId(String id) {
+        // stored the way Spring Data stores String ids, as an ObjectId whenever it is a valid one
+        return Query.query(Criteria.where(ID_FIELD).is(ObjectId.isValid(id) ? new ObjectId(id) : id));
+    }
+
+    static String key(Document document) {
+        Object id = document.get(ID_FIELD);
+        return id instanceof ObjectId ? ((ObjectId) id).toHexString() : String.valueOf(id);
+    }
+
+    static String collection(Shard shard) {
+        return shard.getTemplate().getCollectionName(Vendor.class);
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.kkukielka.springwebfluxrest.sharding;
+
+import com.kkukielka.springwebfluxrest.domain.RebalanceStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves every vendor that is not on the shard owning it there, while the application keeps
+ * serving. Each shard is scanned in turn and the misplaced vendors are moved a few at a time;
+ * vendors touched by requests meanwhile are moved by those requests, and since a move takes the
+ * vendor off its source atomically, each vendor is moved by exactly one of them. A rebalance
+ * that failed is simply started again, and once one completes the previous shard layout is no
+ * longer consulted.
+ */
+@Slf4j
+public class ShardRebalancer {
+
+    private static final String ID_FIELD = "_id";
+
+    private final VendorShards shards;
+    private final int concurrency;
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong moved = new AtomicLong();
+    private RebalanceStatus.State state = RebalanceStatus.State.IDLE;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String error;
+    private Disposable running;
+
+    public ShardRebalancer(VendorShards shards, int concurrency) {
+        this.shards = shards;
+        this.concurrency = concurrency;
+    }
+
+    public synchronized RebalanceStatus status() {
+        return RebalanceStatus.builder()
+                .state(state)
+                .scanned(scanned.get())
+                .moved(moved.get())
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build();
+    }
+
+    /**
+     * Starts a rebalance in the background unless one is running already.
+     */
+    public synchronized RebalanceStatus start() {
+        if (state != RebalanceStatus.State.RUNNING) {
+            scanned.set(0);
+            moved.set(0);
+            state = RebalanceStatus.State.RUNNING;
+            startedAt = Instant.now();
+            finishedAt = null;
+            error = null;
+            running = rebalance().subscribe(null, this::failed, this::finished);
+        }
+        return status();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (running != null) {
+            running.dispose();
+        }
+    }
+
+    Mono<Void> rebalance() {
+        return Flux.fromIterable(shards.all())
+                .concatMap(this::drain)
+                .then();
+    }
+
+    /**
+     * Only the ids are scanned; each move reads the vendor afresh as it takes it off the source,
+     * so vendors changed or deleted since the scan passed them are moved as they are now, or not
+     * at all.
+     */
+    private Flux<Boolean> drain(Shard source) {
+        Query ids = new Query();
+        ids.fields().include(ID_FIELD);
+        return source.getTemplate().find(ids, Document.class, ShardMoves.collection(source))
+                .map(ShardMoves::key)
+                .doOnNext(id -> scanned.incrementAndGet())
+                .filter(id -> shards.owner(id) != source)
+                .flatMap(id -> shards.moves().move(id, source, shards.owner(id)), concurrency)
+                .filter(Boolean::booleanValue)
+                .doOnNext(movedOne -> moved.incrementAndGet());
+    }
+
+    private synchronized void finished() {
+        state = RebalanceStatus.State.DONE;
+        finishedAt = Instant.now();
+        shards.rebalanced();
+        log.info("Rebalanced vendors: scanned {}, moved {}", scanned.get(), moved.get());
+    }
+
+    private synchronized void failed(Throwable failure) {
+        state = RebalanceStatus.State.FAILED;
+        finishedAt = Instant.now();
+        error = failure.getMessage();
+        log.warn("Rebalancing vendors failed after moving {}: {}", moved.get(), failure.getMessage());
+    }
+
+}
@@ -0,0 +1,492 @@
+package com.kkukielka.springwebfluxrest.sharding;
+
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.config.ShardingProperties;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.domain.VendorWithCategories;
+import com.kkukielka.springwebfluxrest.repositories.Batches;
+import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.ExportFormat;
+import com.kkukielka.springwebfluxrest.repositories.SortOrders;
+import com.kkukielka.springwebfluxrest.repositories.Updated;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Spreads vendors over several Mongo instances by consistent hashing of their ids. Operations on
+ * one vendor go to the shard that owns its id, and everything else is scattered over all shards
+ * and gathered back: ordered results are merged from the shards' ordered streams, pulling from
+ * each shard only as far as downstream demand requires.
+ * <p>
+ * Vendors created without an id are given an ObjectId here, since the id has to be known before
+ * the owning shard is. While a rebalance is outstanding, single-vendor operations first move
+ * their vendor over from its previous owner, so they always see the latest state; scatter
+ * operations may miss or see twice the vendors being moved at that moment.
+ */
+public class ShardedVendorRepository implements VendorRepository {
+
+    private static final String ID = "id";
+    private static final Comparator<Vendor> BY_ID = Comparator.comparing(Vendor::getId);
+
+    private final VendorShards shards;
+    private final CategoryRepository categoryRepository;
+    private final ShardingProperties properties;
+    private final BulkInsertProperties bulkProperties;
+    private final Comparator<String> names;
+
+    public ShardedVendorRepository(VendorShards shards, CategoryRepository categoryRepository,
+                                   ShardingProperties properties, BulkInsertProperties bulkProperties) {
+        this.shards = shards;
+        this.categoryRepository = categoryRepository;
+        this.properties = properties;
+        this.bulkProperties = bulkProperties;
+
+        // approximates the case-insensitive collation the shards sort names with
+        Collator collator = Collator.getInstance(Locale.ENGLISH);
+        collator.setStrength(Collator.SECONDARY);
+        this.names = Comparator.nullsFirst(collator::compare);
+    }
+
+    @Override
+    public <S extends Vendor> Mono<S> save(S entity) {
+        withId(entity);
+        return onOwner(entity.getId(), repository -> repository.save(entity));
+    }
+
+    @Override
+    public <S extends Vendor> Flux<S> saveAll(Iterable<S> entities) {
+        return saveAll(Flux.fromIterable(entities));
+    }
+
+    @Override
+    public <S extends Vendor> Flux<S> saveAll(Publisher<S> entityStream) {
+        return Flux.from(entityStream).flatMapSequential(this::save);
+    }
+
+    @Override
+    public <S extends Vendor> Mono<S> insert(S entity) {
+        withId(entity);
+        return onOwner(entity.getId(), repository -> repository.insert(entity));
+    }
+
+    @Override
+    public <S extends Vendor> Flux<S> insert(Iterable<S> entities) {
+        return insert(Flux.fromIterable(entities));
+    }
+
+    @Override
+    public <S extends Vendor> Flux<S> insert(Publisher<S> entities) {
+        return Flux.from(entities).flatMapSequential(this::insert);
+    }
+
+    @Override
+    public Mono<Vendor> findById(String id) {
+        return onOwner(id, repository -> repository.findById(id));
+    }
+
+    @Override
+    public Mono<Vendor> findById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String id) {
+        return onOwner(id, repository -> repository.existsById(id));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<Vendor> findAll() {
+        return merged(BY_ID, repository -> repository.findAll(Sort.by(ID)));
+    }
+
+    @Override
+    public Flux<Vendor> findAll(Sort sort) {
+        Sort total = sort.getOrderFor(ID) == null ? sort.and(Sort.by(ID)) : sort;
+        return merged(SortOrders.comparator(total), repository -> repository.findAll(total));
+    }
+
+    @Override
+    public Flux<Vendor> findAllById(Iterable<String> ids) {
+        return findAllById(Flux.fromIterable(ids));
+    }
+
+    @Override
+    public Flux<Vendor> findAllById(Publisher<String> idStream) {
+        return movedToOwners(Flux.from(idStream))
+                .groupBy(shards::owner)
+                .flatMap(ids -> ids.key().getRepository().findAllById(ids), shards.all().size());
+    }
+
+    @Override
+    public Flux<Vendor> findAllByOrderByIdAsc(Pageable pageable) {
+        return page(pageable, VendorRepository::findAllByOrderByIdAsc);
+    }
+
+    @Override
+    public Flux<Vendor> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable) {
+        return page(pageable, (repository, shardPage) -> repository.findByIdGreaterThanOrderByIdAsc(id, shardPage));
+    }
+
+    /**
+     * Any page may lie entirely on one shard, so each shard is asked for everything up to the
+     * end of the page and the merge skips to its start.
+     */
+    private Flux<Vendor> page(Pageable pageable, BiFunction<VendorRepository, Pageable, Publisher<Vendor>> query) {
+        Pageable shardPage = PageRequest.of(0, Math.toIntExact(pageable.getOffset() + pageable.getPageSize()));
+        return merged(BY_ID, repository -> query.apply(repository, shardPage))
+                .skip(pageable.getOffset())
+                .take(pageable.getPageSize());
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return scattered(VendorRepository::count).reduce(0L, Long::sum);
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return onOwner(id, repository -> repository.deleteById(id));
+    }
+
+    @Override
+    public Mono<Vendor> findAndDeleteById(String id) {
+        return onOwner(id, repository -> repository.findAndDeleteById(id));
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(Vendor entity) {
+        return deleteById(entity.getId());
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends Vendor> entities) {
+        return deleteAll(Flux.fromIterable(entities));
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends Vendor> entityStream) {
+        return Flux.from(entityStream).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return scattered(VendorRepository::deleteAll).then();
+    }
+
+    @Override
+    public <S extends Vendor> Mono<S> findOne(Example<S> example) {
+        return scattered(repository -> repository.findOne(example))
+                .collectList()
+                .flatMap(found -> found.size() > 1
+                        ? Mono.error(new IncorrectResultSizeDataAccessException(1, found.size()))
+                        : Mono.justOrEmpty(found.isEmpty() ? null : found.get(0)));
+    }
+
+    @Override
+    public <S extends Vendor> Flux<S> findAll(Example<S> example) {
+        return findAll(example, Sort.by(ID));
+    }
+
+    @Override
+    public <S extends Vendor> Flux<S> findAll(Example<S> example, Sort sort) {
+        Sort total = sort.getOrderFor(ID) == null ? sort.and(Sort.by(ID)) : sort;
+        return merged(SortOrders.comparator(total), repository -> repository.findAll(example, total));
+    }
+
+    @Override
+    public <S extends Vendor> Mono<Long> count(Example<S> example) {
+        return scattered(repository -> repository.count(example)).reduce(0L, Long::sum);
+    }
+
+    @Override
+    public <S extends Vendor> Mono<Boolean> exists(Example<S> example) {
+        return scattered(repository -> repository.exists(example)).any(Boolean::booleanValue);
+    }
+
+    @Override
+    public Mono<Vendor> findByIdProjected(String id, Collection<String> fields) {
+        return onOwner(id, repository -> repository.findByIdProjected(id, fields));
+    }
+
+    @Override
+    public Flux<Vendor> findAllProjected(Collection<String> fields) {
+        return scattered(repository -> repository.findAllProjected(fields));
+    }
+
+    @Override
+    public Mono<Updated<Vendor>> updateIfChanged(String id, Vendor vendor, Long expectedVersion) {
+        return onOwner(id, repository -> repository.updateIfChanged(id, vendor, expectedVersion));
+    }
+
+    @Override
+    public Mono<Updated<Vendor>> replace(String id, Vendor vendor, Long expectedVersion) {
+        return onOwner(id, repository -> repository.replace(id, vendor, expectedVersion));
+    }
+
+    /**
+     * Batches the vendors as a single-instance insert would and splits each batch by shard, so
+     * there is still one result per batch, in order, however many shards a batch touches.
+     */
+    @Override
+    public Flux<BulkInsertResult> bulkInsert(Publisher<Vendor> vendors) {
+        return Flux.defer(() -> {
+            AtomicLong batchSequence = new AtomicLong();
+
+            return Batches.of(Flux.from(vendors).map(this::withId), bulkProperties)
+                    .flatMapSequential(batch -> insertBatch(batchSequence.incrementAndGet(), batch),
+                            bulkProperties.getMaxInFlight());
+        });
+    }
+
+    private Mono<BulkInsertResult> insertBatch(long batchNumber, List<Vendor> batch) {
+        return Flux.fromIterable(byOwner(batch, Vendor::getId).entrySet())
+                .flatMap(part -> part.getKey().getRepository().bulkInsert(Flux.fromIterable(part.getValue())))
+                .reduceWith(() -> BulkInsertResult.builder().batch(batchNumber).size(batch.size()).build(),
+                        ShardedVendorRepository::addUp);
+    }
+
+    private static BulkInsertResult addUp(BulkInsertResult total, BulkInsertResult part) {
+        total.setInserted(total.getInserted() + part.getInserted());
+        total.setFailed(total.getFailed() + part.getFailed());
+        total.getInsertedIds().addAll(part.getInsertedIds());
+        if (total.getError() == null) {
+            total.setError(part.getError());
+        }
+        return total;
+    }
+
+    /**
+     * Batches the patches and splits each batch by shard like {@link #bulkInsert}, and puts the
+     * shards' results back in input order. Batches run one after another, as they do on a single
+     * instance, so a vendor patched in two batches always sees the result of the earlier one.
+     */
+    @Override
+    public Flux<BulkPatchResult> bulkPatch(Publisher<Vendor> patches) {
+        return Batches.of(patches, bulkProperties).concatMap(this::patchBatch, 1);
+    }
+
+    private Flux<BulkPatchResult> patchBatch(List<Vendor> batch) {
+        Map<Shard, List<Vendor>> parts = byOwner(batch, Vendor::getId);
+        return movedToOwners(Flux.fromIterable(batch).filter(patch -> patch.getId() != null).map(Vendor::getId))
+                .thenMany(Flux.fromIterable(parts.entrySet()))
+                .flatMap(part -> part.getKey().getRepository().bulkPatch(Flux.fromIterable(part.getValue()))
+                        .collectList()
+                        .map(results -> Tuples.of(part.getKey(), results.iterator())))
+                .collectMap(Tuple2::getT1, Tuple2::getT2)
+                .flatMapIterable(results -> {
+                    List<BulkPatchResult> ordered = new ArrayList<>(batch.size());
+                    for (Vendor patch : batch) {
+                        ordered.add(results.get(owner(patch.getId())).next());
+                    }
+                    return ordered;
+                });
+    }
+
+    /**
+     * Exports the shards one after the other. A consistent export needs the rebalance to have
+     * finished, since vendors moving between shards may otherwise be missed or exported twice.
+     */
+    @Override
+    public Flux<DataBuffer> export(ExportFormat format, DataBufferFactory bufferFactory) {
+        List<Shard> all = new ArrayList<>(shards.all());
+        return Flux.range(0, all.size()).concatMap(i -> {
+            Flux<DataBuffer> exported = all.get(i).getRepository().export(format, bufferFactory);
+            return i == 0 || format != ExportFormat.CSV ? exported : withoutHeader(exported);
+        });
+    }
+
+    // a CSV export starts with the header in a buffer of its own
+    private static Flux<DataBuffer> withoutHeader(Flux<DataBuffer> exported) {
+        return exported.index().<DataBuffer>handle((indexed, sink) -> {
+            if (indexed.getT1() == 0) {
+                DataBufferUtils.release(indexed.getT2());
+            } else {
+                sink.next(indexed.getT2());
+            }
+        });
+    }
+
+    /**
+     * Each shard returns its first {@code limit} matches in name order, so the first
+     * {@code limit} of their merge are the overall ones.
+     */
+    @Override
+    public Flux<Vendor> searchByName(String lastNamePrefix, String firstNamePrefix, int limit) {
+        Comparator<Vendor> order = lastNamePrefix != null
+                ? Comparator.comparing(Vendor::getLastName, names).thenComparing(Vendor::getFirstName, names)
+                : Comparator.comparing(Vendor::getFirstName, names).thenComparing(Vendor::getLastName, names);
+        return merged(order.thenComparing(BY_ID),
+                repository -> repository.searchByName(lastNamePrefix, firstNamePrefix, limit))
+                .take(limit);
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countByLastNameInitial() {
+        return scattered(VendorRepository::countByLastNameInitial)
+                .<Map<String, Long>>reduceWith(HashMap::new, (total, counts) -> {
+                    counts.forEach((initial, count) -> total.merge(initial, count, Long::sum));
+                    return total;
+                });
+    }
+
+    /**
+     * Categories are not sharded, so the join happens here, with one category lookup per page.
+     */
+    @Override
+    public Flux<VendorWithCategories> findWithCategories(String afterId, Pageable pageable) {
+        Flux<Vendor> page = afterId == null
+                ? findAllByOrderByIdAsc(pageable)
+                : findByIdGreaterThanOrderByIdAsc(afterId, pageable);
+
+        return page.collectList().flatMapMany(vendors -> {
+            Set<String> categoryIds = new LinkedHashSet<>();
+            for (Vendor vendor : vendors) {
+                if (vendor.getCategoryIds() != null) {
+                    categoryIds.addAll(vendor.getCategoryIds());
+                }
+            }
+
+            Mono<Map<String, Category>> categories = categoryIds.isEmpty()
+                    ? Mono.just(Collections.emptyMap())
+                    : categoryRepository.findAllById(categoryIds).collectMap(Category::getId);
+            return categories.flatMapIterable(byId -> {
+                List<VendorWithCategories> expanded = new ArrayList<>(vendors.size());
+                for (Vendor vendor : vendors) {
+                    expanded.add(withCategories(vendor, byId));
+                }
+                return expanded;
+            });
+        });
+    }
+
+    private static VendorWithCategories withCategories(Vendor vendor, Map<String, Category> categoriesById) {
+        List<Category> categories = new ArrayList<>();
+        if (vendor.getCategoryIds() != null) {
+            for (String categoryId : new LinkedHashSet<>(vendor.getCategoryIds())) {
+                Category category = categoriesById.get(categoryId);
+                if (category != null) {
+                    categories.add(category);
+                }
+            }
+        }
+
+        return VendorWithCategories.builder()
+                .id(vendor.getId())
+                .firstName(vendor.getFirstName())
+                .lastName(vendor.getLastName())
+                .categoryIds(vendor.getCategoryIds())
+                .categories(categories)
+                .version(vendor.getVersion())
+                .build();
+    }
+
+    private <S extends Vendor> S withId(S vendor) {
+        if (vendor.getId() == null) {
+            vendor.setId(new ObjectId().toHexString());
+        }
+        return vendor;
+    }
+
+    /**
+     * Runs {@code operation} on the shard owning {@code id}, first moving the vendor over from
+     * its previous owner when a rebalance is outstanding.
+     */
+    private <R> Mono<R> onOwner(String id, Function<VendorRepository, Mono<R>> operation) {
+        Assert.notNull(id, "The given id must not be null!");
+        Shard owner = shards.owner(id);
+        Shard previous = shards.previousOwner(id);
+
+        Mono<R> onOwner = Mono.defer(() -> operation.apply(owner.getRepository()));
+        return previous == null ? onOwner : shards.moves().move(id, previous, owner).then(onOwner);
+    }
+
+    private Flux<String> movedToOwners(Flux<String> ids) {
+        if (!shards.isRebalancing()) {
+            return ids;
+        }
+
+        return ids.concatMap(id -> {
+            Shard previous = shards.previousOwner(id);
+            return previous == null ? Mono.just(id)
+                    : shards.moves().move(id, previous, shards.owner(id)).thenReturn(id);
+        });
+    }
+
+    private Shard owner(String id) {
+        return id == null ? shards.all().iterator().next() : shards.owner(id);
+    }
+
+    /**
+     * Groups by owning shard, keeping input order within each group. Entries without an id go
+     * to the first shard, which fails them like a single instance would.
+     */
+    private <T> Map<Shard, List<T>> byOwner(List<T> batch, Function<T, String> id) {
+        Map<Shard, List<T>> parts = new LinkedHashMap<>();
+        for (T entry : batch) {
+            parts.computeIfAbsent(owner(id.apply(entry)), shard -> new ArrayList<>()).add(entry);
+        }
+        return parts;
+    }
+
+    private <R> Flux<R> scattered(Function<VendorRepository, Publisher<R>> query) {
+        return Flux.fromIterable(shards.all()).flatMap(shard -> query.apply(shard.getRepository()));
+    }
+
+    /**
+     * Merges the shards' results, each already ordered by {@code comparator}. A vendor that is
+     * being moved can be on two shards at once, and sorts right next to its copy.
+     */
+    @SuppressWarnings("unchecked")
+    private <S extends Vendor> Flux<S> merged(Comparator<? super S> comparator,
+                                              Function<VendorRepository, Publisher<S>> query) {
+        Publisher<S>[] sources = shards.all().stream()
+                .map(shard -> query.apply(shard.getRepository()))
+                .toArray(Publisher[]::new);
+        return Flux.mergeOrdered(properties.getMergePrefetch(), comparator, sources)
+                .distinctUntilChanged(Vendor::getId);
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.kkukielka.springwebfluxrest.sharding;
+
+import com.kkukielka.springwebfluxrest.config.ShardingProperties;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import com.mongodb.ConnectionString;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The shards vendors are spread over and which of them owns a vendor id. While a rebalance is
+ * outstanding the ring the shards were in before the change is kept too, so callers can find
+ * the vendors that have not been moved yet.
+ */
+public class VendorShards implements AutoCloseable {
+
+    private final Map<String, Shard> shards = new LinkedHashMap<>();
+    private final ConsistentHashRing ring;
+    private final List<MongoClient> clients;
+    private final ShardMoves moves = new ShardMoves();
+    private volatile ConsistentHashRing previousRing;
+
+    /**
+     * @param previousRing the ring before the last change, or {@code null} when nothing is left
+     *                     to rebalance
+     */
+    public VendorShards(Collection<Shard> shards, ConsistentHashRing ring, ConsistentHashRing previousRing) {
+        this(shards, ring, previousRing, Collections.emptyList());
+    }
+
+    private VendorShards(Collection<Shard> shards, ConsistentHashRing ring, ConsistentHashRing previousRing,
+                         List<MongoClient> clients) {
+        for (Shard shard : shards) {
+            this.shards.put(shard.getName(), shard);
+        }
+        this.ring = ring;
+        this.previousRing = previousRing;
+        this.clients = clients;
+
+        checkConfigured(ring);
+        if (previousRing != null) {
+            checkConfigured(previousRing);
+        }
+    }
+
+    /**
+     * Opens one client per configured shard. Each shard gets its own template and a vendor
+     * repository built by {@code repositories} on top of it.
+     *
+     * @param eventPublisher receives the mapping events of the shard templates, which keep the
+     *                       entity cache coherent; may be {@code null}
+     */
+    public static VendorShards connect(ShardingProperties properties, MongoConverter converter,
+                                       ApplicationEventPublisher eventPublisher,
+                                       Function<ReactiveMongoTemplate, VendorRepository> repositories) {
+        List<Shard> shards = new ArrayList<>();
+        List<MongoClient> clients = new ArrayList<>();
+        try {
+            properties.getShards().forEach((name, uri) -> {
+                String database = new ConnectionString(uri).getDatabase();
+                if (database == null) {
+                    throw new IllegalStateException("The connection string of shard " + name
+                            + " must name a database");
+                }
+
+                MongoClient client = MongoClients.create(uri);
+                clients.add(client);
+                ReactiveMongoTemplate template = new ReactiveMongoTemplate(
+                        new SimpleReactiveMongoDatabaseFactory(client, database), converter);
+                if (eventPublisher != null) {
+                    template.setApplicationEventPublisher(eventPublisher);
+                }
+                shards.add(new Shard(name, template, repositories.apply(template)));
+            });
+
+            List<String> active = properties.getActive().isEmpty()
+                    ? new ArrayList<>(properties.getShards().keySet())
+                    : properties.getActive();
+            ConsistentHashRing previousRing = properties.getPrevious().isEmpty() ? null
+                    : new ConsistentHashRing(properties.getPrevious(), properties.getVirtualNodes());
+            return new VendorShards(shards, new ConsistentHashRing(active, properties.getVirtualNodes()),
+                    previousRing, clients);
+        } catch (RuntimeException e) {
+            clients.forEach(MongoClient::close);
+            throw e;
+        }
+    }
+
+    private void checkConfigured(ConsistentHashRing ring) {
+        for (String node : ring.getNodes()) {
+            if (!shards.containsKey(node)) {
+                throw new IllegalStateException("Shard " + node + " is not configured");
+            }
+        }
+    }
+
+    /**
+     * Every configured shard, including ones being drained.
+     */
+    public Collection<Shard> all() {
+        return Collections.unmodifiableCollection(shards.values());
+    }
+
+    public Shard owner(String id) {
+        return shards.get(ring.nodeFor(id));
+    }
+
+    /**
+     * The shard that owned {@code id} before the ring changed, or {@code null} when a rebalance
+     * is not outstanding or did not move the id.
+     */
+    public Shard previousOwner(String id) {
+        ConsistentHashRing previous = previousRing;
+        if (previous == null) {
+            return null;
+        }
+
+        String node = previous.nodeFor(id);
+        return node.equals(ring.nodeFor(id)) ? null : shards.get(node);
+    }
+
+    ShardMoves moves() {
+        return moves;
+    }
+
+    public boolean isRebalancing() {
+        return previousRing != null;
+    }
+
+    /**
+     * Called once every vendor sits on its owner, which stops single-vendor operations from
+     * looking for them on their previous owners.
+     */
+    void rebalanced() {
+        previousRing = null;
+    }
+
+    @Override
+    public void close() {
+        clients.forEach(MongoClient::close);
+    }
+
+}
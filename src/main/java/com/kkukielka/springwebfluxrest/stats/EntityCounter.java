@@ -0,0 +1,152 @@
+package com.kkukielka.springwebfluxrest.stats;
+
+import com.kkukielka.springwebfluxrest.domain.EntityStats;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Entity count, optionally broken down into buckets, that the write paths keep up to date so
+ * that reading it never touches Mongo. Writes whose effect on the buckets is unknown mark the
+ * counter stale instead, and {@link StatsReconciler} recomputes it shortly after.
+ */
+public class EntityCounter<T> {
+
+    private final Function<T, String> bucketOf;
+    private final Map<String, Long> buckets = new TreeMap<>();
+    private long count;
+    private Instant reconciledAt;
+    private volatile boolean stale;
+
+    // changes made while a recount runs, added on top of its result
+    private Map<String, Long> pendingBuckets;
+    private long pendingCount;
+
+    /**
+     * @param bucketOf assigns an entity to a bucket, or {@code null} to keep only the total
+     */
+    public EntityCounter(Function<T, String> bucketOf) {
+        this.bucketOf = bucketOf;
+    }
+
+    public synchronized void created(T entity) {
+        addCount(1);
+        if (bucketOf != null) {
+            addToBucket(bucketOf.apply(entity), 1);
+        }
+    }
+
+    /**
+     * Counts entities that were inserted without being seen individually; the buckets are
+     * recomputed by the next reconciliation.
+     */
+    public synchronized void createdInBulk(long inserted) {
+        addCount(inserted);
+        if (bucketOf != null && inserted > 0) {
+            stale = true;
+        }
+    }
+
+    /**
+     * Moves an overwritten entity to the bucket of its new state.
+     *
+     * @param previous the entity before the write, or {@code null} when the write created it
+     */
+    public synchronized void updated(T previous, T current) {
+        if (previous == null) {
+            created(current);
+        } else if (bucketOf != null) {
+            String from = bucketOf.apply(previous);
+            String to = bucketOf.apply(current);
+            if (!from.equals(to)) {
+                addToBucket(from, -1);
+                addToBucket(to, 1);
+            }
+        }
+    }
+
+    public synchronized void deleted(T entity) {
+        if (count > 0) {
+            addCount(-1);
+        }
+        if (bucketOf != null) {
+            addToBucket(bucketOf.apply(entity), -1);
+        }
+    }
+
+    private void addCount(long delta) {
+        count += delta;
+        if (pendingBuckets != null) {
+            pendingCount += delta;
+        }
+    }
+
+    private void addToBucket(String bucket, long delta) {
+        add(buckets, bucket, delta);
+        if (pendingBuckets != null) {
+            pendingBuckets.merge(bucket, delta, Long::sum);
+        }
+    }
+
+    // empty buckets are dropped, as the recount does not report them either
+    private static void add(Map<String, Long> buckets, String bucket, long delta) {
+        buckets.compute(bucket, (key, current) -> {
+            long sum = (current == null ? 0 : current) + delta;
+            return sum > 0 ? sum : null;
+        });
+    }
+
+    public void markStale() {
+        stale = true;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public boolean hasBuckets() {
+        return bucketOf != null;
+    }
+
+    /**
+     * Clears the stale flag before the recount starts, so that a write racing with it marks the
+     * counter stale again, and starts collecting the changes made until the recount is applied.
+     */
+    synchronized void reconciling() {
+        stale = false;
+        pendingBuckets = new TreeMap<>();
+        pendingCount = 0;
+    }
+
+    synchronized Instant getReconciledAt() {
+        return reconciledAt;
+    }
+
+    /**
+     * Replaces the counts with a recount, plus whatever changed since {@link #reconciling()}. A
+     * write the recount already saw is then counted twice until the next reconciliation, which
+     * beats losing the writes it missed.
+     */
+    synchronized void reset(long count, Map<String, Long> buckets, Instant reconciledAt) {
+        this.count = Math.max(0, count + pendingCount);
+        this.buckets.clear();
+        this.buckets.putAll(buckets);
+        if (pendingBuckets != null) {
+            pendingBuckets.forEach((bucket, delta) -> add(this.buckets, bucket, delta));
+        }
+        this.reconciledAt = reconciledAt;
+        pendingBuckets = null;
+        pendingCount = 0;
+    }
+
+    public synchronized EntityStats snapshot() {
+        return EntityStats.builder()
+                .count(count)
+                .countsByLastNameInitial(bucketOf == null ? null : new TreeMap<>(buckets))
+                .reconciledAt(reconciledAt)
+                .build();
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.kkukielka.springwebfluxrest.stats;
+
+import com.kkukielka.springwebfluxrest.config.StatsProperties;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Recomputes the counters from the repositories in the background: every {@code app.stats.reconcile-interval},
+ * and within {@code app.stats.stale-reconcile-delay} of a counter being marked stale.
+ */
+@Slf4j
+@Component
+public class StatsReconciler {
+
+    private final VendorRepository vendorRepository;
+    private final CategoryRepository categoryRepository;
+    private final EntityCounter<Vendor> vendorStats;
+    private final EntityCounter<Category> categoryStats;
+    private final StatsProperties properties;
+    private Disposable schedule;
+
+    public StatsReconciler(VendorRepository vendorRepository,
+                           CategoryRepository categoryRepository,
+                           EntityCounter<Vendor> vendorStats,
+                           EntityCounter<Category> categoryStats,
+                           StatsProperties properties) {
+        this.vendorRepository = vendorRepository;
+        this.categoryRepository = categoryRepository;
+        this.vendorStats = vendorStats;
+        this.categoryStats = categoryStats;
+        this.properties = properties;
+    }
+
+    /**
+     * Bucket of a vendor in the stats, matching what {@code $toUpper} of the first code point
+     * yields in Mongo: ASCII letters are upper-cased, anything else is kept as is.
+     */
+    public static String lastNameInitial(Vendor vendor) {
+        String lastName = vendor.getLastName();
+        if (lastName == null || lastName.isEmpty()) {
+            return "";
+        }
+
+        int initial = lastName.codePointAt(0);
+        if (initial >= 'a' && initial <= 'z') {
+            initial += 'A' - 'a';
+        }
+        return new String(Character.toChars(initial));
+    }
+
+    /**
+     * Starts once the seeder and other runners are done, so the first pass sees their writes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        schedule = Flux.interval(Duration.ZERO, properties.getStaleReconcileDelay())
+                .onBackpressureDrop()
+                .concatMap(tick -> reconcileDue(), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+
+    Mono<Void> reconcileDue() {
+        return Mono.when(
+                isDue(vendorStats) ? reconcile("vendors", vendorStats, countVendors()) : Mono.empty(),
+                isDue(categoryStats) ? reconcile("categories", categoryStats, countCategories()) : Mono.empty());
+    }
+
+    private boolean isDue(EntityCounter<?> counter) {
+        Instant reconciledAt = counter.getReconciledAt();
+        return counter.isStale() || reconciledAt == null
+                || !reconciledAt.plus(properties.getReconcileInterval()).isAfter(Instant.now());
+    }
+
+    private Mono<Void> reconcile(String collection, EntityCounter<?> counter, Mono<Map<String, Long>> recount) {
+        return Mono.fromRunnable(counter::reconciling)
+                .then(recount)
+                .doOnNext(buckets -> {
+                    long count = buckets.values().stream().mapToLong(Long::longValue).sum();
+                    counter.reset(count, counter.hasBuckets() ? buckets : Collections.emptyMap(), Instant.now());
+                    log.debug("Reconciled {} stats: {} documents", collection, count);
+                })
+                .doOnError(error -> {
+                    counter.markStale();
+                    log.warn("Failed to reconcile {} stats: {}", collection, error.getMessage());
+                })
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private Mono<Map<String, Long>> countVendors() {
+        return vendorRepository.countByLastNameInitial();
+    }
+
+    private Mono<Map<String, Long>> countCategories() {
+        return categoryRepository.count().map(count -> Collections.singletonMap("", count));
+    }
+
+}
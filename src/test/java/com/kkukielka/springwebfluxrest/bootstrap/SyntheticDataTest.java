@@ -0,0 +1,45 @@
+package com.kkukielka.springwebfluxrest.bootstrap;
+
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticDataTest {
+
+    @Test
+    void sameSeedGeneratesSameDocuments() {
+        for (long index = 0; index < 1000; index++) {
+            assertEquals(SyntheticData.vendor(42, index), SyntheticData.vendor(42, index));
+            assertEquals(SyntheticData.category(42, index), SyntheticData.category(42, index));
+        }
+    }
+
+    @Test
+    void differentSeedsGenerateDifferentDatasets() {
+        int differences = 0;
+        for (long index = 0; index < 100; index++) {
+            if (!SyntheticData.vendor(1, index).equals(SyntheticData.vendor(2, index))) {
+                differences++;
+            }
+        }
+
+        assertTrue(differences > 50);
+    }
+
+    @Test
+    void vendorNamesAreSpreadOut() {
+        Set<String> lastNames = new HashSet<>();
+        for (long index = 0; index < 10_000; index++) {
+            Vendor vendor = SyntheticData.vendor(42, index);
+            assertNotNull(vendor.getFirstName());
+            lastNames.add(vendor.getLastName());
+        }
+
+        assertTrue(lastNames.size() > 5_000);
+    }
+
+}
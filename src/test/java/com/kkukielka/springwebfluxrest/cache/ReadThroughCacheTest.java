@@ -0,0 +1,79 @@
+package com.kkukielka.springwebfluxrest.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadThroughCacheTest {
+
+    private ReadThroughCache<Vendor> cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ReadThroughCache<>(Caffeine.newBuilder().maximumSize(10).recordStats().build());
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void secondReadIsServedFromCache() {
+        // when
+        StepVerifier.create(cache.get("1", this::load)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(cache.get("1", this::load)).expectNextCount(1).verifyComplete();
+
+        // then
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getNativeCache().stats().hitCount());
+        assertEquals(1, cache.getNativeCache().stats().missCount());
+    }
+
+    @Test
+    void invalidatedEntryIsLoadedAgain() {
+        // given
+        cache.get("1", this::load).block();
+
+        // when
+        cache.invalidate("1");
+        cache.get("1", this::load).block();
+
+        // then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void missingEntityIsNotCached() {
+        // when
+        StepVerifier.create(cache.get("1", id -> Mono.empty())).verifyComplete();
+
+        // then
+        assertNull(cache.getNativeCache().getIfPresent("1"));
+    }
+
+    @Test
+    void loadRacingWithWriteDoesNotPopulateCache() {
+        // given - the write lands while the read is still waiting for Mongo
+        Mono<Vendor> staleRead = cache.get("1", id -> load(id)
+                .doOnSubscribe(subscription -> cache.invalidate(id)));
+
+        // when
+        staleRead.block();
+
+        // then
+        assertNull(cache.getNativeCache().getIfPresent("1"));
+    }
+
+    private Mono<Vendor> load(String id) {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return Vendor.builder().id(id).firstName("fname").lastName("lname").build();
+        });
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.kkukielka.springwebfluxrest.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 200;
+
+    private SingleFlight<String> singleFlight;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        singleFlight = new SingleFlight<>();
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() {
+        // when
+        List<String> results = Flux.range(0, CALLERS)
+                .flatMap(i -> singleFlight.execute("1", this::slowLoad).subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(CALLERS, results.size());
+        assertTrue(results.stream().allMatch("value-1"::equals));
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void differentKeysLoadIndependently() {
+        // when
+        Flux.merge(singleFlight.execute("1", this::slowLoad), singleFlight.execute("2", this::slowLoad))
+                .blockLast(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void completedLoadIsNotReused() {
+        // when
+        singleFlight.execute("1", this::slowLoad).block(Duration.ofSeconds(5));
+        singleFlight.execute("1", this::slowLoad).block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void failedLoadIsDropped() {
+        // given
+        Mono<String> failing = singleFlight.execute("1", key -> Mono.error(new IllegalStateException("boom")));
+
+        // when - then
+        StepVerifier.create(failing).expectError(IllegalStateException.class).verify();
+        assertEquals(0, singleFlight.inFlightCount());
+
+        StepVerifier.create(singleFlight.execute("1", this::slowLoad))
+                .expectNext("value-1")
+                .verifyComplete();
+    }
+
+    private Mono<String> slowLoad(String key) {
+        return Mono.delay(Duration.ofMillis(100))
+                .doOnSubscribe(subscription -> loads.incrementAndGet())
+                .map(tick -> "value-" + key);
+    }
+
+}
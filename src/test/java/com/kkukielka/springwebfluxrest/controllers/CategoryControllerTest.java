@@ -1,19 +1,43 @@
 package com.kkukielka.springwebfluxrest.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.domain.BatchGetResult;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
 import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.MutationEvent;
+import com.kkukielka.springwebfluxrest.events.MutationEventPublisher;
 import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.UnknownFieldException;
+import com.kkukielka.springwebfluxrest.repositories.Updated;
+import com.kkukielka.springwebfluxrest.stats.EntityCounter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.BDDMockito;
 import org.mockito.Mockito;
 import org.reactivestreams.Publisher;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.*;
 
 class CategoryControllerTest {
@@ -21,12 +45,22 @@ class CategoryControllerTest {
     private WebTestClient webTestClient;
     private CategoryRepository categoryRepository;
     private CategoryController categoryController;
+    private MutationEventPublisher<Category> categoryEvents;
+    private EntityCounter<Category> categoryStats;
 
     @BeforeEach
     void setUp() {
         categoryRepository = Mockito.mock(CategoryRepository.class);
-        categoryController = new CategoryController(categoryRepository);
-        webTestClient = WebTestClient.bindToController(categoryController).build();
+        categoryEvents = new MutationEventPublisher<>(16, 16, MutationEventPublisher.Overflow.DROP_OLDEST);
+        categoryStats = new EntityCounter<>(null);
+        categoryController = new CategoryController(categoryRepository, categoryEvents, categoryStats);
+        webTestClient = bind(categoryController);
+    }
+
+    WebTestClient bind(CategoryController categoryController) {
+        return WebTestClient.bindToController(categoryController)
+                .httpMessageCodecs(new WebConfig(new ObjectMapper())::configureHttpMessageCodecs)
+                .build();
     }
 
     @Test
@@ -42,6 +76,73 @@ class CategoryControllerTest {
                 .hasSize(2);
     }
 
+    @Test
+    void listCategoriesAsNdjson() {
+        // given
+        given(categoryRepository.findAll())
+                .willReturn(Flux.just(Category.builder().id("a").description("desc1").build(),
+                        Category.builder().id("b").description("desc2").build()));
+
+        // when - then
+        webTestClient.get().uri(CategoryController.BASE_URL)
+                .accept(WebConfig.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(WebConfig.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .value(body -> assertEquals(2, body.trim().split("\n").length));
+    }
+
+    @Test
+    void listCategoriesFirstPage() {
+        // given
+        given(categoryRepository.findAllByOrderByIdAsc(any(Pageable.class)))
+                .willReturn(Flux.just(Category.builder().id("a").description("desc1").build(),
+                        Category.builder().id("b").description("desc2").build()));
+
+        // when - then
+        webTestClient.get().uri(CategoryController.BASE_URL + "?limit=2")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(Pagination.NEXT_CURSOR_HEADER, "b")
+                .expectBodyList(Category.class)
+                .hasSize(2);
+
+        verify(categoryRepository).findAllByOrderByIdAsc(PageRequest.of(0, 2));
+    }
+
+    @Test
+    void listCategoriesLastPage() {
+        // given
+        given(categoryRepository.findByIdGreaterThanOrderByIdAsc(anyString(), any(Pageable.class)))
+                .willReturn(Flux.just(Category.builder().id("b").description("desc2").build()));
+
+        // when - then
+        webTestClient.get().uri(CategoryController.BASE_URL + "?after=a&limit=2")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .doesNotExist(Pagination.NEXT_CURSOR_HEADER)
+                .expectBodyList(Category.class)
+                .hasSize(1);
+
+        verify(categoryRepository).findByIdGreaterThanOrderByIdAsc("a", PageRequest.of(0, 2));
+    }
+
+    @Test
+    void listCategoriesPageLimitTooLarge() {
+        // when - then
+        webTestClient.get().uri(CategoryController.BASE_URL + "?limit=" + (Pagination.MAX_PAGE_SIZE + 1))
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
     @Test
     void getCategoryById() {
         // given
@@ -51,10 +152,82 @@ class CategoryControllerTest {
         // when - then
         webTestClient.get().uri(CategoryController.BASE_URL + "/1")
                 .exchange()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"0\"")
                 .expectBody(Category.class);
 
     }
 
+    @Test
+    void getCategoryByIdNotModified() {
+        // given
+        given(categoryRepository.findById(anyString()))
+                .willReturn(Mono.just(Category.builder().description("desc1").version(5L).build()));
+
+        // when - then
+        webTestClient.get().uri(CategoryController.BASE_URL + "/1")
+                .ifNoneMatch("\"5\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+    }
+
+    @Test
+    void getCategoryByIdWithFields() {
+        // given
+        given(categoryRepository.findByIdProjected(anyString(), anyCollection()))
+                .willReturn(Mono.just(Category.builder().id("1").description("desc1").build()));
+
+        // when - then
+        webTestClient.get().uri(CategoryController.BASE_URL + "/1?fields=id,description")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.description").isNotEmpty();
+
+        verify(categoryRepository).findByIdProjected("1", new HashSet<>(Arrays.asList("id", "description")));
+        verify(categoryRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void listCategoriesWithUnknownField() {
+        // given
+        given(categoryRepository.findAllProjected(anyCollection()))
+                .willReturn(Flux.error(new UnknownFieldException(Category.class, Collections.singleton("password"))));
+
+        // when - then
+        webTestClient.get().uri(CategoryController.BASE_URL + "?fields=password")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void batchGetCategories() {
+        // given
+        given(categoryRepository.findAllById(any(Iterable.class)))
+                .willReturn(Flux.just(Category.builder().id("2").description("Fruits").build()));
+
+        // when
+        List<BatchGetResult<Category>> results = webTestClient.post()
+                .uri(CategoryController.BASE_URL + BatchGet.BATCH_GET_PATH)
+                .bodyValue(Arrays.asList("1", "2"))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<BatchGetResult<Category>>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        assertEquals(2, results.size());
+        assertEquals("1", results.get(0).getId());
+        assertFalse(results.get(0).isFound());
+        assertEquals("Fruits", results.get(1).getEntity().getDescription());
+    }
+
     @Test
     void createCategory() {
         // given
@@ -72,11 +245,59 @@ class CategoryControllerTest {
 
     }
 
+    @Test
+    void createCategoriesInBulk() {
+        // given
+        given(categoryRepository.bulkInsert(any(Publisher.class)))
+                .willReturn(Flux.just(BulkInsertResult.builder().batch(1).size(2).inserted(2).build()));
+
+        Flux<Category> categoriesToSave = Flux.just(Category.builder().description("test").build(),
+                Category.builder().description("test").build());
+
+        // when - then
+        webTestClient.post().uri(CategoryController.BASE_URL + "?bulk=true")
+                .body(categoriesToSave, Category.class)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody()
+                .jsonPath("$[0].inserted").isEqualTo(2)
+                .jsonPath("$[0].failed").isEqualTo(0);
+
+        verify(categoryRepository, never()).saveAll(any(Publisher.class));
+    }
+
+    @Test
+    void createCategoriesInBulkPublishesEvents() {
+        // given
+        given(categoryRepository.bulkInsert(any(Publisher.class))).willReturn(Flux.just(BulkInsertResult.builder()
+                .batch(1).size(2).inserted(2).insertedIds(Arrays.asList("1", "2")).build()));
+
+        Flux<Category> categoriesToSave = Flux.just(Category.builder().id("1").description("test").build(),
+                Category.builder().id("2").description("test").build());
+
+        // when - then
+        StepVerifier.create(categoryEvents.stream(null).take(2))
+                .then(() -> webTestClient.post().uri(CategoryController.BASE_URL + "?bulk=true")
+                        .body(categoriesToSave, Category.class)
+                        .exchange()
+                        .expectStatus()
+                        .isCreated())
+                .assertNext(event -> assertEquals("1", event.getEntityId()))
+                .assertNext(event -> {
+                    assertEquals(MutationEvent.Type.CREATED, event.getType());
+                    assertEquals("2", event.getEntityId());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
     @Test
     void updateCategory() {
         // given
-        given(categoryRepository.save(any(Category.class)))
-                .willReturn(Mono.just(Category.builder().build()));
+        given(categoryRepository.replace(anyString(), any(Category.class), any()))
+                .willReturn(Mono.just(new Updated<>(Category.builder().version(0L).build(),
+                        Category.builder().version(1L).build())));
 
         Mono<Category> categoryToUpdate = Mono.just(Category.builder().description("test").build());
 
@@ -85,17 +306,77 @@ class CategoryControllerTest {
                 .body(categoryToUpdate, Category.class)
                 .exchange()
                 .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        verify(categoryRepository).replace(eq("1"), any(Category.class), isNull());
+        verify(categoryRepository, never()).save(any());
+    }
+
+    @Test
+    void updateCategoryVersionMismatch() {
+        // given
+        given(categoryRepository.replace(anyString(), any(Category.class), any()))
+                .willReturn(Mono.empty());
+
+        Mono<Category> categoryToUpdate = Mono.just(Category.builder().description("test").build());
+
+        // when - then
+        webTestClient.put().uri(CategoryController.BASE_URL + "/1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .body(categoryToUpdate, Category.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        verify(categoryRepository).replace(eq("1"), any(Category.class), eq(3L));
+    }
+
+    @Test
+    void replacingCreatedCategoryCountsIt() {
+        // given
+        given(categoryRepository.replace(anyString(), any(Category.class), any()))
+                .willReturn(Mono.just(new Updated<>(null, Category.builder().id("1").description("new").version(1L)
+                        .build())));
+
+        // when
+        webTestClient.put().uri(CategoryController.BASE_URL + "/1")
+                .body(Mono.just(Category.builder().description("new").build()), Category.class)
+                .exchange()
+                .expectStatus()
                 .isOk();
+
+        // then
+        assertFalse(categoryStats.isStale());
+        assertEquals(1L, categoryStats.snapshot().getCount());
     }
 
     @Test
-    void patchCategoryWithChanges() {
+    void replacingExistingCategoryKeepsCount() {
         // given
-        given(categoryRepository.findById(anyString()))
-                .willReturn(Mono.just(Category.builder().description("abc").build()));
+        categoryStats.created(Category.builder().id("1").build());
+        given(categoryRepository.replace(anyString(), any(Category.class), any()))
+                .willReturn(Mono.just(new Updated<>(Category.builder().id("1").version(0L).build(),
+                        Category.builder().id("1").description("new").version(1L).build())));
 
-        given(categoryRepository.save(any(Category.class)))
-                .willReturn(Mono.just(Category.builder().build()));
+        // when
+        webTestClient.put().uri(CategoryController.BASE_URL + "/1")
+                .body(Mono.just(Category.builder().description("new").build()), Category.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // then
+        assertFalse(categoryStats.isStale());
+        assertEquals(1L, categoryStats.snapshot().getCount());
+    }
+
+    @Test
+    void patchCategoryWithChanges() {
+        // given
+        given(categoryRepository.updateIfChanged(anyString(), any(Category.class), any()))
+                .willReturn(Mono.just(Category.builder().description("new abc").build()));
 
         Mono<Category> categoryToUpdate = Mono.just(Category.builder().description("new abc").build());
 
@@ -104,20 +385,24 @@ class CategoryControllerTest {
                 .body(categoryToUpdate, Category.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isOk()
+                .expectBody()
+                .jsonPath("$.description").isEqualTo("new abc");
 
-        verify(categoryRepository).save(any());
+        verify(categoryRepository).updateIfChanged(eq("1"), any(Category.class), isNull());
+        verify(categoryRepository, never()).findById(anyString());
+        verify(categoryRepository, never()).save(any());
     }
 
     @Test
     void patchCategoryWithNullChanges() {
         // given
+        given(categoryRepository.updateIfChanged(anyString(), any(Category.class), any()))
+                .willReturn(Mono.empty());
+
         given(categoryRepository.findById(anyString()))
                 .willReturn(Mono.just(Category.builder().description("abc").build()));
 
-        given(categoryRepository.save(any(Category.class)))
-                .willReturn(Mono.just(Category.builder().build()));
-
         Mono<Category> categoryToUpdate = Mono.just(Category.builder().build());
 
         // when - then
@@ -133,12 +418,12 @@ class CategoryControllerTest {
     @Test
     void patchCategoryNoChanges() {
         // given
+        given(categoryRepository.updateIfChanged(anyString(), any(Category.class), any()))
+                .willReturn(Mono.empty());
+
         given(categoryRepository.findById(anyString()))
                 .willReturn(Mono.just(Category.builder().description("abc").build()));
 
-        given(categoryRepository.save(any(Category.class)))
-                .willReturn(Mono.just(Category.builder().build()));
-
         Mono<Category> categoryToUpdate = Mono.just(Category.builder().description("abc").build());
 
         // when - then
@@ -146,18 +431,21 @@ class CategoryControllerTest {
                 .body(categoryToUpdate, Category.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isOk()
+                .expectBody()
+                .jsonPath("$.description").isEqualTo("abc");
 
+        verify(categoryRepository).findById("1");
         verify(categoryRepository, never()).save(any());
     }
 
     @Test
     void patchCategoryNoChangesNulls() {
         // given
-        given(categoryRepository.findById(anyString()))
-                .willReturn(Mono.just(Category.builder().build()));
+        given(categoryRepository.updateIfChanged(anyString(), any(Category.class), any()))
+                .willReturn(Mono.empty());
 
-        given(categoryRepository.save(any(Category.class)))
+        given(categoryRepository.findById(anyString()))
                 .willReturn(Mono.just(Category.builder().build()));
 
         Mono<Category> categoryToUpdate = Mono.just(Category.builder().build());
@@ -172,4 +460,89 @@ class CategoryControllerTest {
         verify(categoryRepository, never()).save(any());
     }
 
-}
\ No newline at end of file
+    @Test
+    void patchCategoryNotFound() {
+        // given
+        given(categoryRepository.updateIfChanged(anyString(), any(Category.class), any()))
+                .willReturn(Mono.empty());
+
+        given(categoryRepository.findById(anyString()))
+                .willReturn(Mono.empty());
+
+        Mono<Category> categoryToUpdate = Mono.just(Category.builder().description("abc").build());
+
+        // when - then
+        webTestClient.patch().uri(CategoryController.BASE_URL + "/1")
+                .body(categoryToUpdate, Category.class)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        verify(categoryRepository, never()).save(any());
+    }
+
+    @Test
+    void deleteCategoryPublishesEvent() {
+        // given
+        given(categoryRepository.findAndDeleteById(anyString()))
+                .willReturn(Mono.just(Category.builder().id("1").description("desc1").build()));
+
+        // when - then
+        StepVerifier.create(categoryEvents.stream(null).take(1))
+                .then(() -> webTestClient.delete().uri(CategoryController.BASE_URL + "/1")
+                        .exchange()
+                        .expectStatus()
+                        .isNoContent())
+                .assertNext(event -> {
+                    assertEquals(MutationEvent.Type.DELETED, event.getType());
+                    assertEquals("1", event.getEntityId());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        verify(categoryRepository).findAndDeleteById("1");
+    }
+
+    @Test
+    void deleteMissingCategoryPublishesNothing() {
+        // given
+        given(categoryRepository.findAndDeleteById(anyString())).willReturn(Mono.empty());
+
+        // when
+        webTestClient.delete().uri(CategoryController.BASE_URL + "/1")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        // then
+        StepVerifier.create(categoryEvents.stream(0L))
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(0L, categoryStats.snapshot().getCount());
+    }
+
+    @Test
+    void categoryStatsCountBulkInserts() {
+        // given
+        given(categoryRepository.bulkInsert(any(Publisher.class)))
+                .willReturn(Flux.just(BulkInsertResult.builder().batch(1).size(3).inserted(3).build()));
+
+        webTestClient.post().uri(CategoryController.BASE_URL + "?bulk=true")
+                .body(Flux.just(Category.builder().description("a").build()), Category.class)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        // when - then
+        webTestClient.get().uri(CategoryController.BASE_URL + CategoryController.STATS_PATH)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(3)
+                .jsonPath("$.countsByLastNameInitial").doesNotExist();
+        assertFalse(categoryStats.isStale());
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+
+/**
+ * Runs every {@link CategoryControllerTest} scenario against the functional routes.
+ */
+class CategoryRoutesTest extends CategoryControllerTest {
+
+    @Override
+    WebTestClient bind(CategoryController categoryController) {
+        return WebTestClient.bindToRouterFunction(new CategoryRoutes(categoryController).routerFunction())
+                .handlerStrategies(HandlerStrategies.builder()
+                        .codecs(new WebConfig(new ObjectMapper())::configureHttpMessageCodecs)
+                        .build())
+                .build();
+    }
+
+}
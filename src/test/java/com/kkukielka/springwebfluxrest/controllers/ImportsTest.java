@@ -0,0 +1,104 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.ImportProgress;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportsTest {
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void linesSpanningBuffersKeepTheirByteOffsets() {
+        // when
+        List<Imports.Line> lines = Imports.lines(buffers("{\"firstName\":", "\"J\u00f6rg\"}\r\n", "\n{}")).collectList()
+                .block();
+
+        // then
+        assertEquals(3, lines.size());
+        assertEquals("{\"firstName\":\"J\u00f6rg\"}\r", new String(lines.get(0).bytes, StandardCharsets.UTF_8));
+        assertEquals(23, lines.get(0).end);
+        assertTrue(lines.get(1).isBlank());
+        assertEquals(24, lines.get(2).start);
+        assertEquals(26, lines.get(2).end);
+    }
+
+    @Test
+    void resumesAfterByteOffset() {
+        // given
+        List<Vendor> inserted = new ArrayList<>();
+        String body = "{\"firstName\":\"a\"}\n{\"firstName\":\"b\"}\n{\"firstName\":\"c\"}\n";
+
+        // when
+        ImportProgress last = Imports.run(buffers(body), 0, 18, objectMapper, Vendor.class,
+                vendors -> vendors.doOnNext(inserted::add).buffer(10)
+                        .map(batch -> BulkInsertResult.builder().size(batch.size()).inserted(batch.size()).build()))
+                .blockLast();
+
+        // then
+        assertEquals(Arrays.asList("b", "c"), inserted.stream().map(Vendor::getFirstName).collect(Collectors.toList()));
+        assertEquals(3, last.getLines());
+        assertEquals(body.length(), last.getBytes());
+        assertTrue(last.isDone());
+    }
+
+    @Test
+    void offsetsStopAtFirstFailedBatch() {
+        // given
+        String body = "{\"firstName\":\"a\"}\n{\"firstName\":\"b\"}\n{\"firstName\":\"c\"}\n";
+        List<Boolean> fails = Arrays.asList(false, true, false);
+
+        // when
+        List<ImportProgress> progress = Imports.run(buffers(body), 0, 0, objectMapper, Vendor.class,
+                vendors -> vendors.buffer(1).index()
+                        .map(batch -> fails.get(batch.getT1().intValue())
+                                ? BulkInsertResult.builder().size(1).failed(1).error("timeout").build()
+                                : BulkInsertResult.builder().size(1).inserted(1).build()))
+                .collectList()
+                .block();
+
+        // then
+        ImportProgress last = progress.get(progress.size() - 1);
+        assertEquals(1, progress.get(0).getLines());
+        assertEquals(1, progress.get(1).getLines());
+        assertEquals(1, last.getLines());
+        assertEquals(18, last.getBytes());
+        assertEquals(2, last.getInserted());
+        assertEquals(1, last.getFailed());
+        assertTrue(last.isDone());
+    }
+
+    @Test
+    void rejectsOverlongLines() {
+        // given
+        char[] line = new char[Imports.MAX_LINE_BYTES + 1];
+        Arrays.fill(line, 'x');
+
+        // when - then
+        StepVerifier.create(Imports.lines(buffers(new String(line))))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    private Flux<DataBuffer> buffers(String... chunks) {
+        return Flux.fromArray(chunks)
+                .map(chunk -> bufferFactory.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
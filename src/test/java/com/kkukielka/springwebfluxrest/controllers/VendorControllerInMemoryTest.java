@@ -0,0 +1,133 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.config.ExportProperties;
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.events.MutationEventPublisher;
+import com.kkukielka.springwebfluxrest.repositories.InMemoryCategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.InMemoryVendorRepository;
+import com.kkukielka.springwebfluxrest.stats.EntityCounter;
+import com.kkukielka.springwebfluxrest.stats.StatsReconciler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the vendor endpoints end to end against the in-memory repository instead of a mock.
+ */
+class VendorControllerInMemoryTest {
+
+    private InMemoryVendorRepository vendorRepository;
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        vendorRepository = new InMemoryVendorRepository(InMemoryVendorRepository.newStore(),
+                InMemoryCategoryRepository.newStore(), new BulkInsertProperties(), new ExportProperties(),
+                new ObjectMapper());
+        VendorController vendorController = new VendorController(vendorRepository,
+                new MutationEventPublisher<>(16, 16, MutationEventPublisher.Overflow.DROP_OLDEST),
+                new EntityCounter<>(StatsReconciler::lastNameInitial), new ObjectMapper());
+        webTestClient = WebTestClient.bindToController(vendorController)
+                .httpMessageCodecs(new WebConfig(new ObjectMapper())::configureHttpMessageCodecs)
+                .build();
+    }
+
+    @Test
+    void createUpdateAndDeleteVendor() {
+        // given
+        webTestClient.post().uri(VendorController.BASE_URL)
+                .bodyValue(Vendor.builder().firstName("Joe").lastName("Smith").build())
+                .exchange()
+                .expectStatus()
+                .isCreated();
+        String id = vendorRepository.findAll().blockFirst().getId();
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "/" + id)
+                .exchange()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"0\"");
+
+        webTestClient.put().uri(VendorController.BASE_URL + "/" + id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(Vendor.builder().firstName("Jim").lastName("Smith").build())
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        webTestClient.patch().uri(VendorController.BASE_URL + "/" + id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(Vendor.builder().firstName("Ann").build())
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+
+        webTestClient.delete().uri(VendorController.BASE_URL + "/" + id)
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        webTestClient.delete().uri(VendorController.BASE_URL + "/" + id)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void patchOnlyCategoryIds() {
+        // given
+        vendorRepository.save(Vendor.builder().id("a").firstName("Joe").lastName("Smith").build()).block();
+
+        // when
+        webTestClient.patch().uri(VendorController.BASE_URL + "/a")
+                .bodyValue(Vendor.builder().categoryIds(Collections.singletonList("c1")).build())
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        // then
+        Vendor patched = vendorRepository.findById("a").block();
+        assertEquals(Collections.singletonList("c1"), patched.getCategoryIds());
+        assertEquals("Joe", patched.getFirstName());
+    }
+
+    @Test
+    void pageAndSearchVendors() {
+        // given
+        vendorRepository.saveAll(Flux.just("a", "b", "c")
+                .map(id -> Vendor.builder().id(id).firstName("First" + id).lastName("Last" + id).build()))
+                .blockLast();
+
+        // when
+        List<Vendor> secondPage = webTestClient.get()
+                .uri(VendorController.BASE_URL + "?after=a&limit=1")
+                .exchange()
+                .expectHeader()
+                .valueEquals(Pagination.NEXT_CURSOR_HEADER, "b")
+                .expectBodyList(Vendor.class)
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        assertEquals("b", secondPage.get(0).getId());
+        webTestClient.get().uri(VendorController.BASE_URL + "/search?lastName=lastc")
+                .exchange()
+                .expectBodyList(Vendor.class)
+                .hasSize(1);
+    }
+
+}
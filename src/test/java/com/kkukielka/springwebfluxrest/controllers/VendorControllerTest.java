@@ -1,35 +1,86 @@
 package com.kkukielka.springwebfluxrest.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.domain.BatchGetResult;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
 import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.ImportProgress;
+import com.kkukielka.springwebfluxrest.domain.MutationEvent;
 import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.domain.VendorWithCategories;
+import com.kkukielka.springwebfluxrest.events.MutationEventPublisher;
+import com.kkukielka.springwebfluxrest.repositories.ExportFormat;
 import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import com.kkukielka.springwebfluxrest.repositories.UnknownFieldException;
+import com.kkukielka.springwebfluxrest.repositories.Updated;
+import com.kkukielka.springwebfluxrest.stats.EntityCounter;
+import com.kkukielka.springwebfluxrest.stats.StatsReconciler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.BDDMockito;
 import org.mockito.Mockito;
 import org.reactivestreams.Publisher;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 class VendorControllerTest {
 
     private VendorController vendorController;
     private VendorRepository vendorRepository;
+    private MutationEventPublisher<Vendor> vendorEvents;
+    private EntityCounter<Vendor> vendorStats;
     private WebTestClient webTestClient;
 
     @BeforeEach
     void setUp() {
         vendorRepository = Mockito.mock(VendorRepository.class);
-        vendorController = new VendorController(vendorRepository);
-        webTestClient = WebTestClient.bindToController(vendorController).build();
+        vendorEvents = new MutationEventPublisher<>(16, 16, MutationEventPublisher.Overflow.DROP_OLDEST);
+        vendorStats = new EntityCounter<>(StatsReconciler::lastNameInitial);
+        vendorController = new VendorController(vendorRepository, vendorEvents, vendorStats, new ObjectMapper());
+        webTestClient = bind(vendorController);
+    }
+
+    WebTestClient bind(VendorController vendorController) {
+        return WebTestClient.bindToController(vendorController)
+                .httpMessageCodecs(new WebConfig(new ObjectMapper())::configureHttpMessageCodecs)
+                .build();
     }
 
     @Test
@@ -46,18 +97,356 @@ class VendorControllerTest {
                 .hasSize(2);
     }
 
+    @Test
+    void listVendorsAsNdjson() {
+        // given
+        given(vendorRepository.findAll())
+                .willReturn(Flux.just(Vendor.builder().id("a").firstName("fname1").lastName("lname1").build(),
+                        Vendor.builder().id("b").firstName("fname2").lastName("lname2").build()));
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL)
+                .accept(WebConfig.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(WebConfig.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .value(body -> assertEquals(2, body.trim().split("\n").length));
+    }
+
+    @Test
+    void listVendorsAsSmileStream() {
+        // given
+        given(vendorRepository.findAll())
+                .willReturn(Flux.just(Vendor.builder().id("a").firstName("fname1").lastName("lname1").build(),
+                        Vendor.builder().id("b").firstName("fname2").lastName("lname2").build()));
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL)
+                .accept(WebConfig.APPLICATION_STREAM_SMILE)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(WebConfig.APPLICATION_STREAM_SMILE)
+                .expectBodyList(Vendor.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void listVendorsAsCbor() throws IOException {
+        // given
+        given(vendorRepository.findAll())
+                .willReturn(Flux.just(Vendor.builder().id("a").firstName("fname1").lastName("lname1").build(),
+                        Vendor.builder().id("b").firstName("fname2").lastName("lname2").build()));
+
+        // when
+        byte[] body = webTestClient.get().uri(VendorController.BASE_URL)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        Vendor[] vendors = Jackson2ObjectMapperBuilder.cbor().build().readValue(body, Vendor[].class);
+        assertEquals(2, vendors.length);
+        assertEquals("fname2", vendors[1].getFirstName());
+    }
+
+    @Test
+    void listVendorsFirstPage() {
+        // given
+        given(vendorRepository.findAllByOrderByIdAsc(any(Pageable.class)))
+                .willReturn(Flux.just(Vendor.builder().id("a").firstName("fname1").lastName("lname1").build(),
+                        Vendor.builder().id("b").firstName("fname2").lastName("lname2").build()));
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "?limit=2")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(Pagination.NEXT_CURSOR_HEADER, "b")
+                .expectBodyList(Vendor.class)
+                .hasSize(2);
+
+        verify(vendorRepository).findAllByOrderByIdAsc(PageRequest.of(0, 2));
+    }
+
+    @Test
+    void listVendorsPageNotModified() {
+        // given
+        given(vendorRepository.findAllByOrderByIdAsc(any(Pageable.class)))
+                .willReturn(Flux.just(Vendor.builder().id("a").firstName("fname1").lastName("lname1").build()));
+
+        String eTag = webTestClient.get().uri(VendorController.BASE_URL + "?limit=2")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Vendor.class)
+                .getResponseHeaders()
+                .getETag();
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "?limit=2")
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+    }
+
+    @Test
+    void listVendorsLastPage() {
+        // given
+        given(vendorRepository.findByIdGreaterThanOrderByIdAsc(anyString(), any(Pageable.class)))
+                .willReturn(Flux.just(Vendor.builder().id("b").firstName("fname2").lastName("lname2").build()));
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "?after=a&limit=2")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .doesNotExist(Pagination.NEXT_CURSOR_HEADER)
+                .expectBodyList(Vendor.class)
+                .hasSize(1);
+
+        verify(vendorRepository).findByIdGreaterThanOrderByIdAsc("a", PageRequest.of(0, 2));
+    }
+
+    @Test
+    void listVendorsPageLimitTooLarge() {
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "?limit=" + (Pagination.MAX_PAGE_SIZE + 1))
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void listVendorsWithCategories() {
+        // given
+        Category fruits = Category.builder().id("c1").description("Fruits").build();
+        given(vendorRepository.findWithCategories(anyString(), any(Pageable.class))).willReturn(Flux.just(
+                VendorWithCategories.builder().id("b").categoryIds(Collections.singletonList("c1"))
+                        .categories(Collections.singletonList(fruits)).build()));
+
+        // when
+        List<VendorWithCategories> vendors = webTestClient.get()
+                .uri(VendorController.BASE_URL + "?expand=categories&after=a&limit=2")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(VendorWithCategories.class)
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        assertEquals("Fruits", vendors.get(0).getCategories().get(0).getDescription());
+        verify(vendorRepository).findWithCategories("a", PageRequest.of(0, 2));
+        verify(vendorRepository, never()).findByIdGreaterThanOrderByIdAsc(anyString(), any(Pageable.class));
+    }
+
+    @Test
+    void listVendorsWithUnknownExpansion() {
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "?expand=suppliers")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        verify(vendorRepository, never()).findWithCategories(any(), any(Pageable.class));
+    }
+
     @Test
     void getVendorById() {
         // given
         BDDMockito.given(vendorRepository.findById(anyString()))
-                .willReturn(Mono.just(Vendor.builder().firstName("fname1").lastName("lname1").build()));
+                .willReturn(Mono.just(Vendor.builder().firstName("fname1").lastName("lname1").version(2L).build()));
 
         // when - then
         webTestClient.get().uri(VendorController.BASE_URL + "/1")
                 .exchange()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"2\"")
                 .expectBody(Vendor.class);
     }
 
+    @Test
+    void getVendorByIdNotModified() {
+        // given
+        given(vendorRepository.findById(anyString()))
+                .willReturn(Mono.just(Vendor.builder().firstName("fname1").lastName("lname1").version(2L).build()));
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "/1")
+                .ifNoneMatch("\"2\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+    }
+
+    @Test
+    void getVendorByIdWithFields() {
+        // given
+        given(vendorRepository.findByIdProjected(anyString(), anyCollection()))
+                .willReturn(Mono.just(Vendor.builder().id("1").lastName("lname1").build()));
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "/1?fields=id,lastName")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.lastName").isNotEmpty();
+
+        verify(vendorRepository).findByIdProjected("1", new HashSet<>(Arrays.asList("id", "lastName")));
+        verify(vendorRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void listVendorsWithUnknownField() {
+        // given
+        given(vendorRepository.findAllProjected(anyCollection()))
+                .willReturn(Flux.error(new UnknownFieldException(Vendor.class, Collections.singleton("password"))));
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "?fields=password")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void searchVendors() {
+        // given
+        given(vendorRepository.searchByName(anyString(), any(), anyInt()))
+                .willReturn(Flux.just(Vendor.builder().firstName("John").lastName("Johnson").build()));
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "/search?lastName=jo&limit=10")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Vendor.class)
+                .hasSize(1);
+
+        verify(vendorRepository).searchByName("jo", null, 10);
+    }
+
+    @Test
+    void searchVendorsWithoutName() {
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + "/search")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        verify(vendorRepository, never()).searchByName(any(), any(), anyInt());
+    }
+
+    @Test
+    void batchGetVendors() {
+        // given
+        given(vendorRepository.findAllById(any(Iterable.class))).willReturn(Flux.just(
+                Vendor.builder().id("3").firstName("Jane").build(),
+                Vendor.builder().id("1").firstName("John").build()));
+
+        // when
+        List<BatchGetResult<Vendor>> results = webTestClient.post()
+                .uri(VendorController.BASE_URL + BatchGet.BATCH_GET_PATH)
+                .bodyValue(Arrays.asList("1", "2", "3", "1"))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<BatchGetResult<Vendor>>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        assertEquals(4, results.size());
+        assertEquals("John", results.get(0).getEntity().getFirstName());
+        assertEquals("2", results.get(1).getId());
+        assertFalse(results.get(1).isFound());
+        assertNull(results.get(1).getEntity());
+        assertEquals("Jane", results.get(2).getEntity().getFirstName());
+        assertTrue(results.get(3).isFound());
+
+        verify(vendorRepository).findAllById(new ArrayList<>(Arrays.asList("1", "2", "3")));
+    }
+
+    @Test
+    void batchGetVendorsInChunks() {
+        // given
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2 * BatchGet.CHUNK_SIZE + 1; i++) {
+            ids.add(String.valueOf(i));
+        }
+        given(vendorRepository.findAllById(any(Iterable.class))).willReturn(Flux.empty());
+
+        // when - then
+        webTestClient.post().uri(VendorController.BASE_URL + BatchGet.BATCH_GET_PATH)
+                .bodyValue(ids)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<BatchGetResult<Vendor>>() {
+                })
+                .hasSize(ids.size());
+
+        verify(vendorRepository, times(3)).findAllById(any(Iterable.class));
+    }
+
+    @Test
+    void batchGetVendorsTooManyIds() {
+        // when - then
+        webTestClient.post().uri(VendorController.BASE_URL + BatchGet.BATCH_GET_PATH)
+                .bodyValue(Collections.nCopies(BatchGet.MAX_IDS + 1, "1"))
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        verify(vendorRepository, never()).findAllById(any(Iterable.class));
+    }
+
+    @Test
+    void exportVendorsAsCsv() {
+        // given
+        given(vendorRepository.export(eq(ExportFormat.CSV), any(DataBufferFactory.class))).willReturn(Flux.just(
+                new DefaultDataBufferFactory().wrap("id,firstName\r\n1,John\r\n".getBytes(StandardCharsets.UTF_8))));
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + Exports.EXPORT_PATH + "?format=CSV")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(Exports.TEXT_CSV)
+                .expectHeader()
+                .valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"vendors.csv\"")
+                .expectBody(String.class)
+                .isEqualTo("id,firstName\r\n1,John\r\n");
+    }
+
+    @Test
+    void exportVendorsUnknownFormat() {
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + Exports.EXPORT_PATH + "?format=xml")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        verify(vendorRepository, never()).export(any(), any());
+    }
+
     @Test
     void createVendor() {
         // given
@@ -75,11 +464,252 @@ class VendorControllerTest {
                 .isCreated();
     }
 
+    @Test
+    void createVendorsFromCbor() throws IOException {
+        // given
+        List<Vendor> saved = new ArrayList<>();
+        given(vendorRepository.saveAll(any(Publisher.class)))
+                .willAnswer(invocation -> Flux.from(invocation.<Publisher<Vendor>>getArgument(0))
+                        .doOnNext(saved::add));
+
+        byte[] body = Jackson2ObjectMapperBuilder.cbor().build().writeValueAsBytes(Arrays.asList(
+                Vendor.builder().firstName("test").lastName("test1").build(),
+                Vendor.builder().firstName("test").lastName("test2").build()));
+
+        // when - then
+        webTestClient.post().uri(VendorController.BASE_URL)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        assertEquals(2, saved.size());
+        assertEquals("test2", saved.get(1).getLastName());
+    }
+
+    @Test
+    void createVendorsInBulk() {
+        // given
+        given(vendorRepository.bulkInsert(any(Publisher.class)))
+                .willReturn(Flux.just(BulkInsertResult.builder().batch(1).size(2).inserted(2).build()));
+
+        Flux<Vendor> vendorsToSave = Flux.just(Vendor.builder().firstName("test").lastName("test2").build(),
+                Vendor.builder().firstName("test").lastName("test2").build());
+
+        // when - then
+        webTestClient.post().uri(VendorController.BASE_URL + "?bulk=true")
+                .body(vendorsToSave, Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody()
+                .jsonPath("$[0].inserted").isEqualTo(2)
+                .jsonPath("$[0].failed").isEqualTo(0);
+
+        verify(vendorRepository, never()).saveAll(any(Publisher.class));
+    }
+
+    @Test
+    void createVendorsInBulkPublishesEvents() {
+        // given
+        given(vendorRepository.bulkInsert(any(Publisher.class))).willReturn(Flux.just(BulkInsertResult.builder()
+                .batch(1).size(2).inserted(1).failed(1).insertedIds(Collections.singletonList("1")).build()));
+
+        Flux<Vendor> vendorsToSave = Flux.just(Vendor.builder().id("1").lastName("test").build(),
+                Vendor.builder().id("2").lastName("test").build());
+
+        // when - then
+        StepVerifier.create(vendorEvents.stream(null).take(1))
+                .then(() -> webTestClient.post().uri(VendorController.BASE_URL + "?bulk=true")
+                        .body(vendorsToSave, Vendor.class)
+                        .exchange()
+                        .expectStatus()
+                        .isCreated()
+                        .expectBody()
+                        .jsonPath("$[0].insertedIds").doesNotExist())
+                .assertNext(event -> {
+                    assertEquals(MutationEvent.Type.CREATED, event.getType());
+                    assertEquals("1", event.getEntityId());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1L, vendorStats.snapshot().getCount());
+    }
+
+    @Test
+    void importVendorsFromNdjson() {
+        // given
+        givenBulkInsertInBatchesOfTwo();
+        String body = "{\"firstName\":\"a\"}\n{\"firstName\":\"b\"}\n\nnot json\n{\"firstName\":\"c\"}";
+
+        // when
+        List<ImportProgress> progress = webTestClient.post().uri(VendorController.BASE_URL + "/_import")
+                .contentType(WebConfig.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(ImportProgress.class)
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        ImportProgress last = progress.get(progress.size() - 1);
+        assertTrue(last.isDone());
+        assertEquals(5, last.getLines());
+        assertEquals(body.length(), last.getBytes());
+        assertEquals(3, last.getInserted());
+        assertEquals(1, last.getFailed());
+        assertTrue(last.getError().startsWith("line 4:"));
+        assertEquals(2, progress.get(0).getLines());
+        assertEquals(2, progress.get(0).getInserted());
+    }
+
+    @Test
+    void importVendorsResumesAfterLineOffset() {
+        // given
+        givenBulkInsertInBatchesOfTwo();
+        byte[] file = "{\"firstName\":\"a\"}\n{\"firstName\":\"b\"}\n{\"firstName\":\"c\"}\n"
+                .getBytes(StandardCharsets.UTF_8);
+        MultipartBodyBuilder multipart = new MultipartBodyBuilder();
+        multipart.part("file", file).filename("vendors.ndjson");
+
+        // when - then
+        webTestClient.post().uri(VendorController.BASE_URL + "/_import?skipLines=2")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(multipart.build())
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(ImportProgress.class)
+                .value(progress -> {
+                    ImportProgress last = progress.get(progress.size() - 1);
+                    assertEquals(3, last.getLines());
+                    assertEquals(1, last.getInserted());
+                });
+    }
+
+    @Test
+    void importVendorsPublishesEvents() {
+        // given
+        givenBulkInsertInBatchesOfTwo();
+        String body = "{\"id\":\"1\",\"firstName\":\"a\"}\n{\"id\":\"2\",\"firstName\":\"b\"}\n";
+
+        // when
+        webTestClient.post().uri(VendorController.BASE_URL + "/_import")
+                .contentType(WebConfig.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // then
+        StepVerifier.create(vendorEvents.stream(0L).map(MutationEvent::getEntityId))
+                .expectNext("1", "2")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private void givenBulkInsertInBatchesOfTwo() {
+        given(vendorRepository.bulkInsert(any(Publisher.class)))
+                .willAnswer(invocation -> Flux.from(invocation.<Publisher<Vendor>>getArgument(0))
+                        .buffer(2)
+                        .map(batch -> BulkInsertResult.builder().size(batch.size()).inserted(batch.size())
+                                .insertedIds(batch.stream().map(Vendor::getId).collect(Collectors.toList()))
+                                .build()));
+    }
+
+    @Test
+    void patchVendorsInBulk() {
+        // given
+        given(vendorRepository.bulkPatch(any(Publisher.class))).willReturn(Flux.just(
+                BulkPatchResult.builder().id("1").status(BulkPatchResult.Status.MODIFIED).build(),
+                BulkPatchResult.builder().id("2").status(BulkPatchResult.Status.NOT_FOUND).build()));
+
+        Flux<Vendor> patches = Flux.just(Vendor.builder().id("1").firstName("John").build(),
+                Vendor.builder().id("2").lastName("Smith").build());
+
+        // when - then
+        webTestClient.patch().uri(VendorController.BASE_URL)
+                .body(patches, Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(BulkPatchResult.class)
+                .contains(BulkPatchResult.builder().id("1").status(BulkPatchResult.Status.MODIFIED).build(),
+                        BulkPatchResult.builder().id("2").status(BulkPatchResult.Status.NOT_FOUND).build());
+
+        verify(vendorRepository, never()).updateIfChanged(anyString(), any(Vendor.class), any());
+    }
+
+    @Test
+    void patchVendorsInBulkPublishesModifiedOnly() {
+        // given
+        given(vendorRepository.bulkPatch(any(Publisher.class))).willReturn(Flux.just(
+                BulkPatchResult.builder().id("1").status(BulkPatchResult.Status.MATCHED).build(),
+                BulkPatchResult.builder().id("2").status(BulkPatchResult.Status.MODIFIED).build(),
+                BulkPatchResult.builder().id("3").status(BulkPatchResult.Status.NOT_FOUND).build()));
+
+        Flux<Vendor> patches = Flux.just(Vendor.builder().id("1").firstName("John").build(),
+                Vendor.builder().id("2").firstName("Jane").build(),
+                Vendor.builder().id("3").firstName("Jim").build());
+
+        // when
+        webTestClient.patch().uri(VendorController.BASE_URL)
+                .body(patches, Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(BulkPatchResult.class)
+                .hasSize(3);
+
+        // then
+        StepVerifier.create(vendorEvents.stream(0L))
+                .assertNext(event -> {
+                    assertEquals(MutationEvent.Type.UPDATED, event.getType());
+                    assertEquals("2", event.getEntityId());
+                })
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void bulkPatchMarksStatsStaleOnlyForWrittenRenames() {
+        // given
+        given(vendorRepository.bulkPatch(any(Publisher.class)))
+                .willAnswer(invocation -> Flux.from(invocation.<Publisher<Vendor>>getArgument(0))
+                        .map(patch -> BulkPatchResult.builder().id(patch.getId())
+                                .status("1".equals(patch.getId())
+                                        ? BulkPatchResult.Status.MATCHED : BulkPatchResult.Status.MODIFIED)
+                                .build()));
+
+        // when
+        webTestClient.patch().uri(VendorController.BASE_URL)
+                .body(Flux.just(Vendor.builder().id("1").lastName("Smith").build(),
+                        Vendor.builder().id("2").firstName("Jane").build()), Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // then
+        assertFalse(vendorStats.isStale());
+        webTestClient.patch().uri(VendorController.BASE_URL)
+                .body(Flux.just(Vendor.builder().id("3").lastName("Jones").build()), Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        assertTrue(vendorStats.isStale());
+    }
+
     @Test
     void updateVendor() {
         // given
-        BDDMockito.given(vendorRepository.save(any(Vendor.class)))
-                .willReturn(Mono.just(Vendor.builder().build()));
+        BDDMockito.given(vendorRepository.replace(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.just(new Updated<>(Vendor.builder().version(0L).build(),
+                        Vendor.builder().version(1L).build())));
 
         Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().firstName("test1")
             .lastName("test2").build());
@@ -90,17 +720,75 @@ class VendorControllerTest {
                 .exchange()
                 .expectStatus()
                 .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"")
                 .expectBody(Vendor.class);
+
+        verify(vendorRepository).replace(eq("1"), any(Vendor.class), isNull());
+        verify(vendorRepository, never()).save(any());
     }
 
     @Test
-    void patchVendorWithChangesFirstName() {
+    void updateVendorIfMatch() {
         // given
-        given(vendorRepository.findById(anyString()))
-                .willReturn(Mono.just(Vendor.builder().firstName("fname").lastName("lname").build()));
+        given(vendorRepository.replace(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.just(new Updated<>(Vendor.builder().version(3L).build(),
+                        Vendor.builder().version(4L).build())));
 
-        given(vendorRepository.save(any(Vendor.class)))
-                .willReturn(Mono.just(Vendor.builder().build()));
+        Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().firstName("test1").lastName("test2").build());
+
+        // when - then
+        webTestClient.put().uri(VendorController.BASE_URL + "/1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .body(vendorToUpdate, Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"4\"");
+
+        verify(vendorRepository).replace(eq("1"), any(Vendor.class), eq(3L));
+    }
+
+    @Test
+    void updateVendorVersionMismatch() {
+        // given
+        given(vendorRepository.replace(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.empty());
+
+        Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().firstName("test1").lastName("test2").build());
+
+        // when - then
+        webTestClient.put().uri(VendorController.BASE_URL + "/1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .body(vendorToUpdate, Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    void updateVendorWeakIfMatch() {
+        // given
+        Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().firstName("test1").lastName("test2").build());
+
+        // when - then
+        webTestClient.put().uri(VendorController.BASE_URL + "/1")
+                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                .body(vendorToUpdate, Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        verify(vendorRepository, never()).replace(anyString(), any(Vendor.class), any());
+    }
+
+    @Test
+    void patchVendorWithChangesFirstName() {
+        // given
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.just(new Updated<>(Vendor.builder().firstName("fname").lastName("lname").build(),
+                        Vendor.builder().firstName("new fname").lastName("lname").build())));
 
         Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().firstName("new fname").build());
 
@@ -109,19 +797,21 @@ class VendorControllerTest {
                 .body(vendorToUpdate, Vendor.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isOk()
+                .expectBody()
+                .jsonPath("$.firstName").isEqualTo("new fname");
 
-        verify(vendorRepository).save(any());
+        verify(vendorRepository).updateIfChanged(eq("1"), any(Vendor.class), isNull());
+        verify(vendorRepository, never()).findById(anyString());
+        verify(vendorRepository, never()).save(any());
     }
 
     @Test
     void patchVendorWithChangesLastName() {
         // given
-        given(vendorRepository.findById(anyString()))
-                .willReturn(Mono.just(Vendor.builder().firstName("fname").lastName("lname").build()));
-
-        given(vendorRepository.save(any(Vendor.class)))
-                .willReturn(Mono.just(Vendor.builder().build()));
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.just(new Updated<>(Vendor.builder().firstName("fname").lastName("lname").build(),
+                        Vendor.builder().firstName("fname").lastName("new lname").build())));
 
         Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().lastName("new lname").build());
 
@@ -130,20 +820,23 @@ class VendorControllerTest {
                 .body(vendorToUpdate, Vendor.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isOk()
+                .expectBody()
+                .jsonPath("$.lastName").isEqualTo("new lname");
 
-        verify(vendorRepository).save(any());
+        verify(vendorRepository).updateIfChanged(eq("1"), any(Vendor.class), isNull());
+        verify(vendorRepository, never()).save(any());
     }
 
     @Test
     void patchVendorWithNullChanges() {
         // given
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.empty());
+
         given(vendorRepository.findById(anyString()))
                 .willReturn(Mono.just(Vendor.builder().firstName("fname").lastName("lname").build()));
 
-        given(vendorRepository.save(any(Vendor.class)))
-                .willReturn(Mono.just(Vendor.builder().build()));
-
         Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().build());
 
         // when - then
@@ -159,12 +852,12 @@ class VendorControllerTest {
     @Test
     void patchVendorNoChanges() {
         // given
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.empty());
+
         given(vendorRepository.findById(anyString()))
                 .willReturn(Mono.just(Vendor.builder().firstName("fname").lastName("lname").build()));
 
-        given(vendorRepository.save(any(Vendor.class)))
-                .willReturn(Mono.just(Vendor.builder().build()));
-
         Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().firstName("fname").lastName("lname").build());
 
         // when - then
@@ -172,18 +865,43 @@ class VendorControllerTest {
                 .body(vendorToUpdate, Vendor.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isOk()
+                .expectBody()
+                .jsonPath("$.firstName").isEqualTo("fname");
 
+        verify(vendorRepository).findById("1");
         verify(vendorRepository, never()).save(any());
     }
 
     @Test
-    void patchVendorNoChangesNulls() {
+    void patchVendorVersionMismatch() {
         // given
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.empty());
+
         given(vendorRepository.findById(anyString()))
-                .willReturn(Mono.just(Vendor.builder().build()));
+                .willReturn(Mono.just(Vendor.builder().firstName("fname").lastName("lname").version(4L).build()));
+
+        Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().firstName("new fname").build());
 
-        given(vendorRepository.save(any(Vendor.class)))
+        // when - then
+        webTestClient.patch().uri(VendorController.BASE_URL + "/1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .body(vendorToUpdate, Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        verify(vendorRepository).updateIfChanged(eq("1"), any(Vendor.class), eq(3L));
+    }
+
+    @Test
+    void patchVendorNoChangesNulls() {
+        // given
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.empty());
+
+        given(vendorRepository.findById(anyString()))
                 .willReturn(Mono.just(Vendor.builder().build()));
 
         Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().build());
@@ -198,4 +916,180 @@ class VendorControllerTest {
         verify(vendorRepository, never()).save(any());
     }
 
-}
\ No newline at end of file
+    @Test
+    void patchVendorNotFound() {
+        // given
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.empty());
+
+        given(vendorRepository.findById(anyString()))
+                .willReturn(Mono.empty());
+
+        Mono<Vendor> vendorToUpdate = Mono.just(Vendor.builder().firstName("fname").build());
+
+        // when - then
+        webTestClient.patch().uri(VendorController.BASE_URL + "/1")
+                .body(vendorToUpdate, Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        verify(vendorRepository, never()).save(any());
+    }
+
+    @Test
+    void deleteVendor() {
+        // given
+        given(vendorRepository.findAndDeleteById(anyString()))
+                .willReturn(Mono.just(Vendor.builder().id("1").firstName("fname").lastName("lname").build()));
+
+        // when - then
+        webTestClient.delete().uri(VendorController.BASE_URL + "/1")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        verify(vendorRepository).findAndDeleteById("1");
+        verify(vendorRepository, never()).deleteById(anyString());
+    }
+
+    @Test
+    void deleteVendorNotFound() {
+        // given
+        given(vendorRepository.findAndDeleteById(anyString()))
+                .willReturn(Mono.empty());
+        vendorStats.created(Vendor.builder().id("2").lastName("lname").build());
+
+        // when - then
+        webTestClient.delete().uri(VendorController.BASE_URL + "/1")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        assertEquals(1L, vendorStats.snapshot().getCount());
+    }
+
+    @Test
+    void vendorStatsTrackCreatesAndDeletes() {
+        // given
+        given(vendorRepository.saveAll(any(Publisher.class))).willReturn(Flux.just(
+                Vendor.builder().id("1").lastName("smith").version(0L).build(),
+                Vendor.builder().id("2").lastName("Stone").version(0L).build()));
+        given(vendorRepository.findAndDeleteById("1"))
+                .willReturn(Mono.just(Vendor.builder().id("1").lastName("smith").version(0L).build()));
+
+        webTestClient.post().uri(VendorController.BASE_URL)
+                .body(Flux.just(Vendor.builder().lastName("smith").build(), Vendor.builder().lastName("Stone").build()),
+                        Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+        webTestClient.delete().uri(VendorController.BASE_URL + "/1")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        // when - then
+        webTestClient.get().uri(VendorController.BASE_URL + VendorController.STATS_PATH)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(1)
+                .jsonPath("$.countsByLastNameInitial.S").isEqualTo(1);
+    }
+
+    @Test
+    void patchingLastNameMovesVendorToItsNewInitial() {
+        // given
+        Vendor previous = Vendor.builder().id("1").lastName("Smith").build();
+        vendorStats.created(previous);
+        given(vendorRepository.updateIfChanged(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.just(new Updated<>(previous, Vendor.builder().id("1").lastName("Jones").build())));
+
+        // when
+        webTestClient.patch().uri(VendorController.BASE_URL + "/1")
+                .body(Mono.just(Vendor.builder().lastName("Jones").build()), Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // then
+        assertFalse(vendorStats.isStale());
+        assertEquals(1L, vendorStats.snapshot().getCount());
+        assertEquals(Collections.singletonMap("J", 1L), vendorStats.snapshot().getCountsByLastNameInitial());
+    }
+
+    @Test
+    void replacingCreatedVendorCountsIt() {
+        // given
+        given(vendorRepository.replace(anyString(), any(Vendor.class), any()))
+                .willReturn(Mono.just(new Updated<>(null, Vendor.builder().id("1").lastName("Jones").version(1L)
+                        .build())));
+
+        // when
+        webTestClient.put().uri(VendorController.BASE_URL + "/1")
+                .body(Mono.just(Vendor.builder().lastName("Jones").build()), Vendor.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // then
+        assertFalse(vendorStats.isStale());
+        assertEquals(1L, vendorStats.snapshot().getCount());
+        assertEquals(Collections.singletonMap("J", 1L), vendorStats.snapshot().getCountsByLastNameInitial());
+    }
+
+    @Test
+    void createVendorPublishesEvent() {
+        // given
+        given(vendorRepository.saveAll(any(Publisher.class)))
+                .willReturn(Flux.just(Vendor.builder().id("1").firstName("test").lastName("test2").build()));
+
+        Mono<Vendor> vendorToSave = Mono.just(Vendor.builder().firstName("test").lastName("test2").build());
+
+        // when - then
+        StepVerifier.create(vendorEvents.stream(null).take(1))
+                .then(() -> webTestClient.post().uri(VendorController.BASE_URL)
+                        .body(vendorToSave, Vendor.class)
+                        .exchange()
+                        .expectStatus()
+                        .isCreated())
+                .assertNext(event -> {
+                    assertEquals(MutationEvent.Type.CREATED, event.getType());
+                    assertEquals("1", event.getEntityId());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void streamVendorEventsResumesAfterLastEventId() {
+        // given
+        Vendor vendor = Vendor.builder().id("1").firstName("fname").lastName("lname").build();
+        vendorEvents.publish(MutationEvent.Type.CREATED, "1", vendor);
+        vendorEvents.publish(MutationEvent.Type.UPDATED, "1", vendor);
+
+        // when
+        Flux<ServerSentEvent<String>> events = webTestClient.get()
+                .uri(VendorController.BASE_URL + EventStreams.EVENTS_PATH)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header(EventStreams.LAST_EVENT_ID_HEADER, "1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+                })
+                .getResponseBody();
+
+        // then
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals("2", event.id());
+                    assertEquals(MutationEvent.Type.UPDATED.name(), event.event());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+}
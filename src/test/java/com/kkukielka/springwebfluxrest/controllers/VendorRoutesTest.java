@@ -0,0 +1,22 @@
+package com.kkukielka.springwebfluxrest.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+
+/**
+ * Runs every {@link VendorControllerTest} scenario against the functional routes.
+ */
+class VendorRoutesTest extends VendorControllerTest {
+
+    @Override
+    WebTestClient bind(VendorController vendorController) {
+        return WebTestClient.bindToRouterFunction(new VendorRoutes(vendorController).routerFunction())
+                .handlerStrategies(HandlerStrategies.builder()
+                        .codecs(new WebConfig(new ObjectMapper())::configureHttpMessageCodecs)
+                        .build())
+                .build();
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.kkukielka.springwebfluxrest.events;
+
+import com.kkukielka.springwebfluxrest.domain.MutationEvent;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MutationEventPublisherTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void newSubscriberSeesOnlyNewEvents() {
+        // given
+        MutationEventPublisher<String> publisher = new MutationEventPublisher<>(16, 16,
+                MutationEventPublisher.Overflow.DROP_OLDEST);
+        publisher.publish(MutationEvent.Type.CREATED, "1", "old");
+
+        // when - then
+        StepVerifier.create(publisher.stream(null).take(1))
+                .then(() -> publisher.publish(MutationEvent.Type.UPDATED, "1", "new"))
+                .assertNext(event -> {
+                    assertEquals(2, event.getId());
+                    assertEquals(MutationEvent.Type.UPDATED, event.getType());
+                    assertEquals("new", event.getEntity());
+                })
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void resumesAfterLastEventId() {
+        // given
+        MutationEventPublisher<String> publisher = new MutationEventPublisher<>(16, 16,
+                MutationEventPublisher.Overflow.DROP_OLDEST);
+        publisher.publish(MutationEvent.Type.CREATED, "1", "a");
+        publisher.publish(MutationEvent.Type.CREATED, "2", "b");
+        publisher.publish(MutationEvent.Type.DELETED, "1", "a");
+
+        // when - then
+        StepVerifier.create(publisher.stream(1L).take(2))
+                .assertNext(event -> assertEquals(2, event.getId()))
+                .assertNext(event -> assertEquals(MutationEvent.Type.DELETED, event.getType()))
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void slowSubscriberKeepsNewestEvents() {
+        // given
+        MutationEventPublisher<String> publisher = new MutationEventPublisher<>(16, 2,
+                MutationEventPublisher.Overflow.DROP_OLDEST);
+
+        // when - then
+        StepVerifier.create(publisher.stream(null), 0)
+                .then(() -> {
+                    for (int i = 0; i < 5; i++) {
+                        publisher.publish(MutationEvent.Type.UPDATED, "1", "v" + i);
+                    }
+                })
+                .thenRequest(2)
+                .assertNext(event -> assertEquals(4, event.getId()))
+                .assertNext(event -> assertEquals(5, event.getId()))
+                .thenCancel()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void slowSubscriberIsDisconnected() {
+        // given
+        MutationEventPublisher<String> publisher = new MutationEventPublisher<>(16, 2,
+                MutationEventPublisher.Overflow.DISCONNECT);
+
+        // when - then
+        StepVerifier.create(publisher.stream(null), 0)
+                .then(() -> {
+                    for (int i = 0; i < 5; i++) {
+                        publisher.publish(MutationEvent.Type.UPDATED, "1", "v" + i);
+                    }
+                })
+                .expectError(IllegalStateException.class)
+                .verify(TIMEOUT);
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.kkukielka.springwebfluxrest.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long FAST = Duration.ofMillis(5).toNanos();
+    private static final long SLOW = Duration.ofSeconds(1).toNanos();
+    private static final Duration SHORT_THRESHOLD = Duration.ofMillis(10);
+
+    @Test
+    void rejectsBeyondLimit() {
+        // given
+        AdaptiveConcurrencyLimit limit = newLimit(2);
+
+        // when - then
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(1, limit.getRejected());
+
+        limit.release(FAST, true);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void slowResponsesShrinkLimit() throws InterruptedException {
+        // given
+        AdaptiveConcurrencyLimit limit = newLimit(100, SHORT_THRESHOLD);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(SLOW, true);
+            Thread.sleep(SHORT_THRESHOLD.toMillis() * 2);
+        }
+
+        // then
+        assertEquals(34, limit.getLimit());
+    }
+
+    @Test
+    void burstOfSlowResponsesShrinksLimitOnce() {
+        // given
+        AdaptiveConcurrencyLimit limit = newLimit(100);
+        for (int i = 0; i < 50; i++) {
+            limit.tryAcquire();
+        }
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            limit.release(SLOW, true);
+        }
+
+        // then
+        assertEquals(90, limit.getLimit());
+    }
+
+    @Test
+    void limitNeverShrinksBelowMinimum() throws InterruptedException {
+        // given
+        AdaptiveConcurrencyLimit limit = newLimit(20, SHORT_THRESHOLD);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(SLOW, true);
+            Thread.sleep(SHORT_THRESHOLD.toMillis() * 2);
+        }
+
+        // then
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void fastResponsesGrowSaturatedLimit() {
+        // given
+        AdaptiveConcurrencyLimit limit = newLimit(10);
+
+        // when
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < limit.getLimit(); i++) {
+                limit.tryAcquire();
+            }
+            while (limit.getInFlight() > 0) {
+                limit.release(FAST, true);
+            }
+        }
+
+        // then
+        assertTrue(limit.getLimit() > 10);
+    }
+
+    @Test
+    void idleLimitDoesNotGrow() {
+        // given
+        AdaptiveConcurrencyLimit limit = newLimit(10);
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            limit.tryAcquire();
+            limit.release(FAST, true);
+        }
+
+        // then
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void cancelledRequestsDoNotAdjustLimit() {
+        // given
+        AdaptiveConcurrencyLimit limit = newLimit(50);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(SLOW, false);
+        }
+
+        // then
+        assertEquals(50, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    private static AdaptiveConcurrencyLimit newLimit(int initialLimit) {
+        return newLimit(initialLimit, Duration.ofMillis(500));
+    }
+
+    private static AdaptiveConcurrencyLimit newLimit(int initialLimit, Duration latencyThreshold) {
+        return new AdaptiveConcurrencyLimit(initialLimit, Math.min(10, initialLimit), 1000, latencyThreshold, 0.9);
+    }
+
+}
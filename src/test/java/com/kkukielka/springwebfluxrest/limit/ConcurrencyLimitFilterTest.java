@@ -0,0 +1,178 @@
+package com.kkukielka.springwebfluxrest.limit;
+
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.controllers.CategoryController;
+import com.kkukielka.springwebfluxrest.controllers.VendorController;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private static final WebFilterChain HANGING = exchange -> Mono.never();
+    private static final WebFilterChain COMPLETING = exchange -> Mono.empty();
+
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new ConcurrencyLimitFilter(() -> new AdaptiveConcurrencyLimit(1, 1, 1, Duration.ofSeconds(1), 0.9),
+                Duration.ofSeconds(2));
+    }
+
+    @Test
+    void shedsRequestsBeyondLimit() {
+        // given
+        Disposable inFlight = filter.filter(get(VendorController.BASE_URL + "/1"), HANGING).subscribe();
+        MockServerWebExchange shed = get(VendorController.BASE_URL + "/2");
+
+        // when
+        filter.filter(shed, COMPLETING).block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, shed.getResponse().getStatusCode());
+        assertEquals("2", shed.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, filter.limit("vendors.read").getRejected());
+
+        inFlight.dispose();
+        assertEquals(0, filter.limit("vendors.read").getInFlight());
+    }
+
+    @Test
+    void routeGroupsAreLimitedIndependently() {
+        // given
+        Disposable inFlight = filter.filter(get(VendorController.BASE_URL + "/1"), HANGING).subscribe();
+        MockServerWebExchange write = MockServerWebExchange.from(
+                MockServerHttpRequest.patch(VendorController.BASE_URL + "/1"));
+        MockServerWebExchange otherResource = get(CategoryController.BASE_URL + "/1");
+
+        // when
+        filter.filter(write, COMPLETING).block(Duration.ofSeconds(5));
+        filter.filter(otherResource, COMPLETING).block(Duration.ofSeconds(5));
+
+        // then
+        assertNull(write.getResponse().getStatusCode());
+        assertNull(otherResource.getResponse().getStatusCode());
+
+        inFlight.dispose();
+    }
+
+    @Test
+    void batchGetCountsAsRead() {
+        // given
+        Disposable inFlight = filter.filter(get(VendorController.BASE_URL + "/1"), HANGING).subscribe();
+        MockServerWebExchange batchGet = MockServerWebExchange.from(
+                MockServerHttpRequest.post(VendorController.BASE_URL + "/_batchGet"));
+
+        // when
+        filter.filter(batchGet, COMPLETING).block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, batchGet.getResponse().getStatusCode());
+
+        inFlight.dispose();
+    }
+
+    @Test
+    void eventStreamsAreNotLimited() {
+        // given
+        Disposable inFlight = filter.filter(get(VendorController.BASE_URL + "/1"), HANGING).subscribe();
+        MockServerWebExchange events = get(VendorController.BASE_URL + "/_events");
+
+        // when
+        filter.filter(events, COMPLETING).block(Duration.ofSeconds(5));
+
+        // then
+        assertNull(events.getResponse().getStatusCode());
+
+        inFlight.dispose();
+    }
+
+    @Test
+    void streamingAcceptHeaderDoesNotBypassLimit() {
+        // given
+        Disposable inFlight = filter.filter(get(VendorController.BASE_URL + "/1"), HANGING).subscribe();
+        MockServerWebExchange stream = MockServerWebExchange.from(MockServerHttpRequest.get(VendorController.BASE_URL)
+                .accept(MediaType.APPLICATION_STREAM_JSON));
+
+        // when
+        filter.filter(stream, COMPLETING).block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, stream.getResponse().getStatusCode());
+
+        inFlight.dispose();
+    }
+
+    @Test
+    void bulkRequestsDoNotShrinkWriteLimit() {
+        // given
+        ConcurrencyLimitFilter slowFilter = new ConcurrencyLimitFilter(
+                () -> new AdaptiveConcurrencyLimit(10, 1, 10, Duration.ZERO, 0.5), Duration.ofSeconds(1));
+
+        // when
+        slowFilter.filter(MockServerWebExchange.from(MockServerHttpRequest.post(VendorController.BASE_URL)
+                .queryParam("bulk", "true")), COMPLETING).block(Duration.ofSeconds(5));
+        slowFilter.filter(MockServerWebExchange.from(MockServerHttpRequest.patch(VendorController.BASE_URL)),
+                COMPLETING).block(Duration.ofSeconds(5));
+        slowFilter.filter(MockServerWebExchange.from(MockServerHttpRequest.post(VendorController.BASE_URL
+                + "/_import")), COMPLETING).block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(10, slowFilter.limit("vendors.write").getLimit());
+        slowFilter.filter(MockServerWebExchange.from(MockServerHttpRequest.patch(VendorController.BASE_URL + "/1")),
+                COMPLETING).block(Duration.ofSeconds(5));
+        assertEquals(5, slowFilter.limit("vendors.write").getLimit());
+    }
+
+    @Test
+    void unpagedListingsDoNotShrinkReadLimit() {
+        // given
+        ConcurrencyLimitFilter slowFilter = new ConcurrencyLimitFilter(
+                () -> new AdaptiveConcurrencyLimit(10, 1, 10, Duration.ZERO, 0.5), Duration.ofSeconds(1));
+
+        // when
+        slowFilter.filter(MockServerWebExchange.from(MockServerHttpRequest.get(VendorController.BASE_URL)
+                .accept(WebConfig.APPLICATION_NDJSON)), COMPLETING).block(Duration.ofSeconds(5));
+        slowFilter.filter(get(CategoryController.BASE_URL), COMPLETING).block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(10, slowFilter.limit("vendors.read").getLimit());
+        assertEquals(10, slowFilter.limit("categories.read").getLimit());
+        slowFilter.filter(get(VendorController.BASE_URL + "?limit=10"), COMPLETING).block(Duration.ofSeconds(5));
+        assertEquals(5, slowFilter.limit("vendors.read").getLimit());
+    }
+
+    @Test
+    void streamedResponsesAreTimedUntilCommit() {
+        // given
+        ConcurrencyLimitFilter slowFilter = new ConcurrencyLimitFilter(
+                () -> new AdaptiveConcurrencyLimit(10, 1, 10, Duration.ofMillis(100), 0.5), Duration.ofSeconds(1));
+        WebFilterChain slowStream = exchange -> exchange.getResponse().setComplete()
+                .then(Mono.delay(Duration.ofMillis(300)))
+                .then();
+
+        // when
+        slowFilter.filter(get(VendorController.BASE_URL + "/search?lastName=sm"), slowStream)
+                .block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(10, slowFilter.limit("vendors.read").getLimit());
+    }
+
+    private static MockServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+}
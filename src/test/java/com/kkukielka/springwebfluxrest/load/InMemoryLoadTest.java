@@ -0,0 +1,20 @@
+package com.kkukielka.springwebfluxrest.load;
+
+import com.kkukielka.springwebfluxrest.config.InMemoryRepositoryConfig;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Path;
+
+/**
+ * Runs the {@link LoadTest} workloads against the in-memory repositories, writing the results next
+ * to the Mongo ones so the two can be compared.
+ */
+@ActiveProfiles(InMemoryRepositoryConfig.PROFILE)
+class InMemoryLoadTest extends LoadTest {
+
+    @Override
+    Path output() {
+        return OUTPUT.resolveSibling("results-in-memory.json");
+    }
+
+}
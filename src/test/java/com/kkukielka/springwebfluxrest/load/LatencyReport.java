@@ -0,0 +1,102 @@
+package com.kkukielka.springwebfluxrest.load;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Data
+@AllArgsConstructor
+class LatencyReport {
+
+    private String workload;
+    private int concurrency;
+    private long durationMs;
+    private List<EndpointStats> endpoints;
+
+    static LatencyReport of(String workload, int concurrency, long durationNanos, List<Sample> samples) {
+        Map<String, List<Sample>> byEndpoint = samples.stream()
+                .collect(Collectors.groupingBy(Sample::getEndpoint, TreeMap::new, Collectors.toList()));
+
+        List<EndpointStats> endpoints = new ArrayList<>();
+        byEndpoint.forEach((endpoint, endpointSamples) ->
+                endpoints.add(EndpointStats.of(endpoint, durationNanos, endpointSamples)));
+
+        return new LatencyReport(workload, concurrency, TimeUnit.NANOSECONDS.toMillis(durationNanos), endpoints);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Sample {
+
+        private static final int SERVICE_UNAVAILABLE = 503;
+
+        private String endpoint;
+        private long latencyNanos;
+        private int status;
+
+        boolean isShed() {
+            return status == SERVICE_UNAVAILABLE;
+        }
+
+        boolean isError() {
+            return !isShed() && (status < 200 || status >= 400);
+        }
+
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class EndpointStats {
+
+        private String endpoint;
+        private int count;
+        private int errors;
+        private int shed;
+        private double throughputPerSecond;
+        private double p50Ms;
+        private double p95Ms;
+        private double p99Ms;
+        private double maxMs;
+
+        /**
+         * Shed requests are answered immediately, so they are left out of the latency
+         * percentiles, which describe the requests that were actually served.
+         */
+        static EndpointStats of(String endpoint, long durationNanos, List<Sample> samples) {
+            long[] latencies = samples.stream()
+                    .filter(sample -> !sample.isShed())
+                    .mapToLong(Sample::getLatencyNanos)
+                    .toArray();
+            Arrays.sort(latencies);
+            int errors = (int) samples.stream().filter(Sample::isError).count();
+            int shed = (int) samples.stream().filter(Sample::isShed).count();
+            double throughput = samples.size() / (durationNanos / 1e9);
+
+            return new EndpointStats(endpoint, samples.size(), errors, shed, throughput,
+                    percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                    percentile(latencies, 100));
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1e6;
+        }
+
+    }
+
+}
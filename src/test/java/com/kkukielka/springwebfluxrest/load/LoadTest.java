@@ -0,0 +1,356 @@
+package com.kkukielka.springwebfluxrest.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kkukielka.springwebfluxrest.config.ConcurrencyLimitProperties;
+import com.kkukielka.springwebfluxrest.config.WebConfig;
+import com.kkukielka.springwebfluxrest.controllers.CategoryController;
+import com.kkukielka.springwebfluxrest.controllers.VendorController;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.load.LatencyReport.Sample;
+import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Boots the application on a random port against embedded Mongo and drives mixed workloads
+ * through a Reactor Netty client. Run with {@code ./gradlew loadTest}; tune it with
+ * {@code -DloadTest.concurrency}, {@code -DloadTest.requests}, {@code -DloadTest.vendors},
+ * {@code -DloadTest.overloadConcurrency}, {@code -DloadTest.overloadP99Ms} and {@code -DloadTest.output}.
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "app.concurrency-limit.max-limit=256")
+class LoadTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("loadTest.concurrency", 64);
+    private static final int OVERLOAD_CONCURRENCY = Integer.getInteger("loadTest.overloadConcurrency", CONCURRENCY * 8);
+    private static final int REQUESTS = Integer.getInteger("loadTest.requests", 20_000);
+    private static final int VENDORS = Integer.getInteger("loadTest.vendors", 10_000);
+    static final Path OUTPUT = Paths.get(System.getProperty("loadTest.output", "build/load-test/results.json"));
+
+    private static final int CATEGORIES = 100;
+    private static final int CATEGORIES_PER_VENDOR = 3;
+    private static final int EXPANSION_PAGE_SIZE = 50;
+    private static final int EXPANSION_FAN_OUT = 8;
+
+    private static final Duration WORKLOAD_TIMEOUT = Duration.ofMinutes(10);
+    private static final TypeReference<List<Vendor>> VENDOR_LIST = new TypeReference<List<Vendor>>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ConcurrencyLimitProperties concurrencyLimitProperties;
+
+    private HttpClient client;
+    private List<String> vendorIds;
+
+    @Test
+    void mixedWorkloads() throws IOException {
+        seedVendors();
+        List<LatencyReport> reports = new ArrayList<>();
+
+        // far more concurrent requests than the adaptive limit admits; the excess is shed with
+        // 503 so that the latency of the admitted requests stays bounded. It runs first, while the
+        // limits are still at their initial values, since the other workloads move them.
+        client = HttpClient.create(ConnectionProvider.fixed("load-test-overload", OVERLOAD_CONCURRENCY))
+                .baseUrl("http://localhost:" + port);
+        LatencyReport overload = run("overload", REQUESTS, OVERLOAD_CONCURRENCY, random -> chance(random, 80)
+                ? getVendor(random) : chance(random, 50) ? listVendorsPage(random) : patchVendor(random));
+        reports.add(overload);
+
+        client = HttpClient.create(ConnectionProvider.fixed("load-test", CONCURRENCY))
+                .baseUrl("http://localhost:" + port);
+        reports.add(run("read-heavy", REQUESTS, random -> chance(random, 90)
+                ? getVendor(random) : random.nextBoolean() ? putVendor(random) : patchVendor(random)));
+        reports.add(run("write-heavy", REQUESTS, random -> chance(random, 50)
+                ? createVendor() : chance(random, 60) ? putVendor(random) : patchVendor(random)));
+        reports.add(run("patch-heavy", REQUESTS, random -> chance(random, 80)
+                ? patchVendor(random) : getVendor(random)));
+        reports.add(run("large-list-scans", Math.max(1, REQUESTS / 100), random -> random.nextBoolean()
+                ? listVendorsPage(random) : streamAllVendors()));
+
+        writeResults(reports, output());
+
+        reports.forEach(report -> report.getEndpoints().forEach(stats ->
+                assertEquals(0, stats.getErrors(), report.getWorkload() + " " + stats.getEndpoint())));
+        assertTrue(overload.getEndpoints().stream().mapToInt(LatencyReport.EndpointStats::getShed).sum() > 0,
+                "overload shed nothing");
+        long overloadP99Ms = overloadP99Ms();
+        overload.getEndpoints().forEach(stats ->
+                assertTrue(stats.getP99Ms() <= overloadP99Ms, "overload p99 of " + stats.getEndpoint()));
+    }
+
+    /**
+     * The limiter backs off once responses get slower than its latency threshold, so the served
+     * requests should stay within a small multiple of it.
+     */
+    private long overloadP99Ms() {
+        return Long.getLong("loadTest.overloadP99Ms", 2 * concurrencyLimitProperties.getLatencyThreshold().toMillis());
+    }
+
+    /**
+     * Compares reading pages of vendors with their categories resolved server-side by
+     * {@code ?expand=categories} against the client-side join it replaces: one page request plus
+     * one category request per reference, up to {@link #EXPANSION_FAN_OUT} at a time. Each sample
+     * covers a whole page, so the two throughputs are directly comparable.
+     */
+    @Test
+    void categoryExpansion() throws IOException {
+        seedVendorsWithCategories();
+        client = HttpClient.create(ConnectionProvider.fixed("load-test-expansion", CONCURRENCY * EXPANSION_FAN_OUT))
+                .baseUrl("http://localhost:" + port);
+        int pages = Math.max(1, REQUESTS / 10);
+
+        List<LatencyReport> reports = new ArrayList<>();
+        reports.add(run("expand-categories", pages, this::expandedPage));
+        reports.add(run("client-side-join", pages, this::clientSideJoinPage));
+
+        writeResults(reports, output().resolveSibling("expansion-" + output().getFileName()));
+
+        reports.forEach(report -> report.getEndpoints().forEach(stats ->
+                assertEquals(0, stats.getErrors(), report.getWorkload() + " " + stats.getEndpoint())));
+    }
+
+    private LatencyReport run(String workload, int requests, Workload operations) {
+        return run(workload, requests, CONCURRENCY, operations);
+    }
+
+    private LatencyReport run(String workload, int requests, int concurrency, Workload operations) {
+        SplittableRandom random = new SplittableRandom(workload.hashCode());
+
+        long start = System.nanoTime();
+        List<Sample> samples = Flux.range(0, requests)
+                .map(i -> operations.next(random))
+                .flatMap(this::timed, concurrency)
+                .collectList()
+                .block(WORKLOAD_TIMEOUT);
+        long duration = System.nanoTime() - start;
+
+        LatencyReport report = LatencyReport.of(workload, concurrency, duration, samples);
+        log.info("{}", report);
+        return report;
+    }
+
+    private Mono<Sample> timed(Operation operation) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return operation.call
+                    .map(status -> new Sample(operation.endpoint, System.nanoTime() - start, status))
+                    .onErrorResume(error -> Mono.just(new Sample(operation.endpoint, System.nanoTime() - start, -1)));
+        });
+    }
+
+    private Operation getVendor(SplittableRandom random) {
+        return new Operation("GET " + VendorController.BASE_URL + "/{id}", client.get()
+                .uri(VendorController.BASE_URL + "/" + randomId(random))
+                .responseSingle((response, body) -> body.then(Mono.fromSupplier(() -> response.status().code()))));
+    }
+
+    private Operation listVendorsPage(SplittableRandom random) {
+        return new Operation("GET " + VendorController.BASE_URL + "?after&limit=1000", client.get()
+                .uri(VendorController.BASE_URL + "?limit=1000&after=" + randomId(random))
+                .responseSingle((response, body) -> body.then(Mono.fromSupplier(() -> response.status().code()))));
+    }
+
+    private Operation streamAllVendors() {
+        return new Operation("GET " + VendorController.BASE_URL + " (ndjson)", client
+                .headers(headers -> headers.set(HttpHeaderNames.ACCEPT, WebConfig.APPLICATION_NDJSON_VALUE))
+                .get()
+                .uri(VendorController.BASE_URL)
+                .response((response, body) -> body.then(Mono.fromSupplier(() -> response.status().code())))
+                .next());
+    }
+
+    private Operation expandedPage(SplittableRandom random) {
+        return new Operation("GET " + VendorController.BASE_URL + "?expand=categories", client.get()
+                .uri(VendorController.BASE_URL + "?expand=categories&limit=" + EXPANSION_PAGE_SIZE
+                        + "&after=" + randomId(random))
+                .responseSingle((response, body) -> body.then(Mono.fromSupplier(() -> response.status().code()))));
+    }
+
+    /**
+     * Answers the first non-200 status of the page or category requests, or 200 if all succeeded.
+     */
+    private Operation clientSideJoinPage(SplittableRandom random) {
+        return new Operation("GET " + VendorController.BASE_URL + " + GET " + CategoryController.BASE_URL + "/{id}",
+                client.get()
+                        .uri(VendorController.BASE_URL + "?limit=" + EXPANSION_PAGE_SIZE + "&after=" + randomId(random))
+                        .responseSingle((response, body) -> response.status().code() != 200
+                                ? body.then(Mono.just(response.status().code()))
+                                : body.asString().flatMap(this::fetchCategories)));
+    }
+
+    private Mono<Integer> fetchCategories(String page) {
+        List<Vendor> vendors;
+        try {
+            vendors = objectMapper.readValue(page, VENDOR_LIST);
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+
+        return Flux.fromIterable(vendors)
+                .filter(vendor -> vendor.getCategoryIds() != null)
+                .flatMapIterable(Vendor::getCategoryIds)
+                .flatMap(categoryId -> client.get()
+                        .uri(CategoryController.BASE_URL + "/" + categoryId)
+                        .responseSingle((response, body) -> body.then(Mono.fromSupplier(
+                                () -> response.status().code()))), EXPANSION_FAN_OUT)
+                .filter(status -> status != 200)
+                .next()
+                .defaultIfEmpty(200);
+    }
+
+    private Operation createVendor() {
+        return new Operation("POST " + VendorController.BASE_URL, jsonClient()
+                .post()
+                .uri(VendorController.BASE_URL)
+                .send(ByteBufFlux.fromString(Mono.just(toJson(newVendor()))))
+                .responseSingle((response, body) -> body.then(Mono.fromSupplier(() -> response.status().code()))));
+    }
+
+    private Operation putVendor(SplittableRandom random) {
+        return new Operation("PUT " + VendorController.BASE_URL + "/{id}", jsonClient()
+                .put()
+                .uri(VendorController.BASE_URL + "/" + randomId(random))
+                .send(ByteBufFlux.fromString(Mono.just(toJson(newVendor()))))
+                .responseSingle((response, body) -> body.then(Mono.fromSupplier(() -> response.status().code()))));
+    }
+
+    private Operation patchVendor(SplittableRandom random) {
+        Vendor patch = Vendor.builder().lastName("Patched" + random.nextInt(10)).build();
+        return new Operation("PATCH " + VendorController.BASE_URL + "/{id}", jsonClient()
+                .patch()
+                .uri(VendorController.BASE_URL + "/" + randomId(random))
+                .send(ByteBufFlux.fromString(Mono.just(toJson(patch))))
+                .responseSingle((response, body) -> body.then(Mono.fromSupplier(() -> response.status().code()))));
+    }
+
+    private HttpClient jsonClient() {
+        return client.headers(headers -> headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON));
+    }
+
+    private void seedVendors() {
+        vendorRepository.bulkInsert(Flux.range(0, VENDORS)
+                        .map(i -> Vendor.builder().firstName("First" + i).lastName("Last" + i).build()))
+                .blockLast(WORKLOAD_TIMEOUT);
+
+        vendorIds = vendorRepository.findAll()
+                .map(Vendor::getId)
+                .collectList()
+                .block(WORKLOAD_TIMEOUT);
+    }
+
+    private void seedVendorsWithCategories() {
+        List<String> categoryIds = categoryRepository.saveAll(Flux.range(0, CATEGORIES)
+                        .map(i -> Category.builder().description("Category" + i).build()))
+                .map(Category::getId)
+                .collectList()
+                .block(WORKLOAD_TIMEOUT);
+
+        SplittableRandom random = new SplittableRandom(VENDORS);
+        vendorIds = vendorRepository.saveAll(Flux.range(0, VENDORS)
+                        .map(i -> Vendor.builder().firstName("First" + i).lastName("Last" + i)
+                                .categoryIds(randomIds(random, categoryIds, CATEGORIES_PER_VENDOR)).build()))
+                .map(Vendor::getId)
+                .collectList()
+                .block(WORKLOAD_TIMEOUT);
+    }
+
+    private static List<String> randomIds(SplittableRandom random, List<String> ids, int count) {
+        List<String> picked = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            picked.add(ids.get(random.nextInt(ids.size())));
+        }
+        return picked;
+    }
+
+    private void writeResults(List<LatencyReport> reports, Path output) throws IOException {
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        objectMapper.copy()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(output.toFile(), reports);
+        log.info("Load test results written to {}", output.toAbsolutePath());
+    }
+
+    Path output() {
+        return OUTPUT;
+    }
+
+    private String randomId(SplittableRandom random) {
+        return vendorIds.get(random.nextInt(vendorIds.size()));
+    }
+
+    private static Vendor newVendor() {
+        return Vendor.builder().firstName("Load").lastName("Test").build();
+    }
+
+    private static boolean chance(SplittableRandom random, int percent) {
+        return random.nextInt(100) < percent;
+    }
+
+    private String toJson(Vendor vendor) {
+        try {
+            return objectMapper.writeValueAsString(vendor);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+
+        Operation next(SplittableRandom random);
+
+    }
+
+    private static final class Operation {
+
+        private final String endpoint;
+        private final Mono<Integer> call;
+
+        private Operation(String endpoint, Mono<Integer> call) {
+            this.endpoint = endpoint;
+            this.call = call;
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.kkukielka.springwebfluxrest.load;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kkukielka.springwebfluxrest.cache.ReadThroughCache;
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.config.ExportProperties;
+import com.kkukielka.springwebfluxrest.config.ShardingProperties;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.RebalanceStatus;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.repositories.MongoBulkInserter;
+import com.kkukielka.springwebfluxrest.repositories.MongoExporter;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepositoryCustomImpl;
+import com.kkukielka.springwebfluxrest.sharding.Shard;
+import com.kkukielka.springwebfluxrest.sharding.ShardRebalancer;
+import com.kkukielka.springwebfluxrest.sharding.ShardedVendorRepository;
+import com.kkukielka.springwebfluxrest.sharding.VendorShards;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Spreads vendors over two embedded Mongo instances, adds a third and rebalances onto it while
+ * reading, writing and deleting through the sharded repository, and checks that every vendor
+ * ends up on the shard owning it, exactly once, and that deleted vendors stay deleted. Run with
+ * {@code ./gradlew loadTest}; tune it with {@code -DloadTest.shardedVendors}.
+ */
+@Slf4j
+@Tag("load")
+class ShardingTest {
+
+    private static final int VENDORS = Integer.getInteger("loadTest.shardedVendors", 10_000);
+    private static final List<String> SHARDS = Arrays.asList("a", "b", "c");
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    private static final List<MongodExecutable> mongods = new ArrayList<>();
+    private static final Map<String, Integer> ports = new LinkedHashMap<>();
+
+    @BeforeAll
+    static void startMongods() throws IOException {
+        for (String shard : SHARDS) {
+            int port = Network.getFreeServerPort();
+            MongodExecutable mongod = MongodStarter.getDefaultInstance().prepare(new MongodConfigBuilder()
+                    .version(Version.Main.V4_0)
+                    .net(new Net(port, Network.localhostIsIPv6()))
+                    .build());
+            mongods.add(mongod);
+            mongod.start();
+            ports.put(shard, port);
+        }
+    }
+
+    @AfterAll
+    static void stopMongods() {
+        mongods.forEach(MongodExecutable::stop);
+    }
+
+    @Test
+    void rebalancesOntoAnAddedShard() {
+        // given
+        List<String> ids = seedTwoShards("rebalance");
+
+        try (VendorShards threeShards = connect("rebalance", SHARDS, Arrays.asList("a", "b"))) {
+            VendorRepository vendorRepository = sharded(threeShards);
+            String movedOnDemand = ids.stream()
+                    .filter(id -> threeShards.owner(id).getName().equals("c"))
+                    .findFirst()
+                    .orElseThrow(IllegalStateException::new);
+
+            // when
+            vendorRepository.updateIfChanged(movedOnDemand, Vendor.builder().firstName("Moved").build(), null)
+                    .block(TIMEOUT);
+            ShardRebalancer rebalancer = new ShardRebalancer(threeShards, 16);
+            long start = System.nanoTime();
+            RebalanceStatus status = rebalancer.start();
+            int reads = 0;
+            while (status.getState() == RebalanceStatus.State.RUNNING) {
+                assertNotNull(vendorRepository.findById(ids.get(reads++ % ids.size())).block(TIMEOUT));
+                status = rebalancer.status();
+            }
+            log.info("Rebalanced {} vendors onto a third shard in {} ms: {}", VENDORS,
+                    Duration.ofNanos(System.nanoTime() - start).toMillis(), status);
+
+            // then
+            assertEquals(RebalanceStatus.State.DONE, status.getState(), status::toString);
+            assertFalse(threeShards.isRebalancing());
+            assertEquals(ids, vendorRepository.findAll().map(Vendor::getId).collectList().block(TIMEOUT));
+            for (Shard shard : threeShards.all()) {
+                List<Vendor> stored = shard.getRepository().findAll().collectList().block(TIMEOUT);
+                assertTrue(stored.stream().allMatch(vendor -> threeShards.owner(vendor.getId()) == shard));
+                assertTrue(stored.size() > VENDORS / 5, shard + " holds " + stored.size());
+            }
+            assertEquals("Moved", vendorRepository.findById(movedOnDemand).block(TIMEOUT).getFirstName());
+            List<Vendor> found = vendorRepository.searchByName("last1", null, 50).collectList().block(TIMEOUT);
+            assertEquals(50, found.size());
+            assertTrue(found.stream().allMatch(vendor -> vendor.getLastName().startsWith("Last1")));
+        }
+    }
+
+    @Test
+    void vendorsDeletedDuringARebalanceStayDeleted() {
+        // given
+        List<String> ids = seedTwoShards("delete");
+
+        try (VendorShards threeShards = connect("delete", SHARDS, Arrays.asList("a", "b"))) {
+            VendorRepository vendorRepository = sharded(threeShards);
+            List<String> moving = ids.stream()
+                    .filter(id -> threeShards.owner(id).getName().equals("c"))
+                    .collect(Collectors.toList());
+
+            // when
+            ShardRebalancer rebalancer = new ShardRebalancer(threeShards, 16);
+            RebalanceStatus status = rebalancer.start();
+            List<String> deleted = new ArrayList<>();
+            for (int i = 0; i < moving.size() && status.getState() == RebalanceStatus.State.RUNNING; i += 2) {
+                vendorRepository.deleteById(moving.get(i)).block(TIMEOUT);
+                deleted.add(moving.get(i));
+                status = rebalancer.status();
+            }
+            while (status.getState() == RebalanceStatus.State.RUNNING) {
+                status = Mono.delay(Duration.ofMillis(10)).then(Mono.fromSupplier(rebalancer::status)).block();
+            }
+
+            // then
+            assertEquals(RebalanceStatus.State.DONE, status.getState(), status::toString);
+            assertFalse(deleted.isEmpty());
+            for (Shard shard : threeShards.all()) {
+                assertEquals(Collections.emptyList(), shard.getRepository().findAllById(deleted)
+                        .map(Vendor::getId).collectList().block(TIMEOUT), shard::toString);
+            }
+            assertEquals(VENDORS - deleted.size(), vendorRepository.count().block(TIMEOUT).intValue());
+        }
+    }
+
+    /**
+     * Spreads the vendors over shards {@code a} and {@code b}, leaving {@code c} empty.
+     */
+    private static List<String> seedTwoShards(String database) {
+        try (VendorShards twoShards = connect(database, Arrays.asList("a", "b"), new ArrayList<>())) {
+            VendorRepository vendorRepository = sharded(twoShards);
+            List<BulkInsertResult> inserted = vendorRepository.bulkInsert(Flux.range(0, VENDORS)
+                    .map(i -> Vendor.builder().firstName("First" + i).lastName("Last" + i % 100).build()))
+                    .collectList()
+                    .block(TIMEOUT);
+            List<String> ids = vendorRepository.findAll().map(Vendor::getId).collectList().block(TIMEOUT);
+
+            assertEquals(VENDORS, inserted.stream().mapToInt(BulkInsertResult::getInserted).sum());
+            assertEquals(ids.stream().sorted().collect(Collectors.toList()), ids);
+            assertEquals(VENDORS, ids.size());
+            assertEquals(0L, countOn(twoShards, "c"));
+            return ids;
+        }
+    }
+
+    private static VendorShards connect(String database, List<String> active, List<String> previous) {
+        ShardingProperties properties = new ShardingProperties();
+        ports.forEach((shard, port) -> properties.getShards()
+                .put(shard, "mongodb://localhost:" + port + "/" + database));
+        properties.setActive(active);
+        properties.setPrevious(previous);
+
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE,
+                new MongoMappingContext());
+        converter.afterPropertiesSet();
+        BulkInsertProperties bulkProperties = new BulkInsertProperties();
+        return VendorShards.connect(properties, converter, null,
+                template -> new ReactiveMongoRepositoryFactory(template).getRepository(VendorRepository.class,
+                        RepositoryFragments.just(new VendorRepositoryCustomImpl(template,
+                                new MongoBulkInserter(template, bulkProperties),
+                                new MongoExporter(template, new ExportProperties()), bulkProperties,
+                                new ReadThroughCache<>(Caffeine.newBuilder().maximumSize(0).build())))));
+    }
+
+    private static VendorRepository sharded(VendorShards shards) {
+        return new ShardedVendorRepository(shards, null, new ShardingProperties(), new BulkInsertProperties());
+    }
+
+    private static long countOn(VendorShards shards, String name) {
+        return shards.all().stream()
+                .filter(shard -> shard.getName().equals(name))
+                .findFirst()
+                .map(shard -> shard.getRepository().count().block(TIMEOUT))
+                .orElseThrow(IllegalStateException::new);
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.kkukielka.springwebfluxrest.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kkukielka.springwebfluxrest.SpringWebfluxRestApplication;
+import com.kkukielka.springwebfluxrest.config.FastStartupInitializer;
+import com.kkukielka.springwebfluxrest.controllers.VendorController;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Boots the application under the {@code fast-startup} profile and records how long it takes until
+ * the context is up, until the readiness health group reports UP and until the first vendor
+ * request succeeds. The times include starting embedded Mongo, so compare them between runs on the
+ * same machine rather than in absolute terms. Run with {@code ./gradlew loadTest}; tune it with
+ * {@code -DloadTest.timeToFirstRequestMs} and {@code -DloadTest.startupOutput}.
+ */
+@Slf4j
+@Tag("load")
+class StartupTest {
+
+    private static final long TIME_TO_FIRST_REQUEST_MS = Long.getLong("loadTest.timeToFirstRequestMs", 20_000);
+    private static final Path OUTPUT = Paths.get(System.getProperty("loadTest.startupOutput",
+            "build/load-test/startup.json"));
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    @Test
+    void timeToFirstSuccessfulRequest() throws IOException {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringWebfluxRestApplication.class)
+                .profiles(FastStartupInitializer.PROFILE)
+                .run("--server.port=0")) {
+            long started = System.nanoTime();
+
+            HttpClient client = HttpClient.create()
+                    .baseUrl("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+            long ready = firstOk(client, "/actuator/health/readiness");
+            long firstRequest = firstOk(client, VendorController.BASE_URL + "?limit=1");
+
+            Map<String, Long> results = new LinkedHashMap<>();
+            results.put("contextStartedMs", Duration.ofNanos(started - start).toMillis());
+            results.put("readyMs", Duration.ofNanos(ready - start).toMillis());
+            results.put("firstRequestMs", Duration.ofNanos(firstRequest - start).toMillis());
+            writeResults(results);
+
+            assertTrue(results.get("firstRequestMs") <= TIME_TO_FIRST_REQUEST_MS,
+                    "time to first successful request " + results);
+        }
+    }
+
+    /**
+     * Polls the path until it answers 200 and returns when it did.
+     */
+    private long firstOk(HttpClient client, String path) {
+        return client.get()
+                .uri(path)
+                .responseSingle((response, body) -> body.then(Mono.fromSupplier(() -> response.status().code())))
+                .onErrorReturn(-1)
+                .filter(status -> status == 200)
+                .repeatWhenEmpty(repeats -> repeats.delayElements(POLL_INTERVAL))
+                .map(status -> System.nanoTime())
+                .block(TIMEOUT);
+    }
+
+    private void writeResults(Map<String, Long> results) throws IOException {
+        Files.createDirectories(OUTPUT.toAbsolutePath().getParent());
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(OUTPUT.toFile(), results);
+        log.info("Startup times {} written to {}", results, OUTPUT.toAbsolutePath());
+    }
+
+}
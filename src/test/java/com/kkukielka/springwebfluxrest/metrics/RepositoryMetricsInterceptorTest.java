@@ -0,0 +1,83 @@
+package com.kkukielka.springwebfluxrest.metrics;
+
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.framework.ProxyFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+
+class RepositoryMetricsInterceptorTest {
+
+    private MeterRegistry meterRegistry;
+    private VendorRepository target;
+    private VendorRepository vendorRepository;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        target = Mockito.mock(VendorRepository.class);
+
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addAdvice(new RepositoryMetricsInterceptor(meterRegistry, "vendorRepository"));
+        vendorRepository = (VendorRepository) proxyFactory.getProxy();
+    }
+
+    @Test
+    void successfulCallsAreTimed() {
+        // given
+        given(target.findById(anyString())).willReturn(Mono.just(Vendor.builder().build()));
+
+        // when
+        StepVerifier.create(vendorRepository.findById("1")).expectNextCount(1).verifyComplete();
+
+        // then
+        assertEquals(1, meterRegistry.get(RepositoryMetricsInterceptor.INVOCATIONS_METRIC)
+                .tag("method", "findById")
+                .tag("outcome", "SUCCESS")
+                .timer()
+                .count());
+    }
+
+    @Test
+    void failedCallsAreCounted() {
+        // given
+        given(target.findAll()).willReturn(Flux.error(new IllegalStateException("boom")));
+
+        // when
+        StepVerifier.create(vendorRepository.findAll()).verifyError(IllegalStateException.class);
+
+        // then
+        assertEquals(1, meterRegistry.get(RepositoryMetricsInterceptor.ERRORS_METRIC)
+                .tag("method", "findAll")
+                .counter()
+                .count());
+        assertEquals(1, meterRegistry.get(RepositoryMetricsInterceptor.INVOCATIONS_METRIC)
+                .tag("method", "findAll")
+                .tag("outcome", "ERROR")
+                .timer()
+                .count());
+    }
+
+    @Test
+    void timingStartsOnSubscription() {
+        // given
+        given(target.findById(anyString())).willReturn(Mono.just(Vendor.builder().build()));
+
+        // when
+        vendorRepository.findById("1");
+
+        // then
+        assertNull(meterRegistry.find(RepositoryMetricsInterceptor.INVOCATIONS_METRIC).timer());
+    }
+
+}
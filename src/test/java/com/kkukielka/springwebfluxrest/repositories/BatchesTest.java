@@ -0,0 +1,74 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchesTest {
+
+    @Test
+    void slowConsumerWithShortFlushIntervalGetsEveryItemInOrder() {
+        // given
+        BulkInsertProperties properties = properties(10, Duration.ofMillis(1));
+
+        // when
+        List<List<Integer>> batches = Batches.of(Flux.range(0, 500), properties)
+                .concatMap(batch -> Mono.delay(Duration.ofMillis(5)).thenReturn(batch), 1)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        // then
+        assertTrue(batches.stream().allMatch(batch -> !batch.isEmpty() && batch.size() <= 10));
+        assertEquals(Flux.range(0, 500).collectList().block(),
+                batches.stream().flatMap(List::stream).collect(Collectors.toList()));
+    }
+
+    @Test
+    void partialBatchIsFlushedAfterInterval() {
+        // given
+        BulkInsertProperties properties = properties(10, Duration.ofMillis(50));
+
+        // when - then
+        StepVerifier.create(Batches.of(Flux.just(1, 2).concatWith(Flux.never()), properties))
+                .expectNext(Arrays.asList(1, 2))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void stalledConsumerStopsRequestingItems() throws InterruptedException {
+        // given
+        BulkInsertProperties properties = properties(10, Duration.ofMillis(1));
+        AtomicLong produced = new AtomicLong();
+
+        // when
+        Disposable stalled = Batches.of(Flux.range(0, 1_000_000).doOnNext(item -> produced.incrementAndGet()),
+                properties)
+                .concatMap(batch -> Mono.never(), 1)
+                .subscribe();
+        Thread.sleep(200);
+
+        // then
+        assertTrue(produced.get() < 1000, "produced " + produced.get());
+        stalled.dispose();
+    }
+
+    private static BulkInsertProperties properties(int batchSize, Duration flushInterval) {
+        BulkInsertProperties properties = new BulkInsertProperties();
+        properties.setBatchSize(batchSize);
+        properties.setFlushInterval(flushInterval);
+        return properties;
+    }
+
+}
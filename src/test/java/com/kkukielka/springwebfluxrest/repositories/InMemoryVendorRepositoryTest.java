@@ -0,0 +1,317 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.config.ExportProperties;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.domain.VendorWithCategories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryVendorRepositoryTest {
+
+    private InMemoryStore<Vendor> store;
+    private InMemoryStore<Category> categoryStore;
+    private InMemoryVendorRepository vendorRepository;
+
+    @BeforeEach
+    void setUp() {
+        store = InMemoryVendorRepository.newStore();
+        categoryStore = InMemoryCategoryRepository.newStore();
+        vendorRepository = new InMemoryVendorRepository(store, categoryStore, new BulkInsertProperties(),
+                new ExportProperties(), new ObjectMapper());
+    }
+
+    @Test
+    void saveHonorsVersions() {
+        // given
+        Vendor saved = vendorRepository.save(Vendor.builder().firstName("Joe").lastName("Smith").build()).block();
+
+        // when
+        saved.setFirstName("Jim");
+        vendorRepository.save(saved).block();
+
+        // then
+        assertNotNull(saved.getId());
+        assertEquals(1L, saved.getVersion());
+        assertEquals("Jim", vendorRepository.findById(saved.getId()).block().getFirstName());
+
+        saved.setVersion(0L);
+        StepVerifier.create(vendorRepository.save(saved))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+        StepVerifier.create(vendorRepository.insert(Vendor.builder().id(saved.getId()).build()))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+    }
+
+    @Test
+    void returnedVendorsAreCopies() {
+        // given
+        Vendor saved = vendorRepository.save(Vendor.builder().id("1").firstName("Joe").build()).block();
+
+        // when
+        saved.setFirstName("changed");
+        vendorRepository.findById("1").block().setFirstName("changed");
+
+        // then
+        assertEquals("Joe", vendorRepository.findById("1").block().getFirstName());
+    }
+
+    @Test
+    void updateIfChangedOnlyWritesChanges() {
+        // given
+        vendorRepository.save(Vendor.builder().id("1").firstName("Joe").lastName("Smith").build()).block();
+
+        // when - then
+        assertNull(vendorRepository.updateIfChanged("1", Vendor.builder().firstName("Joe").build(), null).block());
+        assertNull(vendorRepository.updateIfChanged("1", Vendor.builder().firstName("Jim").build(), 5L).block());
+        Updated<Vendor> update = vendorRepository.updateIfChanged("1", Vendor.builder().firstName("Jim").build(), 0L)
+                .block();
+        assertEquals("Joe", update.getPrevious().getFirstName());
+        Vendor updated = update.getCurrent();
+        assertEquals("Jim", updated.getFirstName());
+        assertEquals("Smith", updated.getLastName());
+        assertEquals(1L, updated.getVersion());
+    }
+
+    @Test
+    void replaceUpsertsUnlessAVersionIsExpected() {
+        // when - then
+        assertNull(vendorRepository.replace("1", Vendor.builder().firstName("Joe").build(), 0L).block());
+        Updated<Vendor> created = vendorRepository.replace("1", Vendor.builder().firstName("Joe").build(), null)
+                .block();
+        assertNull(created.getPrevious());
+        assertEquals(1L, created.getCurrent().getVersion());
+        Updated<Vendor> replace = vendorRepository.replace("1", Vendor.builder().lastName("Smith").build(), 1L)
+                .block();
+        assertEquals("Joe", replace.getPrevious().getFirstName());
+        Vendor replaced = replace.getCurrent();
+        assertNull(replaced.getFirstName());
+        assertEquals("Smith", replaced.getLastName());
+        assertEquals(2L, replaced.getVersion());
+    }
+
+    @Test
+    void findAndDeleteReturnsTheDeletedVendorOnce() {
+        // given
+        vendorRepository.save(Vendor.builder().id("1").firstName("Joe").build()).block();
+
+        // when - then
+        assertEquals("Joe", vendorRepository.findAndDeleteById("1").block().getFirstName());
+        assertNull(vendorRepository.findAndDeleteById("1").block());
+        assertFalse(vendorRepository.existsById("1").block());
+    }
+
+    @Test
+    void pagesAreOrderedById() {
+        // given
+        vendorRepository.saveAll(Flux.just("3", "1", "2", "4").map(id -> Vendor.builder().id(id).build()))
+                .blockLast();
+
+        // when
+        List<String> firstPage = vendorRepository.findAllByOrderByIdAsc(PageRequest.of(0, 2))
+                .map(Vendor::getId).collectList().block();
+        List<String> nextPage = vendorRepository.findByIdGreaterThanOrderByIdAsc("2", PageRequest.of(0, 2))
+                .map(Vendor::getId).collectList().block();
+
+        // then
+        assertEquals(Arrays.asList("1", "2"), firstPage);
+        assertEquals(Arrays.asList("3", "4"), nextPage);
+        assertEquals(Arrays.asList("4", "3", "2", "1"), vendorRepository.findAll(Sort.by(Sort.Direction.DESC, "id"))
+                .map(Vendor::getId).collectList().block());
+    }
+
+    @Test
+    void searchByNameFollowsRenames() {
+        // given
+        vendorRepository.saveAll(Arrays.asList(
+                Vendor.builder().id("1").firstName("Joe").lastName("Smithson").build(),
+                Vendor.builder().id("2").firstName("Ann").lastName("smith").build(),
+                Vendor.builder().id("3").firstName("Jim").lastName("Stone").build())).blockLast();
+
+        // when
+        vendorRepository.updateIfChanged("3", Vendor.builder().lastName("Smythe").build(), null).block();
+
+        // then
+        assertEquals(Arrays.asList("2", "1"), ids(vendorRepository.searchByName("SMITH", null, 10)));
+        assertEquals(Arrays.asList("3", "1"), ids(vendorRepository.searchByName(null, "j", 10)));
+        assertEquals(Collections.singletonList("3"), ids(vendorRepository.searchByName("sm", "jim", 10)));
+        assertEquals(Collections.singletonList("3"), ids(vendorRepository.searchByName("smy", null, 1)));
+    }
+
+    @Test
+    void queryByExampleFollowsTheMatcher() {
+        // given
+        vendorRepository.saveAll(Arrays.asList(
+                Vendor.builder().id("1").firstName("Joe").lastName("Smith").build(),
+                Vendor.builder().id("2").firstName("Jim").lastName("smythe").build(),
+                Vendor.builder().id("3").firstName("Joe").lastName("Stone").build())).blockLast();
+        Example<Vendor> joes = Example.of(Vendor.builder().firstName("Joe").build());
+        Example<Vendor> smiths = Example.of(Vendor.builder().lastName("sm").build(), ExampleMatcher.matching()
+                .withStringMatcher(ExampleMatcher.StringMatcher.STARTING).withIgnoreCase());
+        Example<Vendor> either = Example.of(Vendor.builder().firstName("Jim").lastName("Stone").build(),
+                ExampleMatcher.matchingAny());
+
+        // when - then
+        assertEquals(Arrays.asList("3", "1"), vendorRepository.findAll(joes, Sort.by(Sort.Direction.DESC, "id"))
+                .map(Vendor::getId).collectList().block());
+        assertEquals(2L, vendorRepository.count(smiths).block());
+        assertEquals(Arrays.asList("2", "3"), vendorRepository.findAll(either, Sort.by("id"))
+                .map(Vendor::getId).collectList().block());
+        assertFalse(vendorRepository.exists(Example.of(Vendor.builder().firstName("joe").build())).block());
+        assertEquals("2", vendorRepository.findOne(Example.of(Vendor.builder().firstName("Jim").build()))
+                .block().getId());
+        StepVerifier.create(vendorRepository.findOne(joes))
+                .expectError(IncorrectResultSizeDataAccessException.class)
+                .verify();
+    }
+
+    @Test
+    void bulkInsertAndPatchReportPerItem() {
+        // given
+        vendorRepository.save(Vendor.builder().id("1").firstName("Joe").build()).block();
+
+        // when
+        BulkInsertResult inserted = vendorRepository.bulkInsert(Flux.just(
+                Vendor.builder().id("1").build(), Vendor.builder().id("2").firstName("Ann").build())).blockLast();
+        List<BulkPatchResult.Status> patched = vendorRepository.bulkPatch(Flux.just(
+                Vendor.builder().id("1").firstName("Jim").build(),
+                Vendor.builder().id("2").firstName("Ann").build(),
+                Vendor.builder().id("3").firstName("Ann").build(),
+                Vendor.builder().firstName("Ann").build()))
+                .map(BulkPatchResult::getStatus).collectList().block();
+
+        // then
+        assertEquals(1, inserted.getInserted());
+        assertEquals(1, inserted.getFailed());
+        assertEquals(Collections.singletonList("2"), inserted.getInsertedIds());
+        assertNull(vendorRepository.findById("2").block().getVersion());
+        assertEquals(Arrays.asList(BulkPatchResult.Status.MODIFIED, BulkPatchResult.Status.MATCHED,
+                BulkPatchResult.Status.NOT_FOUND, BulkPatchResult.Status.FAILED), patched);
+    }
+
+    @Test
+    void projectionsRejectUnknownFields() {
+        // given
+        vendorRepository.save(Vendor.builder().id("1").firstName("Joe").lastName("Smith").build()).block();
+
+        // when
+        Vendor projected = vendorRepository.findByIdProjected("1", Collections.singleton("lastName")).block();
+
+        // then
+        assertEquals("1", projected.getId());
+        assertNull(projected.getFirstName());
+        assertEquals("Smith", projected.getLastName());
+        StepVerifier.create(vendorRepository.findAllProjected(Collections.singleton("class")))
+                .expectError(UnknownFieldException.class)
+                .verify();
+    }
+
+    @Test
+    void exportWritesCsvRows() {
+        // given
+        vendorRepository.save(Vendor.builder().id("1").firstName("Joe, Jr.").lastName("Smith").build()).block();
+
+        // when
+        String csv = DataBufferUtils.join(vendorRepository.export(ExportFormat.CSV, new DefaultDataBufferFactory()))
+                .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+                .block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals("id,firstName,lastName,version\r\n1,\"Joe, Jr.\",Smith,0\r\n", csv);
+    }
+
+    @Test
+    void countByLastNameInitial() {
+        // given
+        vendorRepository.saveAll(Arrays.asList(Vendor.builder().lastName("smith").build(),
+                Vendor.builder().lastName("Stone").build(), Vendor.builder().build())).blockLast();
+
+        // when
+        Map<String, Long> counts = vendorRepository.countByLastNameInitial().block();
+
+        // then
+        assertEquals(2L, counts.get("S"));
+        assertEquals(1L, counts.get(""));
+    }
+
+    @Test
+    void findWithCategoriesResolvesReferences() {
+        // given
+        categoryStore.put(Category.builder().id("c1").description("Fruits").version(0L).build());
+        vendorRepository.saveAll(Arrays.asList(
+                Vendor.builder().id("1").categoryIds(Arrays.asList("c1", "missing", "c1")).build(),
+                Vendor.builder().id("2").build(),
+                Vendor.builder().id("3").categoryIds(Collections.singletonList("c1")).build())).blockLast();
+
+        // when
+        List<VendorWithCategories> page = vendorRepository.findWithCategories("1", PageRequest.of(0, 1))
+                .collectList().block();
+        VendorWithCategories first = vendorRepository.findWithCategories(null, PageRequest.of(0, 1)).blockFirst();
+
+        // then
+        assertEquals("2", page.get(0).getId());
+        assertTrue(page.get(0).getCategories().isEmpty());
+        assertEquals(1, first.getCategories().size());
+        assertEquals("Fruits", first.getCategories().get(0).getDescription());
+        assertEquals(Arrays.asList("c1", "missing", "c1"), first.getCategoryIds());
+    }
+
+    @Test
+    void snapshotsSurviveARestart(@TempDir Path directory) throws IOException {
+        // given
+        vendorRepository.saveAll(Arrays.asList(Vendor.builder().id("1").firstName("Joe").lastName("Smith").build(),
+                Vendor.builder().id("2").firstName("Ann").build())).blockLast();
+        InMemorySnapshots snapshots = new InMemorySnapshots(Collections.singletonList(store), directory,
+                Duration.ofHours(1));
+        snapshots.start();
+        snapshots.stop();
+
+        // when
+        InMemoryStore<Vendor> restarted = InMemoryVendorRepository.newStore();
+        InMemorySnapshots restartedSnapshots = new InMemorySnapshots(Collections.singletonList(restarted), directory,
+                Duration.ofHours(1));
+        restartedSnapshots.start();
+        restartedSnapshots.stop();
+
+        // then
+        InMemoryVendorRepository restartedRepository = new InMemoryVendorRepository(restarted, categoryStore,
+                new BulkInsertProperties(), new ExportProperties(), new ObjectMapper());
+        assertEquals(2L, restartedRepository.count().block());
+        assertEquals(0L, restartedRepository.findById("1").block().getVersion());
+        assertEquals(Collections.singletonList("1"), ids(restartedRepository.searchByName("smi", null, 10)));
+    }
+
+    private static List<String> ids(Flux<Vendor> vendors) {
+        return vendors.map(Vendor::getId).toStream().collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MongoExporterTest {
+
+    private static final ObjectId ID = new ObjectId("5e1f4a2b9c8d7e6f5a4b3c2d");
+
+    private final List<RawBsonDocument> batch = Arrays.asList(
+            raw(new Document("_id", ID).append("firstName", "John").append("lastName", "Smith, Jr.")
+                    .append("version", 2L).append("_class", "com.kkukielka.springwebfluxrest.domain.Vendor")),
+            raw(new Document("_id", "plain-id").append("firstName", "Say \"hi\"")
+                    .append("tags", Arrays.asList("a", "b"))));
+
+    @Test
+    void ndjsonRendersEntitiesWithoutTypeHint() {
+        // when
+        String ndjson = text(MongoExporter.ndjson(batch, new DefaultDataBufferFactory()));
+
+        // then
+        assertEquals("{\"id\":\"5e1f4a2b9c8d7e6f5a4b3c2d\",\"firstName\":\"John\",\"lastName\":\"Smith, Jr.\","
+                        + "\"version\":2}\n"
+                        + "{\"id\":\"plain-id\",\"firstName\":\"Say \\\"hi\\\"\",\"tags\":[\"a\",\"b\"]}\n",
+                ndjson);
+    }
+
+    @Test
+    void csvQuotesCellsAndFillsMissingColumns() {
+        // when
+        String csv = text(MongoExporter.csv(batch, Arrays.asList("id", "lastName", "firstName", "tags"),
+                new DefaultDataBufferFactory()));
+
+        // then
+        assertEquals("5e1f4a2b9c8d7e6f5a4b3c2d,\"Smith, Jr.\",John,\r\n"
+                + "plain-id,,\"Say \"\"hi\"\"\",a;b\r\n", csv);
+    }
+
+    private static RawBsonDocument raw(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec());
+    }
+
+    private static String text(DataBuffer buffer) {
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+}
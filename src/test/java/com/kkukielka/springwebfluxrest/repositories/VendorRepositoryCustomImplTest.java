@@ -0,0 +1,112 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kkukielka.springwebfluxrest.cache.ReadThroughCache;
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class VendorRepositoryCustomImplTest {
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private VendorRepositoryCustomImpl vendorRepository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(ReactiveMongoTemplate.class);
+        ReadThroughCache<Vendor> vendorCache = new ReadThroughCache<>(Caffeine.newBuilder().build());
+        vendorRepository = new VendorRepositoryCustomImpl(mongoTemplate, null, null, new BulkInsertProperties(),
+                vendorCache);
+    }
+
+    @Test
+    void concurrentLookupsOfSameIdQueryMongoOnce() {
+        // given
+        given(mongoTemplate.findById(anyString(), eq(Vendor.class)))
+                .willReturn(Mono.delay(Duration.ofMillis(100))
+                        .map(tick -> Vendor.builder().id("1").firstName("fname").build()));
+
+        // when
+        long found = Flux.range(0, 100)
+                .flatMap(i -> vendorRepository.findById("1").subscribeOn(Schedulers.parallel()))
+                .count()
+                .block(Duration.ofSeconds(5));
+
+        // then
+        assertEquals(100, found);
+        verify(mongoTemplate, times(1)).findById("1", Vendor.class);
+    }
+
+    @Test
+    void classifyBulkPatches() {
+        // given
+        Map<String, Vendor> stored = new HashMap<>();
+        stored.put("1", Vendor.builder().id("1").firstName("John").lastName("Smith").build());
+        stored.put("2", Vendor.builder().id("2").firstName("Jane").lastName("Doe").build());
+        List<Vendor> batch = Arrays.asList(
+                Vendor.builder().id("1").firstName("Johnny").build(),
+                Vendor.builder().id("2").lastName("Doe").build(),
+                Vendor.builder().id("3").firstName("Ann").build(),
+                Vendor.builder().id("1").firstName("Johnny").lastName("Smithson").build(),
+                Vendor.builder().lastName("Nobody").build());
+        Map<String, Vendor> changes = new LinkedHashMap<>();
+
+        // when
+        List<BulkPatchResult> results = VendorRepositoryCustomImpl.classify(batch, stored, changes);
+
+        // then
+        assertEquals(BulkPatchResult.Status.MODIFIED, results.get(0).getStatus());
+        assertEquals(BulkPatchResult.Status.MATCHED, results.get(1).getStatus());
+        assertEquals(BulkPatchResult.Status.NOT_FOUND, results.get(2).getStatus());
+        assertEquals(BulkPatchResult.Status.MODIFIED, results.get(3).getStatus());
+        assertEquals(BulkPatchResult.Status.FAILED, results.get(4).getStatus());
+
+        assertEquals(1, changes.size());
+        assertEquals("Johnny", changes.get("1").getFirstName());
+        assertEquals("Smithson", changes.get("1").getLastName());
+    }
+
+    @Test
+    void withCategoriesPipelinePagesBeforeJoining() {
+        // when
+        List<Document> firstPage = VendorRepositoryCustomImpl.withCategoriesPipeline(null, 10, "category");
+        List<Document> nextPage = VendorRepositoryCustomImpl.withCategoriesPipeline(
+                new Document("_id", new Document("$gt", "a")), 10, "category");
+
+        // then
+        assertEquals(Arrays.asList("$sort", "$limit", "$addFields", "$lookup", "$project"), stages(firstPage));
+        assertEquals(Arrays.asList("$match", "$sort", "$limit", "$addFields", "$lookup", "$project"),
+                stages(nextPage));
+        Document lookup = firstPage.get(3).get("$lookup", Document.class);
+        assertEquals("category", lookup.getString("from"));
+        assertEquals("_id", lookup.getString("foreignField"));
+    }
+
+    private static List<String> stages(List<Document> pipeline) {
+        return pipeline.stream().map(stage -> stage.keySet().iterator().next()).collect(Collectors.toList());
+    }
+
+}
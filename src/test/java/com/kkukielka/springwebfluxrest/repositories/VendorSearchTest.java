@@ -0,0 +1,91 @@
+package com.kkukielka.springwebfluxrest.repositories;
+
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class VendorSearchTest {
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @BeforeEach
+    void setUp() {
+        vendorRepository.saveAll(Arrays.asList(
+                Vendor.builder().firstName("Joanna").lastName("Jones").build(),
+                Vendor.builder().firstName("jonas").lastName("JORDAN").build(),
+                Vendor.builder().firstName("Mary").lastName("Major").build()))
+                .blockLast();
+    }
+
+    @Test
+    void lastNamePrefixIsCaseInsensitive() {
+        // when
+        List<Vendor> found = vendorRepository.searchByName("jo", null, 50).collectList().block();
+
+        // then
+        assertFalse(found.isEmpty());
+        assertTrue(found.stream().allMatch(vendor -> vendor.getLastName().toLowerCase().startsWith("jo")));
+        assertTrue(found.stream().anyMatch(vendor -> vendor.getLastName().equals("JORDAN")));
+    }
+
+    @Test
+    void firstAndLastNamePrefixesAreCombined() {
+        // when
+        List<Vendor> found = vendorRepository.searchByName("JO", "JOA", 50).collectList().block();
+
+        // then
+        assertTrue(found.stream().allMatch(vendor -> vendor.getFirstName().toLowerCase().startsWith("joa")));
+        assertTrue(found.stream().anyMatch(vendor -> vendor.getLastName().equals("Jones")));
+    }
+
+    @Test
+    void lastNameSearchUsesIndex() {
+        assertIndexScan(explain(VendorSearch.query("jo", null, 50)));
+    }
+
+    @Test
+    void firstNameSearchUsesIndex() {
+        assertIndexScan(explain(VendorSearch.query(null, "jo", 50)));
+    }
+
+    @Test
+    void combinedSearchUsesIndex() {
+        assertIndexScan(explain(VendorSearch.query("jo", "jo", 50)));
+    }
+
+    private Document explain(Query query) {
+        Document find = new Document("find", mongoTemplate.getCollectionName(Vendor.class))
+                .append("filter", query.getQueryObject())
+                .append("sort", query.getSortObject())
+                .append("limit", query.getLimit())
+                .append("collation", query.getCollation().get().toDocument());
+
+        return mongoTemplate.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"))
+                .block();
+    }
+
+    private static void assertIndexScan(Document explain) {
+        String winningPlan = explain.get("queryPlanner", Document.class)
+                .get("winningPlan", Document.class)
+                .toJson();
+
+        assertTrue(winningPlan.contains("IXSCAN"), winningPlan);
+        assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.kkukielka.springwebfluxrest.sharding;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    @Test
+    void keysAreSpreadEvenly() {
+        // given
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 160);
+
+        // when
+        Map<String, Integer> counts = new HashMap<>();
+        for (String key : keys()) {
+            counts.merge(ring.nodeFor(key), 1, Integer::sum);
+        }
+
+        // then
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 3) < KEYS / 3 / 5, counts::toString));
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysOntoIt() {
+        // given
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 160);
+        ConsistentHashRing after = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), 160);
+
+        // when
+        int moved = 0;
+        for (String key : keys()) {
+            if (!before.nodeFor(key).equals(after.nodeFor(key))) {
+                assertEquals("d", after.nodeFor(key));
+                moved++;
+            }
+        }
+
+        // then
+        assertTrue(Math.abs(moved - KEYS / 4) < KEYS / 4 / 5, "moved " + moved);
+    }
+
+    @Test
+    void placementDependsOnlyOnNodeNames() {
+        // given
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b"), 160);
+        ConsistentHashRing reordered = new ConsistentHashRing(Arrays.asList("b", "a"), 160);
+
+        // when - then
+        for (String key : keys()) {
+            assertEquals(ring.nodeFor(key), reordered.nodeFor(key));
+        }
+        assertEquals(ConsistentHashRing.hash("5e5f7a3b2c1d4e6f7a8b9c0d"),
+                ConsistentHashRing.hash("5e5f7a3b2c1d4e6f7a8b9c0d"));
+    }
+
+    private static List<String> keys() {
+        List<String> keys = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(new ObjectId().toHexString());
+        }
+        return keys;
+    }
+
+}
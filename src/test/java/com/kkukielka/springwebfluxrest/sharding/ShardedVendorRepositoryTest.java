@@ -0,0 +1,194 @@
+package com.kkukielka.springwebfluxrest.sharding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kkukielka.springwebfluxrest.config.BulkInsertProperties;
+import com.kkukielka.springwebfluxrest.config.ExportProperties;
+import com.kkukielka.springwebfluxrest.config.ShardingProperties;
+import com.kkukielka.springwebfluxrest.domain.BulkInsertResult;
+import com.kkukielka.springwebfluxrest.domain.BulkPatchResult;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.domain.VendorWithCategories;
+import com.kkukielka.springwebfluxrest.repositories.InMemoryCategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.InMemoryStore;
+import com.kkukielka.springwebfluxrest.repositories.InMemoryVendorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the sharded repository over in-memory shards; moving vendors between real Mongo instances
+ * is covered by {@code ShardingTest} in the load-test suite.
+ */
+class ShardedVendorRepositoryTest {
+
+    private static final List<String> SHARDS = Arrays.asList("a", "b", "c");
+
+    private VendorShards shards;
+    private InMemoryStore<Category> categoryStore;
+    private ShardedVendorRepository vendorRepository;
+
+    @BeforeEach
+    void setUp() {
+        List<Shard> all = new ArrayList<>();
+        categoryStore = InMemoryCategoryRepository.newStore();
+        for (String name : SHARDS) {
+            all.add(new Shard(name, null, new InMemoryVendorRepository(InMemoryVendorRepository.newStore(),
+                    categoryStore, new BulkInsertProperties(), new ExportProperties(), new ObjectMapper())));
+        }
+
+        shards = new VendorShards(all, new ConsistentHashRing(SHARDS, 160), null);
+        vendorRepository = new ShardedVendorRepository(shards,
+                new InMemoryCategoryRepository(categoryStore, new BulkInsertProperties(), new ExportProperties(),
+                        new ObjectMapper()),
+                new ShardingProperties(), new BulkInsertProperties());
+    }
+
+    @Test
+    void vendorsAreStoredOnTheirOwnerAndListedInIdOrder() {
+        // when
+        List<Vendor> saved = vendorRepository.saveAll(Flux.range(0, 60)
+                .map(i -> Vendor.builder().firstName("First" + i).build()))
+                .collectList().block();
+
+        // then
+        for (Vendor vendor : saved) {
+            for (Shard shard : shards.all()) {
+                assertEquals(shard == shards.owner(vendor.getId()),
+                        shard.getRepository().existsById(vendor.getId()).block());
+            }
+        }
+        shards.all().forEach(shard -> assertTrue(shard.getRepository().count().block() > 0));
+
+        List<String> ids = saved.stream().map(Vendor::getId).sorted().collect(Collectors.toList());
+        assertEquals(60L, vendorRepository.count().block());
+        assertEquals(ids, vendorRepository.findAll().map(Vendor::getId).collectList().block());
+        assertEquals(ids.subList(10, 15), vendorRepository.findByIdGreaterThanOrderByIdAsc(ids.get(9),
+                PageRequest.of(0, 5)).map(Vendor::getId).collectList().block());
+        assertEquals(ids.subList(5, 10), vendorRepository.findAllByOrderByIdAsc(PageRequest.of(1, 5))
+                .map(Vendor::getId).collectList().block());
+    }
+
+    @Test
+    void searchesAreMergedInNameOrder() {
+        // given
+        vendorRepository.saveAll(Arrays.asList(
+                Vendor.builder().id("1").firstName("Joe").lastName("Smithson").build(),
+                Vendor.builder().id("2").firstName("Ann").lastName("smith").build(),
+                Vendor.builder().id("3").firstName("Jim").lastName("Smythe").build(),
+                Vendor.builder().id("4").firstName("Amy").lastName("Smith").build(),
+                Vendor.builder().id("5").firstName("Bob").lastName("Stone").build())).blockLast();
+
+        // when
+        List<String> ids = vendorRepository.searchByName("sm", null, 3).map(Vendor::getId).collectList().block();
+
+        // then
+        assertEquals(Arrays.asList("4", "2", "1"), ids);
+    }
+
+    @Test
+    void sortedListingsPutMissingValuesFirstLikeMongo() {
+        // given
+        vendorRepository.saveAll(Flux.range(0, 30).map(i -> Vendor.builder()
+                .id(String.format("%02d", i))
+                .lastName(i % 3 == 0 ? null : "Last" + i % 7)
+                .build()))
+                .blockLast();
+
+        // when
+        List<String> ascending = vendorRepository.findAll(Sort.by("lastName"))
+                .map(vendor -> vendor.getLastName() + "/" + vendor.getId()).collectList().block();
+        List<String> descending = vendorRepository.findAll(Sort.by(Sort.Direction.DESC, "lastName"))
+                .map(vendor -> vendor.getLastName() + "/" + vendor.getId()).collectList().block();
+
+        // then
+        assertEquals(30, ascending.size());
+        assertEquals(Arrays.asList("null/00", "null/03", "null/06"), ascending.subList(0, 3));
+        assertEquals("Last1/01", ascending.get(10));
+        assertEquals("Last6/13", descending.get(0));
+        assertEquals(Arrays.asList("null/24", "null/27"), descending.subList(28, 30));
+    }
+
+    @Test
+    void bulkResultsKeepInputOrder() {
+        // given
+        List<Vendor> vendors = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            vendors.add(Vendor.builder().id(String.valueOf(i)).firstName("Joe").build());
+        }
+
+        // when
+        List<BulkInsertResult> inserted = vendorRepository.bulkInsert(Flux.fromIterable(vendors))
+                .collectList().block();
+        List<String> patched = vendorRepository.bulkPatch(Flux.fromIterable(vendors)
+                .map(vendor -> Vendor.builder().id(vendor.getId()).firstName("Jim").build())
+                .concatWith(Flux.just(Vendor.builder().id("missing").firstName("Jim").build())))
+                .map(BulkPatchResult::getId)
+                .collectList().block();
+
+        // then
+        assertEquals(1, inserted.size());
+        assertEquals(20, inserted.get(0).getInserted());
+        assertEquals(20, inserted.get(0).getSize());
+        List<String> expected = vendors.stream().map(Vendor::getId).collect(Collectors.toList());
+        expected.add("missing");
+        assertEquals(expected, patched);
+        assertEquals("Jim", vendorRepository.findById("7").block().getFirstName());
+    }
+
+    @Test
+    void laterBatchPatchesSeeEarlierOnes() {
+        // given
+        BulkInsertProperties batchesOfOne = new BulkInsertProperties();
+        batchesOfOne.setBatchSize(1);
+        ShardedVendorRepository repository = new ShardedVendorRepository(shards,
+                new InMemoryCategoryRepository(categoryStore, new BulkInsertProperties(), new ExportProperties(),
+                        new ObjectMapper()),
+                new ShardingProperties(), batchesOfOne);
+        repository.save(Vendor.builder().id("1").firstName("Joe").build()).block();
+
+        // when
+        List<BulkPatchResult.Status> patched = repository.bulkPatch(Flux.just(
+                Vendor.builder().id("1").firstName("Jim").build(),
+                Vendor.builder().id("1").firstName("Joe").build()))
+                .map(BulkPatchResult::getStatus)
+                .collectList().block();
+
+        // then
+        assertEquals(Arrays.asList(BulkPatchResult.Status.MODIFIED, BulkPatchResult.Status.MODIFIED), patched);
+        assertEquals("Joe", repository.findById("1").block().getFirstName());
+    }
+
+    @Test
+    void findWithCategoriesJoinsOncePerPage() {
+        // given
+        categoryStore.put(Category.builder().id("c1").description("Fruits").version(0L).build());
+        vendorRepository.saveAll(Arrays.asList(
+                Vendor.builder().id("1").categoryIds(Arrays.asList("c1", "missing", "c1")).build(),
+                Vendor.builder().id("2").build(),
+                Vendor.builder().id("3").categoryIds(Collections.singletonList("c1")).build())).blockLast();
+
+        // when
+        List<VendorWithCategories> page = vendorRepository.findWithCategories("1", PageRequest.of(0, 2))
+                .collectList().block();
+        VendorWithCategories first = vendorRepository.findWithCategories(null, PageRequest.of(0, 1)).blockFirst();
+
+        // then
+        assertEquals(Arrays.asList("2", "3"), page.stream().map(VendorWithCategories::getId)
+                .collect(Collectors.toList()));
+        assertTrue(page.get(0).getCategories().isEmpty());
+        assertEquals("Fruits", page.get(1).getCategories().get(0).getDescription());
+        assertEquals(1, first.getCategories().size());
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.kkukielka.springwebfluxrest.stats;
+
+import com.kkukielka.springwebfluxrest.config.StatsProperties;
+import com.kkukielka.springwebfluxrest.domain.Category;
+import com.kkukielka.springwebfluxrest.domain.EntityStats;
+import com.kkukielka.springwebfluxrest.domain.Vendor;
+import com.kkukielka.springwebfluxrest.repositories.CategoryRepository;
+import com.kkukielka.springwebfluxrest.repositories.VendorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class StatsReconcilerTest {
+
+    private VendorRepository vendorRepository;
+    private CategoryRepository categoryRepository;
+    private EntityCounter<Vendor> vendorStats;
+    private EntityCounter<Category> categoryStats;
+    private StatsReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        vendorRepository = Mockito.mock(VendorRepository.class);
+        categoryRepository = Mockito.mock(CategoryRepository.class);
+        vendorStats = new EntityCounter<>(StatsReconciler::lastNameInitial);
+        categoryStats = new EntityCounter<>(null);
+        reconciler = new StatsReconciler(vendorRepository, categoryRepository, vendorStats, categoryStats,
+                new StatsProperties());
+
+        Map<String, Long> buckets = new HashMap<>();
+        buckets.put("S", 2L);
+        buckets.put("J", 1L);
+        given(vendorRepository.countByLastNameInitial()).willReturn(Mono.just(buckets));
+        given(categoryRepository.count()).willReturn(Mono.just(5L));
+    }
+
+    @Test
+    void lastNameInitial() {
+        assertEquals("S", StatsReconciler.lastNameInitial(Vendor.builder().lastName("smith").build()));
+        assertEquals("\u00C9", StatsReconciler.lastNameInitial(Vendor.builder().lastName("\u00C9mile").build()));
+        assertEquals("", StatsReconciler.lastNameInitial(Vendor.builder().build()));
+    }
+
+    @Test
+    void reconcileReplacesTrackedCounts() {
+        // given
+        vendorStats.created(Vendor.builder().lastName("Adams").build());
+
+        // when
+        reconciler.reconcileDue().block(Duration.ofSeconds(5));
+
+        // then
+        EntityStats vendors = vendorStats.snapshot();
+        assertEquals(3, vendors.getCount());
+        assertEquals(2L, vendors.getCountsByLastNameInitial().get("S"));
+        assertNull(vendors.getCountsByLastNameInitial().get("A"));
+        assertNotNull(vendors.getReconciledAt());
+        assertEquals(5, categoryStats.snapshot().getCount());
+    }
+
+    @Test
+    void writesDuringARecountAreKept() {
+        // given
+        Map<String, Long> buckets = new HashMap<>();
+        buckets.put("S", 2L);
+        given(vendorRepository.countByLastNameInitial()).willReturn(Mono.fromSupplier(() -> {
+            vendorStats.created(Vendor.builder().lastName("Adams").build());
+            vendorStats.deleted(Vendor.builder().lastName("Smith").build());
+            return buckets;
+        }));
+
+        // when
+        reconciler.reconcileDue().block(Duration.ofSeconds(5));
+
+        // then
+        EntityStats vendors = vendorStats.snapshot();
+        assertEquals(2, vendors.getCount());
+        assertEquals(1L, vendors.getCountsByLastNameInitial().get("A"));
+        assertEquals(1L, vendors.getCountsByLastNameInitial().get("S"));
+    }
+
+    @Test
+    void onlyStaleCountersAreReconciledBeforeTheInterval() {
+        // given
+        reconciler.reconcileDue().block(Duration.ofSeconds(5));
+        vendorStats.markStale();
+
+        // when
+        reconciler.reconcileDue().block(Duration.ofSeconds(5));
+
+        // then
+        assertFalse(vendorStats.isStale());
+        verify(vendorRepository, times(2)).countByLastNameInitial();
+        verify(categoryRepository, times(1)).count();
+    }
+
+    @Test
+    void deletesAreTrackedPerInitial() {
+        // given
+        vendorStats.created(Vendor.builder().lastName("Smith").build());
+        vendorStats.created(Vendor.builder().lastName("stone").build());
+
+        // when
+        vendorStats.deleted(Vendor.builder().lastName("Smith").build());
+
+        // then
+        assertEquals(1, vendorStats.snapshot().getCount());
+        assertEquals(1L, vendorStats.snapshot().getCountsByLastNameInitial().get("S"));
+    }
+
+}